@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.benchmark;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema;
+import org.wildfly.extras.db_bootstrap.annotations.UpdateSchema;
+
+/**
+ * Generates a synthetic EAR with {@link BootstrapDatabase} annotated classes for the deployment benchmark. <br>
+ * <br>
+ * The classes are spread over the subdeployments, each a WAR with a library holding its share of the classes. Every
+ * class has the configured number of methods taking a Hibernate Session, alternating between {@link BootstrapSchema}
+ * and {@link UpdateSchema}, each creating a table of its own. The classes are spread over the Hibernate configuration
+ * files in a library of the EAR, each connecting to an in-memory H2 database of its own.
+ *
+ * @author Flemming Harms
+ */
+class BootstrapArchiveGenerator {
+
+    private static final String PACKAGE = "org.wildfly.extras.db_bootstrap.benchmark.generated.";
+
+    private final int classes;
+    private final int methods;
+    private final int cfgFiles;
+    private final int subdeployments;
+
+    /**
+     * @param classes - the number of bootstrap classes
+     * @param methods - the number of bootstrap methods per class
+     * @param cfgFiles - the number of Hibernate configuration files
+     * @param subdeployments - the number of subdeployments
+     */
+    BootstrapArchiveGenerator(int classes, int methods, int cfgFiles, int subdeployments) {
+        this.classes = classes;
+        this.methods = methods;
+        this.cfgFiles = cfgFiles;
+        this.subdeployments = subdeployments;
+    }
+
+    /**
+     * @return the name of the generated EAR, unique for the sizes of the archive
+     */
+    String getArchiveName() {
+        return String.format("bootstrap-benchmark-c%s-m%s-f%s-s%s.ear", classes, methods, cfgFiles, subdeployments);
+    }
+
+    /**
+     * @return the generated EAR
+     * @throws Exception if the classes can't be generated
+     */
+    EnterpriseArchive generate() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(BootstrapArchiveGenerator.class.getClassLoader()));
+
+        JavaArchive[] libraries = new JavaArchive[subdeployments];
+        for (int s = 0; s < subdeployments; s++) {
+            libraries[s] = ShrinkWrap.create(JavaArchive.class, String.format("bootstrap-%s.jar", s));
+        }
+        for (int i = 0; i < classes; i++) {
+            String className = PACKAGE + "Bootstrap" + i;
+            libraries[i % subdeployments].add(new ByteArrayAsset(generateClass(pool, className, i)), className.replace('.', '/') + ".class");
+        }
+
+        EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, getArchiveName());
+        JavaArchive cfgLibrary = ShrinkWrap.create(JavaArchive.class, "bootstrap-cfg.jar");
+        for (int f = 0; f < cfgFiles; f++) {
+            cfgLibrary.addAsManifestResource(new StringAsset(hibernateCfg(f)), String.format("bootstrap-benchmark-%s.cfg.xml", f));
+        }
+        ear.addAsLibrary(cfgLibrary);
+
+        StringBuilder subdeploymentStructure = new StringBuilder();
+        for (int s = 0; s < subdeployments; s++) {
+            String warName = String.format("bootstrap-%s.war", s);
+            WebArchive war = ShrinkWrap.create(WebArchive.class, warName);
+            war.addAsLibrary(libraries[s]);
+            ear.addAsModule(war);
+            subdeploymentStructure.append(String.format("<sub-deployment name=\"%s\">%s</sub-deployment>\n", warName, dependencies()));
+        }
+        ear.addAsManifestResource(new StringAsset(String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<jboss-deployment-structure>\n"
+                + "<deployment>%s</deployment>\n"
+                + "%s"
+                + "</jboss-deployment-structure>\n", dependencies(), subdeploymentStructure)), "jboss-deployment-structure.xml");
+        return ear;
+    }
+
+    private byte[] generateClass(ClassPool pool, String className, int i) throws Exception {
+        CtClass ctClass = pool.makeClass(className);
+        ClassFile classFile = ctClass.getClassFile();
+        ConstPool constPool = classFile.getConstPool();
+
+        int cfg = i % cfgFiles;
+        Annotation bootstrapDatabase = new Annotation(BootstrapDatabase.class.getName(), constPool);
+        bootstrapDatabase.addMemberValue("hibernateCfg",
+                new StringMemberValue(String.format("META-INF/bootstrap-benchmark-%s.cfg.xml", cfg), constPool));
+        bootstrapDatabase.addMemberValue("name", new StringMemberValue("benchmark" + cfg, constPool));
+        bootstrapDatabase.addMemberValue("priority", new IntegerMemberValue(constPool, i % 10));
+        classFile.addAttribute(annotations(constPool, bootstrapDatabase));
+
+        ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+        for (int m = 0; m < methods; m++) {
+            String annotation = m % 2 == 0 ? BootstrapSchema.class.getName() : UpdateSchema.class.getName();
+            CtMethod method = CtNewMethod.make(String.format("public void bootstrap%s(org.hibernate.Session session) {"
+                    + " session.createSQLQuery(\"CREATE TABLE IF NOT EXISTS BENCHMARK_%s_%s (ID INT)\").executeUpdate(); }", m, i, m), ctClass);
+            method.getMethodInfo().addAttribute(annotations(constPool, new Annotation(annotation, constPool)));
+            ctClass.addMethod(method);
+        }
+        try {
+            return ctClass.toBytecode();
+        } finally {
+            ctClass.detach();
+        }
+    }
+
+    private static AnnotationsAttribute annotations(ConstPool constPool, Annotation annotation) {
+        AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+        attribute.addAnnotation(annotation);
+        return attribute;
+    }
+
+    private static String hibernateCfg(int f) {
+        return "<!DOCTYPE hibernate-configuration SYSTEM "+
+                "\"http://www.hibernate.org/dtd/hibernate-configuration-3.0.dtd\">"+
+                "<hibernate-configuration>"+
+                "   <session-factory>"+
+                "        <property name=\"hibernate.connection.driver_class\">org.h2.Driver</property>"+
+                "        <property name=\"hibernate.connection.url\">jdbc:h2:mem:benchmark" + f + ";DB_CLOSE_DELAY=-1</property>"+
+                "        <property name=\"hibernate.connection.username\">sa</property>"+
+                "        <property name=\"hibernate.connection.password\">sa</property>"+
+                "        <property name=\"javax.persistence.validation.mode\">none</property>"+
+                "    </session-factory>"+
+                "</hibernate-configuration>";
+    }
+
+    private static String dependencies() {
+        return "<dependencies>\n" +
+                "    <module name = \"com.h2database.h2\" />\n" +
+                "    <module name = \"org.hibernate\" />\n" +
+                "    <module name = \"org.jboss.logging\" />\n" +
+                "    <module name = \"org.dom4j\" />\n" +
+                "    <module name = \"javax.api\" />\n" +
+                "    <module name = \"javax.persistence.api\" />\n" +
+                "    <module name = \"javax.transaction.api\" />\n" +
+                "    <module name = \"org.hibernate.commons-annotations\" />\n" +
+                "    <module name = \"org.javassist\" />\n" +
+                "</dependencies>";
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.benchmark;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.arquillian.test.api.ArquillianResource;
+import org.jboss.as.arquillian.container.ManagementClient;
+import org.jboss.as.controller.client.ModelControllerClient;
+import org.jboss.as.controller.client.helpers.Operations;
+import org.jboss.as.controller.client.helpers.standalone.ServerDeploymentHelper;
+import org.jboss.dmr.ModelNode;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Deploys synthetic EARs of increasing size to the managed WildFly and records how long the deployment takes, how
+ * much of it is spent bootstrapping the database, and how much heap the deployment retains. <br>
+ * <br>
+ * The benchmark only runs with <code>-Dbootstrap.benchmark=true</code>. The sizes of the archives are comma separated
+ * lists, every combination is deployed <code>bootstrap.benchmark.iterations</code> times:
+ * <ul>
+ * <li><code>bootstrap.benchmark.classes</code> - the number of bootstrap classes, default <code>10,100,500</code></li>
+ * <li><code>bootstrap.benchmark.methods</code> - the number of methods per class, default <code>2</code></li>
+ * <li><code>bootstrap.benchmark.cfg-files</code> - the number of Hibernate configuration files, default <code>1</code></li>
+ * <li><code>bootstrap.benchmark.subdeployments</code> - the number of subdeployments, default <code>1,10</code></li>
+ * </ul>
+ * The results are written as JSON to <code>bootstrap.benchmark.output</code>, so the scaling curves of two versions
+ * can be compared.
+ *
+ * @author Flemming Harms
+ * @see BootstrapArchiveGenerator
+ */
+@RunWith(Arquillian.class)
+@RunAsClient
+public class DeploymentBenchmarkITCase {
+
+    private static final String PREFIX = "bootstrap.benchmark";
+
+    @ArquillianResource
+    private ManagementClient managementClient;
+
+    @Deployment(testable = false)
+    public static Archive<?> deploy() {
+        // the benchmark deploys its own archives, Arquillian only needs an archive to manage the container
+        return ShrinkWrap.create(JavaArchive.class, "bootstrap-benchmark.jar");
+    }
+
+    @Test
+    public void testDeploymentScaling() throws Exception {
+        assumeTrue(Boolean.getBoolean(PREFIX));
+
+        int iterations = Integer.getInteger(PREFIX + ".iterations", 3);
+        ModelNode results = new ModelNode().setEmptyList();
+        for (int classes : sizes("classes", "10,100,500")) {
+            for (int methods : sizes("methods", "2")) {
+                for (int cfgFiles : sizes("cfg-files", "1")) {
+                    for (int subdeployments : sizes("subdeployments", "1,10")) {
+                        BootstrapArchiveGenerator generator = new BootstrapArchiveGenerator(classes, methods, cfgFiles, subdeployments);
+                        EnterpriseArchive ear = generator.generate();
+                        for (int iteration = 0; iteration < iterations; iteration++) {
+                            ModelNode result = deploy(generator.getArchiveName(), ear);
+                            result.get("classes").set(classes);
+                            result.get("methods").set(methods);
+                            result.get("cfg-files").set(cfgFiles);
+                            result.get("subdeployments").set(subdeployments);
+                            result.get("iteration").set(iteration);
+                            results.add(result);
+                        }
+                    }
+                }
+            }
+        }
+
+        Path output = Paths.get(System.getProperty(PREFIX + ".output", "target/deployment-benchmark.json"));
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write(results.toJSONString(false));
+        }
+    }
+
+    /**
+     * Deploy the archive with a scan of its own and undeploy it again.
+     *
+     * @return the deployment wall time, the db-bootstrap time and the heap delta of the deployment
+     */
+    private ModelNode deploy(String archiveName, EnterpriseArchive ear) throws Exception {
+        ModelControllerClient client = managementClient.getControllerClient();
+        ModelNode scanAddress = new ModelNode()
+                .add("subsystem", "db_bootstrap")
+                .add("bootstrap-deployments", "deployments")
+                .add("scan", archiveName);
+        ModelNode addScan = Operations.createAddOperation(scanAddress);
+        addScan.get("filename").set(archiveName);
+        execute(client, addScan);
+
+        ServerDeploymentHelper deploymentHelper = new ServerDeploymentHelper(client);
+        try {
+            long heapBefore = usedHeap(client);
+            long before = System.nanoTime();
+            try (InputStream content = ear.as(ZipExporter.class).exportAsInputStream()) {
+                deploymentHelper.deploy(archiveName, content);
+            }
+            long deploymentTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+            long heapAfter = usedHeap(client);
+
+            ModelNode result = new ModelNode();
+            result.get("archive").set(archiveName);
+            result.get("deployment-time").set(deploymentTime);
+            result.get("bootstrap-time").set(execute(client, Operations.createReadAttributeOperation(scanAddress, "total-duration")));
+            result.get("succeeded-methods").set(execute(client, Operations.createReadAttributeOperation(scanAddress, "succeeded-methods")));
+            result.get("heap-delta").set(heapAfter - heapBefore);
+            assertEquals(0, execute(client, Operations.createReadAttributeOperation(scanAddress, "failed-methods")).asLong());
+            return result;
+        } finally {
+            deploymentHelper.undeploy(archiveName);
+            execute(client, Operations.createRemoveOperation(scanAddress));
+        }
+    }
+
+    /**
+     * @return the heap used after a full garbage collection
+     */
+    private static long usedHeap(ModelControllerClient client) throws IOException {
+        ModelNode memory = new ModelNode()
+                .add("core-service", "platform-mbean")
+                .add("type", "memory");
+        execute(client, Operations.createOperation("gc", memory));
+        return execute(client, Operations.createReadAttributeOperation(memory, "heap-memory-usage")).get("used").asLong();
+    }
+
+    private static ModelNode execute(ModelControllerClient client, ModelNode operation) throws IOException {
+        ModelNode result = client.execute(operation);
+        if (!Operations.isSuccessfulOutcome(result)) {
+            throw new IllegalStateException(String.format("Operation %s failed: %s", operation, Operations.getFailureDescription(result)));
+        }
+        return Operations.readResult(result);
+    }
+
+    private static List<Integer> sizes(String name, String defaultValue) {
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : System.getProperty(PREFIX + "." + name, defaultValue).split(",")) {
+            sizes.add(Integer.valueOf(size.trim()));
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks, writing the results as JSON to <code>db-bootstrap-[version].json</code> so the results of
+ * two releases can be compared, e.g. with a JMH visualizer. <br>
+ * <br>
+ * All the JMH command line options are supported, passing <code>-rf</code> or <code>-rff</code> replaces the default
+ * result format and file.
+ *
+ * @author Flemming Harms
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf") && !arguments.contains("-rff")) {
+            String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+            arguments.addAll(Arrays.asList("-rf", "json", "-rff",
+                    String.format("db-bootstrap-%s.json", version != null ? version : "SNAPSHOT")));
+        }
+        Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.PathElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMetrics;
+import org.wildfly.extras.db_bootstrap.providers.HibernateBootstrapProvider;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a complete bootstrap run of a synthetic deployment through
+ * {@link DbBootstrapScanDetectorProcessor#processAnnotatedClasses}. <br>
+ * <br>
+ * Both phases of every class are executed against an in-memory H2 database, each method in a session and
+ * transaction of its own. The session factory is built once per trial, so the benchmark covers the scheduling,
+ * invocation plan and session handling of a run, not the Hibernate bootstrap.
+ *
+ * @author Flemming Harms
+ * @see SyntheticDeployment
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BootstrapRunBenchmark {
+
+    @Param({"100", "1000"})
+    public int classes;
+
+    @Param({"1", "4"})
+    public int maxThreads;
+
+    private SyntheticDeployment deployment;
+    private List<BootstrapClass> bootstrapClasses;
+    private BootstrapScan scan;
+    private BootstrapBudget budget;
+    private HibernateBootstrapProvider provider;
+    private DbBootstrapScanDetectorProcessor processor;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() throws Exception {
+        deployment = new SyntheticDeployment(classes);
+        bootstrapClasses = deployment.getBootstrapClasses();
+        BootstrapMetrics metrics = new BootstrapMetrics();
+        provider = new HibernateBootstrapProvider(null, metrics);
+        PathAddress address = PathAddress.pathAddress(DbBootstrapExtension.SUBSYSTEM_PATH,
+                PathElement.pathElement(DbBootstrapExtension.BOOTSTRAP_DEPLOYMENT, "benchmark"),
+                PathElement.pathElement(DbBootstrapExtension.SCAN, "benchmark"));
+        scan = new BootstrapScan(address, "benchmark.ear", null, maxThreads, "", 0, 0, 0, false, metrics, (overrides, scheduler) -> provider);
+        budget = new BootstrapBudget(scan, scan.getFilename(), null);
+        processor = new DbBootstrapScanDetectorProcessor(BootstrapScanRegistry.INSTANCE);
+        // stands in for the executor of the server
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        provider.close();
+    }
+
+    @Benchmark
+    public BootstrapScheduler run() throws Exception {
+        BootstrapScheduler scheduler = new BootstrapScheduler(bootstrapClasses);
+        processor.processAnnotatedClasses(scheduler, scan.getFilename(), scan, deployment.getClassLoader(), provider, budget, executor);
+        return scheduler;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.hibernate.Session;
+import org.jboss.jandex.DotName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMethod;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapParameter;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the invocation of the bootstrap methods through the {@link InvocationPlan} with the reflection path it
+ * replaced, which loaded and instantiated the bootstrap class and looked up the method for every annotated method. <br>
+ * <br>
+ * The <code>Run</code> benchmarks invoke both phases of a bootstrap class with a fresh plan, as done once per
+ * deployment. The <code>Invoke</code> benchmarks only measure the call of an already resolved method.
+ *
+ * @author Flemming Harms
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvocationBenchmark {
+
+    private ClassLoader classLoader;
+    private BootstrapClass bootstrapClass;
+    private BootstrapClass.AnnotatedMethod createSchema;
+    private BootstrapClass.AnnotatedMethod updateSchema;
+    private BootstrapMethod resolvedBootstrapMethod;
+    private Object resolvedInstance;
+    private Method resolvedMethod;
+
+    @Setup
+    public void setup() throws Exception {
+        classLoader = InvocationBenchmark.class.getClassLoader();
+        createSchema = new BootstrapClass.AnnotatedMethod(BootstrapClass.BOOTSTRAP_SCHEMA, "createSchema", null, BootstrapParameter.SESSION, false, Collections.emptyList());
+        updateSchema = new BootstrapClass.AnnotatedMethod(BootstrapClass.UPDATE_SCHEMA, "updateSchema", null, BootstrapParameter.SESSION, false, Collections.emptyList());
+        bootstrapClass = new BootstrapClass(Bootstrap.class.getName(), "", "", "", 0, 0, 0, 0, 1, Collections.emptySet(),
+                Arrays.asList(createSchema, updateSchema), null);
+
+        resolvedBootstrapMethod = new InvocationPlan(classLoader).getMethod(bootstrapClass, createSchema);
+        resolvedInstance = new Bootstrap();
+        resolvedMethod = Bootstrap.class.getMethod("createSchema", Session.class);
+    }
+
+    @Benchmark
+    public Object reflectionRun() throws Exception {
+        Object last = null;
+        for (String methodName : new String[] {"createSchema", "updateSchema"}) {
+            Class<?> clazz = classLoader.loadClass(bootstrapClass.getClassName());
+            Object instance = clazz.newInstance();
+            DotName sessionName = DotName.createSimple("org.hibernate.Session");
+            Class<?> sessionClass = classLoader.loadClass(sessionName.toString());
+            Method method = clazz.getMethod(methodName, sessionClass);
+            method.invoke(instance, (Object) null);
+            last = instance;
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Object methodHandleRun() throws Exception {
+        InvocationPlan plan = new InvocationPlan(classLoader);
+        plan.getMethod(bootstrapClass, createSchema).invoke((Object) null);
+        plan.getMethod(bootstrapClass, updateSchema).invoke((Object) null);
+        return plan;
+    }
+
+    @Benchmark
+    public Object reflectionInvoke() throws Exception {
+        return resolvedMethod.invoke(resolvedInstance, (Object) null);
+    }
+
+    @Benchmark
+    public Object methodHandleInvoke() throws Exception {
+        resolvedBootstrapMethod.invoke((Object) null);
+        return resolvedBootstrapMethod;
+    }
+
+    /**
+     * The bootstrap class invoked by the benchmarks
+     */
+    public static class Bootstrap {
+        private int calls;
+
+        public void createSchema(Session session) {
+            calls++;
+        }
+
+        public void updateSchema(Session session) {
+            calls--;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how the bootstrap classes of a deployment are found and ordered, before any of them is executed. <br>
+ * <br>
+ * <code>indexLookup</code> reads the {@link BootstrapDatabase} annotated classes of a synthetic deployment from its
+ * Jandex index, <code>schedule</code> builds and sorts the dependency graph of the {@link BootstrapScheduler}, and
+ * <code>lookupAndSchedule</code> does both as done once per deployment.
+ *
+ * @author Flemming Harms
+ * @see SyntheticDeployment
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    private static final DotName BOOTSTRAP_DATABASE = DotName.createSimple(BootstrapDatabase.class.getName());
+
+    @Param({"100", "1000", "5000"})
+    public int classes;
+
+    private Index index;
+    private List<BootstrapClass> bootstrapClasses;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticDeployment deployment = new SyntheticDeployment(classes);
+        index = deployment.getIndex();
+        bootstrapClasses = deployment.getBootstrapClasses();
+    }
+
+    @Benchmark
+    public List<BootstrapClass> indexLookup() {
+        return lookup();
+    }
+
+    @Benchmark
+    public List<BootstrapClass> schedule() throws Exception {
+        return new BootstrapScheduler(bootstrapClasses).getExecutionOrder();
+    }
+
+    @Benchmark
+    public List<BootstrapClass> lookupAndSchedule() throws Exception {
+        return new BootstrapScheduler(lookup()).getExecutionOrder();
+    }
+
+    private List<BootstrapClass> lookup() {
+        return index.getAnnotations(BOOTSTRAP_DATABASE)
+                .stream()
+                .map(BootstrapClass::fromIndex)
+                .collect(Collectors.toList());
+    }
+}
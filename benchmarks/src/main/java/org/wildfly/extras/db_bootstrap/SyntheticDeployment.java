@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema;
+import org.wildfly.extras.db_bootstrap.annotations.UpdateSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the {@link BootstrapDatabase} annotated classes of a synthetic deployment for the benchmarks. <br>
+ * <br>
+ * Every class has a {@link BootstrapSchema} and an {@link UpdateSchema} method taking a Hibernate Session, and one of
+ * ten priorities. All the classes share the in-memory H2 database of {@link #HIBERNATE_CFG}. Every tenth class starts a chain of nine classes each depending on the previous one, so both the
+ * priority ordering and the <code>dependsOn</code> graph of the scheduler are exercised.
+ *
+ * @author Flemming Harms
+ */
+final class SyntheticDeployment {
+
+    /**
+     * The Hibernate configuration of the benchmarks, connecting to an in-memory H2 database
+     */
+    static final String HIBERNATE_CFG = "META-INF/benchmark.cfg.xml";
+
+    private static final String PACKAGE = "org.wildfly.extras.db_bootstrap.synthetic.";
+    private static final int CHAIN_LENGTH = 10;
+
+    private final Map<String, byte[]> classFiles;
+    private final Index index;
+    private final ClassLoader classLoader;
+
+    /**
+     * @param classes - the number of bootstrap classes to generate
+     * @throws Exception if the classes can't be generated or indexed
+     */
+    SyntheticDeployment(final int classes) throws Exception {
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(SyntheticDeployment.class.getClassLoader()));
+        classFiles = new LinkedHashMap<>();
+        for (int i = 0; i < classes; i++) {
+            classFiles.put(className(i), generate(pool, i));
+        }
+
+        Indexer indexer = new Indexer();
+        for (byte[] classFile : classFiles.values()) {
+            indexer.index(new ByteArrayInputStream(classFile));
+        }
+        index = indexer.complete();
+        classLoader = new SyntheticClassLoader(classFiles, SyntheticDeployment.class.getClassLoader());
+    }
+
+    /**
+     * @return the annotation index of the deployment
+     */
+    Index getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the class loader defining the generated classes
+     */
+    ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * @return the bootstrap classes of the deployment, as found by the deployment processors
+     */
+    List<BootstrapClass> getBootstrapClasses() {
+        return index.getAnnotations(DotName.createSimple(BootstrapDatabase.class.getName()))
+                .stream()
+                .map(BootstrapClass::fromIndex)
+                .collect(Collectors.toList());
+    }
+
+    private static String className(final int i) {
+        return PACKAGE + "Bootstrap" + i;
+    }
+
+    private static byte[] generate(final ClassPool pool, final int i) throws Exception {
+        CtClass ctClass = pool.makeClass(className(i));
+        ClassFile classFile = ctClass.getClassFile();
+        ConstPool constPool = classFile.getConstPool();
+
+        Annotation bootstrapDatabase = new Annotation(BootstrapDatabase.class.getName(), constPool);
+        bootstrapDatabase.addMemberValue("hibernateCfg", new StringMemberValue(HIBERNATE_CFG, constPool));
+        bootstrapDatabase.addMemberValue("name", new StringMemberValue("benchmark", constPool));
+        bootstrapDatabase.addMemberValue("priority", new IntegerMemberValue(constPool, i % 10));
+        if (i % CHAIN_LENGTH != 0) {
+            ArrayMemberValue dependsOn = new ArrayMemberValue(new ClassMemberValue(constPool), constPool);
+            dependsOn.setValue(new MemberValue[] {new ClassMemberValue(className(i - 1), constPool)});
+            bootstrapDatabase.addMemberValue("dependsOn", dependsOn);
+        }
+        classFile.addAttribute(annotations(constPool, bootstrapDatabase));
+
+        ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+        addMethod(ctClass, "createSchema", BootstrapSchema.class.getName());
+        addMethod(ctClass, "updateSchema", UpdateSchema.class.getName());
+        try {
+            return ctClass.toBytecode();
+        } finally {
+            ctClass.detach();
+        }
+    }
+
+    private static void addMethod(final CtClass ctClass, final String name, final String annotation) throws Exception {
+        CtMethod method = CtNewMethod.make(String.format("public void %s(org.hibernate.Session session) {}", name), ctClass);
+        ConstPool constPool = ctClass.getClassFile().getConstPool();
+        method.getMethodInfo().addAttribute(annotations(constPool, new Annotation(annotation, constPool)));
+        ctClass.addMethod(method);
+    }
+
+    private static AnnotationsAttribute annotations(final ConstPool constPool, final Annotation annotation) {
+        AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+        attribute.addAnnotation(annotation);
+        return attribute;
+    }
+
+    /**
+     * Defines the generated classes, the class files are also served as resources for the method checksums
+     */
+    private static final class SyntheticClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classFiles;
+
+        SyntheticClassLoader(final Map<String, byte[]> classFiles, final ClassLoader parent) {
+            super(parent);
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            byte[] classFile = classFiles.get(name);
+            if (classFile == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+
+        @Override
+        public InputStream getResourceAsStream(final String name) {
+            if (name.endsWith(".class")) {
+                byte[] classFile = classFiles.get(name.substring(0, name.length() - 6).replace('/', '.'));
+                if (classFile != null) {
+                    return new ByteArrayInputStream(classFile);
+                }
+            }
+            return super.getResourceAsStream(name);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link HibernateBootstrapProvider} against an in-memory H2 database. <br>
+ * <br>
+ * <code>invokeWithParameters</code> is the overhead of calling a bootstrap method taking a {@link Session} once the
+ * session factory is built: opening the session, the transaction and, with a ledger table, the checksum of the method
+ * and the ledger row. <code>sessionFactoryBuild</code> is the cost of the first such call of a bootstrap run, which
+ * builds the session factory of the Hibernate configuration, and closing it again.
+ *
+ * @author Flemming Harms
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProviderBenchmark {
+
+    private static final SessionConfiguration CONFIGURATION = new SessionConfiguration("benchmark", "META-INF/benchmark.cfg.xml", "", 0, 0);
+    private static final String SESSION_DESCRIPTOR = "(Lorg/hibernate/Session;)V";
+
+    /**
+     * The ledger table, empty to invoke without a ledger
+     */
+    @Param({"", "DB_BOOTSTRAP_LEDGER"})
+    public String ledgerTable;
+
+    private ClassLoader classLoader;
+    private HibernateBootstrapProvider provider;
+    private BootstrapMethod method;
+
+    @Setup
+    public void setup() throws Exception {
+        classLoader = ProviderBenchmark.class.getClassLoader();
+        provider = new HibernateBootstrapProvider(ledgerTable.isEmpty() ? null : ledgerTable);
+        method = new SessionMethod();
+        // build the session factory and apply the method to the ledger before measuring
+        provider.invokeWithParameters(CONFIGURATION, classLoader, method, Collections.emptyList(), true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.close();
+    }
+
+    @Benchmark
+    public BootstrapMethod invokeWithParameters() throws Exception {
+        provider.invokeWithParameters(CONFIGURATION, classLoader, method, Collections.emptyList(), true);
+        return method;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public BootstrapMethod sessionFactoryBuild() throws Exception {
+        try (HibernateBootstrapProvider coldProvider = new HibernateBootstrapProvider()) {
+            coldProvider.invokeWithParameters(CONFIGURATION, classLoader, method, Collections.emptyList(), true);
+        }
+        return method;
+    }
+
+    /**
+     * A bootstrap method taking a session and doing nothing with it
+     */
+    private static final class SessionMethod implements BootstrapMethod {
+
+        @Override
+        public String getClassName() {
+            return Bootstrap.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return "createSchema";
+        }
+
+        @Override
+        public String getDescriptor() {
+            return SESSION_DESCRIPTOR;
+        }
+
+        @Override
+        public void invoke(Object... parameters) {
+            Bootstrap.createSchema((Session) parameters[0]);
+        }
+    }
+
+    /**
+     * The bootstrap class of the method, read by the ledger checksum
+     */
+    public static class Bootstrap {
+
+        public static void createSchema(Session session) {
+        }
+    }
+}
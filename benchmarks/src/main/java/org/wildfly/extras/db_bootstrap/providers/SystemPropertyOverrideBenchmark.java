@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the <code>dbbootstrap.[name].*</code> system properties overriding the Hibernate configuration are
+ * applied by {@link HibernateBootstrapProvider#configureSettingsFromSystemProperties} when the server has a large
+ * number of system properties, and how long the {@link ConfigurationOverrides} snapshot taken once per deployment
+ * takes. Ten of the properties override the configuration of the benchmark, the others belong to other configurations
+ * or are unrelated.
+ *
+ * @author Flemming Harms
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SystemPropertyOverrideBenchmark {
+
+    private static final int OVERRIDES = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int systemProperties;
+
+    private ConfigurationOverrides overrides;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < systemProperties; i++) {
+            System.setProperty(propertyName(i), String.valueOf(i));
+        }
+        overrides = ConfigurationOverrides.fromEnvironment();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (int i = 0; i < systemProperties; i++) {
+            System.clearProperty(propertyName(i));
+        }
+    }
+
+    @Benchmark
+    public StandardServiceRegistryBuilder configureSettingsFromSystemProperties() {
+        StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder();
+        HibernateBootstrapProvider.configureSettingsFromSystemProperties(overrides, "benchmark", builder);
+        return builder;
+    }
+
+    @Benchmark
+    public ConfigurationOverrides snapshot() {
+        return ConfigurationOverrides.fromEnvironment();
+    }
+
+    private static String propertyName(final int i) {
+        if (i < OVERRIDES) {
+            return String.format("%s.benchmark.hibernate.property%s", HibernateBootstrapProvider.DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX, i);
+        } else if (i % 2 == 0) {
+            return String.format("%s.other%s.hibernate.property%s", HibernateBootstrapProvider.DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX, i, i);
+        }
+        return String.format("benchmark.unrelated.property%s", i);
+    }
+}
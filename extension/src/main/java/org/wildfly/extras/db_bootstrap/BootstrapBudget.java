@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The time budget of a scan for a top level deployment, configured with <code>time-budget</code>. The budget starts
+ * when the scan first bootstraps a unit of the deployment and is shared by all its units. <br>
+ * <br>
+ * While a unit is bootstrapped, a watchdog is scheduled for the end of the budget. When it fires, the budget is
+ * expired, the running statements of the provider are cancelled and the threads executing bootstrap methods are
+ * interrupted. No further bootstrap method is started, and the deployment fails with the methods that were running.
+ */
+final class BootstrapBudget {
+
+    private final String description;
+    private final int seconds;
+    private final long deadline;
+    private final ScheduledExecutorService watchdog;
+    private final Map<Thread, RunningMethod> running = new ConcurrentHashMap<>();
+    private volatile String expired;
+
+    /**
+     * @param scan - the scan bootstrapping the deployment
+     * @param deploymentName - the name of the top level deployment
+     * @param watchdog - the scheduled executor of the server, expiring the budget
+     */
+    BootstrapBudget(final BootstrapScan scan, final String deploymentName, final ScheduledExecutorService watchdog) {
+        this.description = String.format("scan %s of %s", scan.getName(), deploymentName);
+        this.seconds = scan.getTimeBudget();
+        this.deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Watch the provider of a bootstrap run until the returned watch is finished
+     *
+     * @param provider - the provider of the bootstrap run, cancelled when the budget expires
+     * @return the watch of the bootstrap run
+     * @throws DeploymentUnitProcessingException if the budget has already expired
+     */
+    Watch watch(final BootstrapProvider provider) throws DeploymentUnitProcessingException {
+        if (seconds <= 0) {
+            return () -> { };
+        }
+        checkExpired();
+        ScheduledFuture<?> future = watchdog.schedule(() -> expire(provider), deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return () -> {
+            future.cancel(false);
+            if (expired != null) {
+                // don't leave the interrupt of an expired method to the deployment thread
+                Thread.interrupted();
+            }
+        };
+    }
+
+    /**
+     * Register the current thread as executing the bootstrap method
+     *
+     * @param className - the bootstrap class
+     * @param methodName - the name of the bootstrap method
+     * @throws DeploymentUnitProcessingException if the budget has expired
+     */
+    void started(final String className, final String methodName) throws DeploymentUnitProcessingException {
+        if (seconds <= 0) {
+            return;
+        }
+        checkExpired();
+        running.put(Thread.currentThread(), new RunningMethod(className + '.' + methodName));
+    }
+
+    /**
+     * Unregister the bootstrap method executed by the current thread
+     */
+    void completed() {
+        if (seconds > 0) {
+            running.remove(Thread.currentThread());
+        }
+    }
+
+    /**
+     * @throws DeploymentUnitProcessingException if the budget has expired, naming the methods that were running
+     */
+    void checkExpired() throws DeploymentUnitProcessingException {
+        if (expired != null) {
+            throw new DeploymentUnitProcessingException(expired);
+        }
+    }
+
+    private void expire(final BootstrapProvider provider) {
+        long now = System.nanoTime();
+        String methods = running.values().stream()
+                .map(method -> String.format("%s (running for %s ms)", method.name, TimeUnit.NANOSECONDS.toMillis(now - method.started)))
+                .collect(Collectors.joining(", "));
+        expired = String.format("Time budget of %s seconds exceeded by %s, running bootstrap methods: %s", seconds, description,
+                methods.isEmpty() ? "none" : methods);
+        DbBootstrapLogger.ROOT_LOGGER.error(expired);
+        try {
+            provider.cancel();
+        } catch (RuntimeException e) {
+            DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Unable to cancel the statements of %s", description);
+        }
+        running.keySet().forEach(Thread::interrupt);
+    }
+
+    /**
+     * The watch of a bootstrap run, finished in a finally block when the run is done
+     */
+    @FunctionalInterface
+    interface Watch {
+        void finish();
+    }
+
+    private static final class RunningMethod {
+        private final String name;
+        private final long started = System.nanoTime();
+
+        private RunningMethod(final String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationValue;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.MethodInfo;
+import org.jboss.jandex.Type;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema;
+import org.wildfly.extras.db_bootstrap.annotations.SeedData;
+import org.wildfly.extras.db_bootstrap.annotations.SqlScript;
+import org.wildfly.extras.db_bootstrap.annotations.UpdateSchema;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapParameter;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapResource;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapScript;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapSeedData;
+import org.wildfly.extras.db_bootstrap.providers.SessionConfiguration;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase} annotated class of a deployment and its
+ * annotated methods, either read from the annotation index of the deployment, from a bootstrap plan generated at
+ * build time or from a class listed explicitly on the scan.
+ *
+ * @see BootstrapPlan
+ */
+final class BootstrapClass {
+
+    static final DotName BOOTSTRAP_SCHEMA = DotName.createSimple(BootstrapSchema.class.getName());
+    static final DotName UPDATE_SCHEMA = DotName.createSimple(UpdateSchema.class.getName());
+    static final DotName SQL_SCRIPT = DotName.createSimple(SqlScript.class.getName());
+    static final DotName SEED_DATA = DotName.createSimple(SeedData.class.getName());
+    private final String className;
+    private final String hibernateCfg;
+    private final String name;
+    private final String datasource;
+    private final int batchSize;
+    private final int fetchSize;
+    private final int queryTimeout;
+    private final int lockTimeout;
+    private final int priority;
+    private final Set<String> dependsOn;
+    private final List<AnnotatedMethod> methods;
+    private final String invoker;
+
+    /**
+     * @param className - the name of the bootstrap class
+     * @param hibernateCfg - the hibernate configuration file, empty if not specified
+     * @param name - the name of the configuration, empty if not specified
+     * @param datasource - the JNDI name of the datasource, empty if not specified
+     * @param batchSize - the JDBC batch size of the sessions, 0 if not specified
+     * @param fetchSize - the JDBC fetch size of the sessions, 0 if not specified
+     * @param queryTimeout - the JDBC query timeout in seconds of the statements, 0 if not specified
+     * @param lockTimeout - the lock wait timeout in seconds of the sessions, 0 if not specified
+     * @param priority - the priority of the class
+     * @param dependsOn - the names of the bootstrap classes this class depends on
+     * @param methods - the annotated methods of the class
+     * @param invoker - the generated invoker of the class, or <code>null</code> to invoke the methods through method handles
+     */
+    BootstrapClass(final String className, final String hibernateCfg, final String name, final String datasource, final int batchSize,
+            final int fetchSize, final int queryTimeout, final int lockTimeout, final int priority, final Set<String> dependsOn,
+            final List<AnnotatedMethod> methods, final String invoker) {
+        this.className = className;
+        this.hibernateCfg = hibernateCfg;
+        this.name = name;
+        this.datasource = datasource;
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+        this.queryTimeout = queryTimeout;
+        this.lockTimeout = lockTimeout;
+        this.priority = priority;
+        this.dependsOn = Collections.unmodifiableSet(dependsOn);
+        this.methods = Collections.unmodifiableList(methods);
+        this.invoker = invoker;
+    }
+
+    /**
+     * Create the bootstrap class from the annotation index of the deployment
+     *
+     * @param annotationInstance - the {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase} annotation
+     * @return the bootstrap class
+     */
+    static BootstrapClass fromIndex(final AnnotationInstance annotationInstance) {
+        ClassInfo classInfo = (ClassInfo) annotationInstance.target();
+        List<AnnotatedMethod> methods = new ArrayList<>();
+        for (DotName annotation : new DotName[] {BOOTSTRAP_SCHEMA, UPDATE_SCHEMA}) {
+            List<AnnotationInstance> methodAnnotations = classInfo.annotations().get(annotation);
+            if (methodAnnotations == null) {
+                continue;
+            }
+            methodAnnotations.stream()
+                    .filter(methodAnnotation -> methodAnnotation.target() instanceof MethodInfo)
+                    .forEach(methodAnnotation -> {
+                        MethodInfo method = (MethodInfo) methodAnnotation.target();
+                        BootstrapParameter parameter = method.args().length == 1
+                                ? BootstrapParameter.forTypeName(method.args()[0].name().toString())
+                                : null;
+                        boolean alwaysRun = Optional.ofNullable(methodAnnotation.value("alwaysRun"))
+                                .map(AnnotationValue::asBoolean)
+                                .orElse(false);
+                        methods.add(new AnnotatedMethod(annotation, method.name(), null, parameter, alwaysRun, resources(classInfo, method)));
+                    });
+        }
+
+        Set<String> dependsOn = Optional.ofNullable(annotationInstance.value("dependsOn"))
+                .map(value -> Stream.of(value.asClassArray())
+                        .map(Type::name)
+                        .map(DotName::toString)
+                        .collect(Collectors.toCollection(LinkedHashSet::new)))
+                .orElseGet(LinkedHashSet::new);
+
+        return new BootstrapClass(classInfo.name().toString(),
+                stringValue(annotationInstance, "hibernateCfg"),
+                stringValue(annotationInstance, "name"),
+                stringValue(annotationInstance, "datasource"),
+                intValue(annotationInstance, "batchSize", 0),
+                intValue(annotationInstance, "fetchSize", 0),
+                intValue(annotationInstance, "queryTimeout", 0),
+                intValue(annotationInstance, "lockTimeout", 0),
+                intValue(annotationInstance, "priority", 1),
+                dependsOn,
+                methods,
+                null);
+    }
+
+    /**
+     * @param annotationInstance - the {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase} annotation
+     *            of the class in the annotation index
+     * @return true if the attributes of the class, e.g. read from a bootstrap plan, are those of the annotation
+     */
+    boolean hasAttributesOf(final AnnotationInstance annotationInstance) {
+        Set<String> indexedDependsOn = Optional.ofNullable(annotationInstance.value("dependsOn"))
+                .map(value -> Stream.of(value.asClassArray())
+                        .map(type -> type.name().toString())
+                        .collect(Collectors.toSet()))
+                .orElseGet(Collections::emptySet);
+        return hibernateCfg.equals(stringValue(annotationInstance, "hibernateCfg"))
+                && name.equals(stringValue(annotationInstance, "name"))
+                && datasource.equals(stringValue(annotationInstance, "datasource"))
+                && batchSize == intValue(annotationInstance, "batchSize", 0)
+                && fetchSize == intValue(annotationInstance, "fetchSize", 0)
+                && queryTimeout == intValue(annotationInstance, "queryTimeout", 0)
+                && lockTimeout == intValue(annotationInstance, "lockTimeout", 0)
+                && priority == intValue(annotationInstance, "priority", 1)
+                && dependsOn.equals(indexedDependsOn);
+    }
+
+    /**
+     * Create the bootstrap class from the annotations of a loaded class, without consulting the annotation index.
+     *
+     * @param clazz - the class, loaded through the module of the deployment
+     * @return the bootstrap class, or <code>null</code> if the class isn't annotated with {@link BootstrapDatabase}
+     */
+    static BootstrapClass fromClass(final Class<?> clazz) {
+        BootstrapDatabase bootstrapDatabase = clazz.getAnnotation(BootstrapDatabase.class);
+        if (bootstrapDatabase == null) {
+            return null;
+        }
+        Method[] declaredMethods = clazz.getDeclaredMethods();
+        Arrays.sort(declaredMethods, Comparator.comparing(Method::getName));
+        List<AnnotatedMethod> methods = new ArrayList<>();
+        for (DotName annotation : new DotName[] {BOOTSTRAP_SCHEMA, UPDATE_SCHEMA}) {
+            for (Method method : declaredMethods) {
+                Boolean alwaysRun = null;
+                if (annotation == BOOTSTRAP_SCHEMA && method.isAnnotationPresent(BootstrapSchema.class)) {
+                    alwaysRun = method.getAnnotation(BootstrapSchema.class).alwaysRun();
+                } else if (annotation == UPDATE_SCHEMA && method.isAnnotationPresent(UpdateSchema.class)) {
+                    alwaysRun = method.getAnnotation(UpdateSchema.class).alwaysRun();
+                }
+                if (alwaysRun == null) {
+                    continue;
+                }
+                BootstrapParameter parameter = method.getParameterCount() == 1
+                        ? BootstrapParameter.forTypeName(method.getParameterTypes()[0].getName())
+                        : null;
+                methods.add(new AnnotatedMethod(annotation, method.getName(), null, parameter, alwaysRun, resources(method)));
+            }
+        }
+
+        Set<String> dependsOn = Stream.of(bootstrapDatabase.dependsOn())
+                .map(Class::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        return new BootstrapClass(clazz.getName(),
+                bootstrapDatabase.hibernateCfg(),
+                bootstrapDatabase.name(),
+                bootstrapDatabase.datasource(),
+                bootstrapDatabase.batchSize(),
+                bootstrapDatabase.fetchSize(),
+                bootstrapDatabase.queryTimeout(),
+                bootstrapDatabase.lockTimeout(),
+                bootstrapDatabase.priority(),
+                dependsOn,
+                methods,
+                null);
+    }
+
+    /**
+     * @return the {@link SqlScript} and {@link SeedData} of the loaded method, in the order they are applied
+     */
+    private static List<BootstrapResource> resources(final Method method) {
+        List<BootstrapResource> resources = new ArrayList<>();
+        SqlScript sqlScript = method.getAnnotation(SqlScript.class);
+        if (sqlScript != null) {
+            resources.add(new BootstrapScript(sqlScript.value(), sqlScript.delimiter(), sqlScript.batchSize(), sqlScript.commitInterval()));
+        }
+        SeedData seedData = method.getAnnotation(SeedData.class);
+        if (seedData != null) {
+            resources.add(new BootstrapSeedData(seedData.table(), seedData.resource(), seedData.format(), seedData.columns(),
+                    seedData.header(), seedData.keys(), seedData.rowsPerStatement(), seedData.batchSize(), seedData.commitInterval()));
+        }
+        return resources;
+    }
+
+    /**
+     * @return the {@link SqlScript} and {@link SeedData} of the method, in the order they are applied
+     */
+    private static List<BootstrapResource> resources(final ClassInfo classInfo, final MethodInfo method) {
+        List<BootstrapResource> resources = new ArrayList<>();
+        methodAnnotation(classInfo, method, SQL_SCRIPT).ifPresent(sqlScript -> resources.add(new BootstrapScript(
+                sqlScript.value().asString(),
+                Optional.ofNullable(sqlScript.value("delimiter")).map(AnnotationValue::asString).orElse(";"),
+                intValue(sqlScript, "batchSize", 100),
+                intValue(sqlScript, "commitInterval", 0))));
+        methodAnnotation(classInfo, method, SEED_DATA).ifPresent(seedData -> resources.add(new BootstrapSeedData(
+                stringValue(seedData, "table"),
+                stringValue(seedData, "resource"),
+                Optional.ofNullable(seedData.value("format")).map(value -> SeedData.Format.valueOf(value.asEnum())).orElse(SeedData.Format.CSV),
+                Optional.ofNullable(seedData.value("columns")).map(AnnotationValue::asStringArray).orElse(new String[0]),
+                Optional.ofNullable(seedData.value("header")).map(AnnotationValue::asBoolean).orElse(true),
+                Optional.ofNullable(seedData.value("keys")).map(AnnotationValue::asStringArray).orElse(new String[0]),
+                intValue(seedData, "rowsPerStatement", 100),
+                intValue(seedData, "batchSize", 50),
+                intValue(seedData, "commitInterval", 0))));
+        return resources;
+    }
+
+    private static Optional<AnnotationInstance> methodAnnotation(final ClassInfo classInfo, final MethodInfo method, final DotName annotation) {
+        return Optional.ofNullable(classInfo.annotations().get(annotation))
+                .flatMap(instances -> instances.stream()
+                        .filter(instance -> method.equals(instance.target()))
+                        .findFirst());
+    }
+
+    private static String stringValue(final AnnotationInstance annotationInstance, final String name) {
+        return Optional.ofNullable(annotationInstance.value(name))
+                .map(AnnotationValue::asString)
+                .orElse("");
+    }
+
+    private static int intValue(final AnnotationInstance annotationInstance, final String name, final int defaultValue) {
+        return Optional.ofNullable(annotationInstance.value(name))
+                .map(AnnotationValue::asInt)
+                .orElse(defaultValue);
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getHibernateCfg() {
+        return hibernateCfg;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getDatasource() {
+        return datasource;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    int getFetchSize() {
+        return fetchSize;
+    }
+
+    int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    int getLockTimeout() {
+        return lockTimeout;
+    }
+
+    /**
+     * @param scan - the scan, whose datasource and timeouts are used if the class doesn't specify them
+     * @return the configuration of the sessions passed to the methods of the class
+     */
+    SessionConfiguration getSessionConfiguration(final BootstrapScan scan) {
+        return new SessionConfiguration(name, hibernateCfg, datasource.isEmpty() ? scan.getDatasource() : datasource, batchSize, fetchSize,
+                queryTimeout > 0 ? queryTimeout : scan.getQueryTimeout(), lockTimeout > 0 ? lockTimeout : scan.getLockTimeout());
+    }
+
+    int getPriority() {
+        return priority;
+    }
+
+    Set<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * @return all the annotated methods of the class
+     */
+    List<AnnotatedMethod> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @param annotation - the name of the method annotation
+     * @return the methods annotated with the annotation
+     */
+    List<AnnotatedMethod> getMethods(final DotName annotation) {
+        return methods.stream()
+                .filter(method -> method.annotation.equals(annotation))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the generated invoker of the class, or <code>null</code> if the methods are invoked through method handles
+     */
+    String getInvoker() {
+        return invoker;
+    }
+
+    @Override
+    public String toString() {
+        return className;
+    }
+
+    /**
+     * A method annotated with {@link BootstrapSchema} or {@link UpdateSchema}
+     */
+    static final class AnnotatedMethod {
+        private final DotName annotation;
+        private final String name;
+        private final String descriptor;
+        private final BootstrapParameter parameter;
+        private final boolean alwaysRun;
+        private final List<BootstrapResource> resources;
+
+        /**
+         * @param annotation - the name of the method annotation
+         * @param name - the name of the method
+         * @param descriptor - the JVM descriptor of the method, or <code>null</code> if not known before the method is resolved
+         * @param parameter - the parameter of the method, or <code>null</code> if the method has no parameters
+         * @param alwaysRun - true if the method is invoked even if it has already been applied
+         * @param resources - the resources applied before the method is invoked
+         */
+        AnnotatedMethod(final DotName annotation, final String name, final String descriptor, final BootstrapParameter parameter,
+                final boolean alwaysRun, final List<BootstrapResource> resources) {
+            this.annotation = annotation;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.parameter = parameter;
+            this.alwaysRun = alwaysRun;
+            this.resources = Collections.unmodifiableList(resources);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * @return the parameter of the method, or <code>null</code> if the method has no parameters
+         */
+        BootstrapParameter getParameter() {
+            return parameter;
+        }
+
+        boolean isAlwaysRun() {
+            return alwaysRun;
+        }
+
+        /**
+         * @return the {@link SqlScript} and {@link SeedData} applied before the method is invoked, in order
+         */
+        List<BootstrapResource> getResources() {
+            return resources;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.jandex.DotName;
+import org.jboss.vfs.VirtualFile;
+import org.wildfly.extras.db_bootstrap.annotations.SeedData;
+import org.wildfly.extras.db_bootstrap.processor.BootstrapPlanProcessor;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapParameter;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapResource;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapScript;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapSeedData;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the bootstrap plan generated by the {@link BootstrapPlanProcessor} at build time.
+ *
+ * @see BootstrapPlanProcessor
+ */
+final class BootstrapPlan {
+
+    private BootstrapPlan() {
+    }
+
+    /**
+     * @param root - the root of the archive
+     * @return the bootstrap plan file of the archive, or <code>null</code> if the archive has no plan
+     */
+    static VirtualFile find(final VirtualFile root) {
+        VirtualFile plan = root.getChild(BootstrapPlanProcessor.PLAN);
+        return plan.exists() ? plan : null;
+    }
+
+    /**
+     * @param plan - the bootstrap plan file
+     * @return the bootstrap classes of the plan
+     * @throws DeploymentUnitProcessingException if the plan can't be read
+     */
+    static List<BootstrapClass> read(final VirtualFile plan) throws DeploymentUnitProcessingException {
+        List<BootstrapClass> bootstrapClasses = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(plan.openStream(), StandardCharsets.UTF_8))) {
+            String[] classEntry = null;
+            List<BootstrapClass.AnnotatedMethod> methods = new ArrayList<>();
+            String[] methodEntry = null;
+            List<BootstrapResource> resources = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] entry = line.split("\t", -1);
+                if ("script".equals(entry[0]) && entry.length == 5 && methodEntry != null) {
+                    resources.add(new BootstrapScript(entry[1], entry[2], Integer.parseInt(entry[3]), Integer.parseInt(entry[4])));
+                    continue;
+                }
+                if ("seed".equals(entry[0]) && entry.length == 10 && methodEntry != null) {
+                    resources.add(new BootstrapSeedData(entry[1], entry[2], SeedData.Format.valueOf(entry[3]), list(entry[4]),
+                            Boolean.parseBoolean(entry[5]), list(entry[6]), Integer.parseInt(entry[7]), Integer.parseInt(entry[8]),
+                            Integer.parseInt(entry[9])));
+                    continue;
+                }
+                if (methodEntry != null) {
+                    methods.add(annotatedMethod(methodEntry, resources));
+                    methodEntry = null;
+                    resources = new ArrayList<>();
+                }
+                if ("class".equals(entry[0]) && entry.length == 12) {
+                    if (classEntry != null) {
+                        bootstrapClasses.add(bootstrapClass(classEntry, methods));
+                    }
+                    classEntry = entry;
+                    methods = new ArrayList<>();
+                } else if ("method".equals(entry[0]) && entry.length == 5 && classEntry != null) {
+                    methodEntry = entry;
+                } else {
+                    throw new DeploymentUnitProcessingException(String.format("Invalid entry '%s' in bootstrap plan %s", line, plan.getPathName()));
+                }
+            }
+            if (methodEntry != null) {
+                methods.add(annotatedMethod(methodEntry, resources));
+            }
+            if (classEntry != null) {
+                bootstrapClasses.add(bootstrapClass(classEntry, methods));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new DeploymentUnitProcessingException(String.format("Unable to read bootstrap plan %s", plan.getPathName()), e);
+        }
+        return bootstrapClasses;
+    }
+
+    private static BootstrapClass.AnnotatedMethod annotatedMethod(final String[] entry, final List<BootstrapResource> resources) {
+        return new BootstrapClass.AnnotatedMethod(DotName.createSimple(entry[1]), entry[2], entry[3],
+                BootstrapParameter.forMethodDescriptor(entry[3]), Boolean.parseBoolean(entry[4]), resources);
+    }
+
+    private static String[] list(final String entry) {
+        return entry.isEmpty() ? new String[0] : entry.split(",");
+    }
+
+    private static BootstrapClass bootstrapClass(final String[] entry, final List<BootstrapClass.AnnotatedMethod> methods) {
+        Set<String> dependsOn = new LinkedHashSet<>();
+        if (!entry[6].isEmpty()) {
+            dependsOn.addAll(Arrays.asList(entry[6].split(",")));
+        }
+        return new BootstrapClass(entry[1], entry[4], entry[5], entry[7], Integer.parseInt(entry[8]), Integer.parseInt(entry[9]),
+                Integer.parseInt(entry[10]), Integer.parseInt(entry[11]), Integer.parseInt(entry[3]), dependsOn, methods, entry[2]);
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.controller.PathAddress;
+import org.wildfly.extras.db_bootstrap.matchfilter.FilenameContainFilter;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMetrics;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapProvider;
+import org.wildfly.extras.db_bootstrap.providers.ConfigurationOverrides;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * The configuration of a <code>scan</code> resource, resolved from the management model when the scan is added.
+ *
+ * @see BootstrapScanRegistry
+ */
+final class BootstrapScan {
+
+    private final PathAddress address;
+    private final String filename;
+    private final FilenameContainFilter filter;
+    private final int maxThreads;
+    private final String datasource;
+    private final int queryTimeout;
+    private final int lockTimeout;
+    private final int timeBudget;
+    private final boolean async;
+    private final BootstrapMetrics metrics;
+    private final BiFunction<ConfigurationOverrides, ScheduledExecutorService, ? extends BootstrapProvider> providerFactory;
+    private final AtomicLong avoidedDuplicateRuns = new AtomicLong();
+    private volatile List<String> classNames = Collections.emptyList();
+
+    /**
+     * @param address - the address of the scan resource
+     * @param filename - the name of the deployment to scan
+     * @param filter - the archives of the deployment searched for bootstrap classes, or <code>null</code> to search all of them
+     * @param maxThreads - the maximum number of threads used to execute bootstrap classes with the same priority
+     * @param datasource - the JNDI name of the datasource of the bootstrap classes not specifying one, empty if not specified
+     * @param queryTimeout - the JDBC query timeout in seconds of the bootstrap classes not specifying one, 0 for no timeout
+     * @param lockTimeout - the lock wait timeout in seconds of the bootstrap classes not specifying one, 0 to keep the database default
+     * @param timeBudget - the time in seconds a bootstrap run of a top level deployment may take before it is cancelled, 0 for no limit
+     * @param async - true to bootstrap the deployment in a service of its own, without holding the deployment thread
+     * @param metrics - the runtime metrics of the scan
+     * @param providerFactory - creates a new provider for every bootstrap run, with the configuration overrides of the deployment
+     *                        and the scheduled executor of the server
+     */
+    BootstrapScan(final PathAddress address, final String filename, final FilenameContainFilter filter, final int maxThreads, final String datasource,
+            final int queryTimeout, final int lockTimeout, final int timeBudget, final boolean async, final BootstrapMetrics metrics,
+            final BiFunction<ConfigurationOverrides, ScheduledExecutorService, ? extends BootstrapProvider> providerFactory) {
+        this.address = address;
+        this.filename = filename;
+        this.filter = filter;
+        this.maxThreads = maxThreads;
+        this.datasource = datasource;
+        this.queryTimeout = queryTimeout;
+        this.lockTimeout = lockTimeout;
+        this.timeBudget = timeBudget;
+        this.async = async;
+        this.metrics = metrics;
+        this.providerFactory = providerFactory;
+    }
+
+    /**
+     * @return the address of the scan resource, which identifies the scan, unlike its name, which is only unique among
+     *         the scans of its <code>bootstrap-deployments</code> resource
+     */
+    PathAddress getAddress() {
+        return address;
+    }
+
+    String getName() {
+        return address.getLastElement().getValue();
+    }
+
+    /**
+     * @return the name of the <code>bootstrap-deployments</code> resource of the scan
+     */
+    String getDeploymentsName() {
+        return address.getParent().getLastElement().getValue();
+    }
+
+    String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return the archives of the deployment searched for bootstrap classes, or <code>null</code> if all of them are searched
+     */
+    FilenameContainFilter getFilter() {
+        return filter;
+    }
+
+    int getMaxThreads() {
+        return maxThreads;
+    }
+
+    String getDatasource() {
+        return datasource;
+    }
+
+    int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    int getLockTimeout() {
+        return lockTimeout;
+    }
+
+    /**
+     * @return the time in seconds a bootstrap run of a top level deployment may take, 0 if it isn't limited
+     */
+    int getTimeBudget() {
+        return timeBudget;
+    }
+
+    boolean isAsync() {
+        return async;
+    }
+
+    BootstrapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the names of the bootstrap classes listed on the scan in the configured order, empty if the annotation
+     *         index of the deployment is searched for bootstrap classes
+     */
+    List<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * @param classNames - the names of the bootstrap classes listed on the scan, in the configured order
+     */
+    void setClassNames(final List<String> classNames) {
+        this.classNames = Collections.unmodifiableList(classNames);
+    }
+
+    /**
+     * @param overrides - the configuration overrides of the deployment
+     * @param scheduler - the scheduled executor of the server
+     * @return a new provider for a bootstrap run
+     */
+    BootstrapProvider createProvider(final ConfigurationOverrides overrides, final ScheduledExecutorService scheduler) {
+        return providerFactory.apply(overrides, scheduler);
+    }
+
+    /**
+     * Count a bootstrap class that is not executed again, because it has already been executed for another unit of the
+     * same top level deployment.
+     */
+    void duplicateRunAvoided() {
+        avoidedDuplicateRuns.incrementAndGet();
+    }
+
+    /**
+     * @return the number of bootstrap class runs avoided since the scan was added
+     */
+    long getAvoidedDuplicateRuns() {
+        return avoidedDuplicateRuns.get();
+    }
+
+    @Override
+    public String toString() {
+        return getDeploymentsName() + '/' + getName() + "[" + filename + "]";
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.controller.PathAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The configured scans, keyed by the name of the deployment they apply to. The map is updated when a scan is added or
+ * removed, so the {@link DbBootstrapScanDetectorProcessor} finds the scans of a deployment with a single lookup however
+ * many scans are configured.
+ */
+final class BootstrapScanRegistry {
+
+    static final BootstrapScanRegistry INSTANCE = new BootstrapScanRegistry();
+
+    private final ConcurrentMap<String, List<BootstrapScan>> scans = new ConcurrentHashMap<>();
+
+    private BootstrapScanRegistry() {
+    }
+
+    /**
+     * Add the scan, replacing an existing scan with the same address and filename.
+     *
+     * @param scan - the scan to add
+     */
+    void add(final BootstrapScan scan) {
+        scans.compute(scan.getFilename(), (filename, existing) -> {
+            List<BootstrapScan> updated = new ArrayList<>();
+            if (existing != null) {
+                existing.stream().filter(s -> !s.getAddress().equals(scan.getAddress())).forEach(updated::add);
+            }
+            updated.add(scan);
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    /**
+     * @param address - the address of the scan resource
+     * @param filename - the name of the deployment of the scan
+     */
+    void remove(final PathAddress address, final String filename) {
+        scans.computeIfPresent(filename, (key, existing) -> {
+            List<BootstrapScan> updated = new ArrayList<>(existing);
+            updated.removeIf(s -> s.getAddress().equals(address));
+            return updated.isEmpty() ? null : Collections.unmodifiableList(updated);
+        });
+    }
+
+    /**
+     * Remove all the scans, the scans of the configuration are added again when the subsystem is booted.
+     */
+    void clear() {
+        scans.clear();
+    }
+
+    /**
+     * @param address - the address of the scan resource
+     * @return the scan, or <code>null</code> if no scan with the address is registered
+     */
+    BootstrapScan getScan(final PathAddress address) {
+        return scans.values().stream()
+                .flatMap(List::stream)
+                .filter(scan -> scan.getAddress().equals(address))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @param deploymentName - the name of the top level deployment
+     * @return the scans of the deployment, empty if the deployment is not scanned
+     */
+    List<BootstrapScan> getScans(final String deploymentName) {
+        return scans.getOrDefault(deploymentName, Collections.emptyList());
+    }
+}
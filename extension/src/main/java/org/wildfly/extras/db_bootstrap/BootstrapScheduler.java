@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Schedules the {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase} annotated classes of a
+ * deployment as a dependency graph. <br>
+ * <br>
+ * A class declaring {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase#dependsOn()} is executed as
+ * soon as the classes it depends on are done. A class without any declared dependencies keeps the priority ordering,
+ * and is executed after all the other classes without declared dependencies having a higher priority. <br>
+ * <br>
+ * The graph is built and validated once for the deployment, cycles and dependencies on classes that are not part of
+ * the deployment are reported as a {@link DeploymentUnitProcessingException}, failing the deployment.
+ *
+ * @see DbBootstrapScanDetectorProcessor
+ */
+class BootstrapScheduler {
+
+    private static final Comparator<Node> EXECUTION_ORDER = Comparator
+            .comparingInt((Node node) -> node.priority).reversed()
+            .thenComparing(node -> node.className);
+    private static final Comparator<Node> LISTED_ORDER = Comparator
+            .comparingInt((Node node) -> node.priority).reversed()
+            .thenComparingInt(node -> node.position);
+
+    private final Comparator<Node> order;
+    private final List<Node> executionOrder;
+
+    BootstrapScheduler(final List<BootstrapClass> bootstrapList) throws DeploymentUnitProcessingException {
+        this(bootstrapList, Collections.emptySet());
+    }
+
+    BootstrapScheduler(final List<BootstrapClass> bootstrapList, final Set<String> completed) throws DeploymentUnitProcessingException {
+        this(bootstrapList, completed, false);
+    }
+
+    /**
+     * @param bootstrapList - the bootstrap classes to execute
+     * @param completed - the names of the bootstrap classes already executed for the deployment, a dependency on one
+     *            of them is satisfied
+     * @param listedOrder - true to execute classes of the same priority in the order of the list, instead of by name
+     * @throws DeploymentUnitProcessingException if the dependencies have a cycle or a dependency is unknown
+     */
+    BootstrapScheduler(final List<BootstrapClass> bootstrapList, final Set<String> completed, final boolean listedOrder)
+            throws DeploymentUnitProcessingException {
+        this.order = listedOrder ? LISTED_ORDER : EXECUTION_ORDER;
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        for (BootstrapClass bootstrapClass : bootstrapList) {
+            Node node = new Node(bootstrapClass, nodes.size());
+            nodes.put(node.className, node);
+        }
+
+        TreeMap<Integer, List<Node>> priorityLevels = nodes.values()
+                .stream()
+                .filter(node -> node.dependsOn.isEmpty())
+                .collect(Collectors.groupingBy(node -> node.priority, TreeMap::new, Collectors.toList()));
+
+        for (Node node : nodes.values()) {
+            if (node.dependsOn.isEmpty()) {
+                Map.Entry<Integer, List<Node>> higherPriority = priorityLevels.higherEntry(node.priority);
+                if (higherPriority != null) {
+                    higherPriority.getValue().forEach(prerequisite -> node.addPrerequisite(prerequisite));
+                }
+            } else {
+                for (String dependency : node.dependsOn) {
+                    Node prerequisite = nodes.get(dependency);
+                    if (prerequisite == null && completed.contains(dependency)) {
+                        continue;
+                    }
+                    if (prerequisite == null) {
+                        throw new DeploymentUnitProcessingException(String.format(
+                                "%s depends on %s which is not a BootstrapDatabase annotated class in the deployment",
+                                node.className, dependency));
+                    }
+                    node.addPrerequisite(prerequisite);
+                }
+            }
+        }
+        executionOrder = sort(nodes.values(), order);
+    }
+
+    /**
+     * @return the bootstrap classes in the order they are executed by a single thread
+     */
+    List<BootstrapClass> getExecutionOrder() {
+        return executionOrder.stream().map(node -> node.bootstrapClass).collect(Collectors.toList());
+    }
+
+    /**
+     * Execute the task for every bootstrap class in the graph. Without an executor the classes are executed one at a
+     * time in the calling thread, otherwise a class is submitted as soon as all its prerequisites are done and at most
+     * <code>maxThreads</code> classes are running at the same time. <br>
+     * <br>
+     * When a task fails, no further classes are submitted. Once the running tasks are done, the failure of the
+     * class first in execution order is thrown and the remaining failures are added as suppressed exceptions.
+     *
+     * @param task - the task to execute for every class
+     * @param executor - the executor to run the tasks on, or <code>null</code> to run them in the calling thread
+     * @param maxThreads - the maximum number of tasks running at the same time
+     * @throws Exception the failure of the first failed class
+     */
+    void execute(final BootstrapTask task, final ExecutorService executor, final int maxThreads) throws Exception {
+        if (executor == null || maxThreads <= 1) {
+            for (Node node : executionOrder) {
+                task.execute(node.bootstrapClass);
+            }
+            return;
+        }
+
+        Map<Node, Integer> remainingPrerequisites = new HashMap<>();
+        PriorityQueue<Node> ready = new PriorityQueue<>(order);
+        for (Node node : executionOrder) {
+            remainingPrerequisites.put(node, node.prerequisites.size());
+            if (node.prerequisites.isEmpty()) {
+                ready.add(node);
+            }
+        }
+
+        CompletionService<Node> completionService = new ExecutorCompletionService<>(executor);
+        Map<Node, Exception> failures = new TreeMap<>(Comparator.comparingInt(executionOrder::indexOf));
+        List<Future<Node>> submitted = new ArrayList<>();
+        int running = 0;
+        try {
+            while (true) {
+                while (failures.isEmpty() && running < maxThreads && !ready.isEmpty()) {
+                    Node node = ready.poll();
+                    submitted.add(completionService.submit(() -> {
+                        try {
+                            task.execute(node.bootstrapClass);
+                        } catch (Exception e) {
+                            throw new NodeFailure(node, e);
+                        }
+                        return node;
+                    }));
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                try {
+                    Node done = completionService.take().get();
+                    for (Node dependant : done.dependants) {
+                        if (remainingPrerequisites.merge(dependant, -1, Integer::sum) == 0) {
+                            ready.add(dependant);
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof NodeFailure)) {
+                        throw e;
+                    }
+                    NodeFailure failure = (NodeFailure) e.getCause();
+                    failures.put(failure.node, (Exception) failure.getCause());
+                } finally {
+                    running--;
+                }
+            }
+        } finally {
+            // a no-op once all the tasks are done, but don't leave them running on the shared executor when interrupted
+            submitted.forEach(future -> future.cancel(true));
+        }
+
+        if (!failures.isEmpty()) {
+            List<Exception> causes = new ArrayList<>(failures.values());
+            Exception first = causes.get(0);
+            causes.subList(1, causes.size()).forEach(first::addSuppressed);
+            throw first;
+        }
+    }
+
+    /**
+     * Sort the nodes topologically, taking the ready node with the highest priority first.
+     */
+    private static List<Node> sort(final Iterable<Node> nodes, final Comparator<Node> order) throws DeploymentUnitProcessingException {
+        Map<Node, Integer> remainingPrerequisites = new HashMap<>();
+        PriorityQueue<Node> ready = new PriorityQueue<>(order);
+        for (Node node : nodes) {
+            remainingPrerequisites.put(node, node.prerequisites.size());
+            if (node.prerequisites.isEmpty()) {
+                ready.add(node);
+            }
+        }
+
+        List<Node> sorted = new ArrayList<>(remainingPrerequisites.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            sorted.add(node);
+            for (Node dependant : node.dependants) {
+                if (remainingPrerequisites.merge(dependant, -1, Integer::sum) == 0) {
+                    ready.add(dependant);
+                }
+            }
+        }
+
+        if (sorted.size() != remainingPrerequisites.size()) {
+            String cycle = remainingPrerequisites.entrySet()
+                    .stream()
+                    .filter(entry -> entry.getValue() > 0)
+                    .map(entry -> entry.getKey().className)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            throw new DeploymentUnitProcessingException(String.format("Cyclic dependsOn between the bootstrap classes [%s]", cycle));
+        }
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * The work executed for every bootstrap class
+     */
+    @FunctionalInterface
+    interface BootstrapTask {
+        void execute(BootstrapClass bootstrapClass) throws Exception;
+    }
+
+    private static final class Node {
+        private final BootstrapClass bootstrapClass;
+        private final String className;
+        private final int position;
+        private final int priority;
+        private final Set<String> dependsOn;
+        private final Set<Node> prerequisites = new LinkedHashSet<>();
+        private final List<Node> dependants = new ArrayList<>();
+
+        private Node(final BootstrapClass bootstrapClass, final int position) {
+            this.bootstrapClass = bootstrapClass;
+            this.className = bootstrapClass.getClassName();
+            this.position = position;
+            this.priority = bootstrapClass.getPriority();
+            this.dependsOn = bootstrapClass.getDependsOn();
+        }
+
+        private void addPrerequisite(final Node prerequisite) {
+            if (prerequisites.add(prerequisite)) {
+                prerequisite.dependants.add(this);
+            }
+        }
+    }
+
+    private static final class NodeFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Node node;
+
+        private NodeFailure(final Node node, final Exception cause) {
+            super(cause);
+            this.node = node;
+        }
+    }
+}
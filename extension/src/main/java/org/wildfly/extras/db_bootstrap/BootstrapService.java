@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StartException;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.value.InjectedValue;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapProvider;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Bootstraps a deployment unit asynchronously for a scan configured with <code>async</code>. The service is started
+ * from {@link DbBootstrapScanDetectorProcessor} and runs the bootstrap on the executor of the server, so neither the
+ * deployment thread nor the MSC thread is held while the database is migrated. The later phases of the deployment unit
+ * depend on the service, so only the scanned deployment waits for the bootstrap to be done. <br>
+ * <br>
+ * Stopping the service while the bootstrap is running cancels the statements of the running bootstrap methods and
+ * completes once the bootstrap is done.
+ */
+class BootstrapService implements Service<Void> {
+
+    private final Bootstrap bootstrap;
+    private final InjectedValue<ExecutorService> executor = new InjectedValue<>();
+    private volatile BootstrapProvider provider;
+    // guarded by this
+    private boolean running;
+    private StopContext stopping;
+
+    /**
+     * @param bootstrap - the bootstrap of the deployment unit
+     */
+    BootstrapService(final Bootstrap bootstrap) {
+        this.bootstrap = bootstrap;
+    }
+
+    @Override
+    public void start(final StartContext context) throws StartException {
+        context.asynchronous();
+        synchronized (this) {
+            running = true;
+        }
+        try {
+            executor.getValue().execute(() -> {
+                try {
+                    bootstrap.run(started -> provider = started);
+                    context.complete();
+                } catch (Exception e) {
+                    context.failed(new StartException(e));
+                } finally {
+                    done();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done();
+            context.failed(new StartException(e));
+        }
+    }
+
+    @Override
+    public void stop(final StopContext context) {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            context.asynchronous();
+            stopping = context;
+        }
+        BootstrapProvider current = provider;
+        if (current != null) {
+            DbBootstrapLogger.ROOT_LOGGER.infof("Cancelling the bootstrap of %s", context.getController().getName());
+            current.cancel();
+        }
+    }
+
+    private synchronized void done() {
+        provider = null;
+        running = false;
+        if (stopping != null) {
+            stopping.complete();
+            stopping = null;
+        }
+    }
+
+    @Override
+    public Void getValue() {
+        return null;
+    }
+
+    /**
+     * @return the injector of the executor of the server
+     */
+    InjectedValue<ExecutorService> getExecutor() {
+        return executor;
+    }
+
+    /**
+     * The bootstrap of a deployment unit
+     */
+    @FunctionalInterface
+    interface Bootstrap {
+        /**
+         * @param started - called with the provider of the bootstrap run once it is created
+         */
+        void run(Consumer<BootstrapProvider> started) throws Exception;
+    }
+}
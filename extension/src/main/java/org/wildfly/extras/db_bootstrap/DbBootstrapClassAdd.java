@@ -16,10 +16,20 @@
 package org.wildfly.extras.db_bootstrap;
 
 import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.OperationContext;
 import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.descriptions.ModelDescriptionConstants;
+import org.jboss.as.controller.registry.Resource;
 import org.jboss.dmr.ModelNode;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
+ * Adds the class to the classes of its scan in the {@link BootstrapScanRegistry}. A scan listing its classes loads
+ * exactly those classes, in the configured order, instead of searching the annotation index of the deployment.
+ *
  * @author Nicky Moelholm (moelholm@gmail.com)
  */
 class DbBootstrapClassAdd extends AbstractAddStepHandler {
@@ -27,4 +37,26 @@ class DbBootstrapClassAdd extends AbstractAddStepHandler {
     protected void populateModel(ModelNode operation, ModelNode model) throws OperationFailedException {
         DbBootstrapClassResourceDefinition.CLASSNAME.validateAndSet(operation, model);
     }
+
+    @Override
+    protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        PathAddress scanAddress = PathAddress.pathAddress(operation.require(ModelDescriptionConstants.OP_ADDR)).getParent();
+        BootstrapScan scan = BootstrapScanRegistry.INSTANCE.getScan(scanAddress);
+        if (scan != null) {
+            scan.setClassNames(DbBootstrapScanDetectorAdd.classNames(context.readResourceFromRoot(scanAddress, false)));
+            DbBootstrapLogger.ROOT_LOGGER.tracef("%s bootstraps the classes %s", scan, scan.getClassNames());
+        }
+    }
+
+    @Override
+    protected void rollbackRuntime(OperationContext context, ModelNode operation, Resource resource) {
+        PathAddress address = PathAddress.pathAddress(operation.require(ModelDescriptionConstants.OP_ADDR));
+        BootstrapScan scan = BootstrapScanRegistry.INSTANCE.getScan(address.getParent());
+        if (scan != null) {
+            String className = resource.getModel().get(DbBootstrapExtension.CLASSNAME_ATTR).asString();
+            List<String> classNames = new ArrayList<>(scan.getClassNames());
+            classNames.remove(className);
+            scan.setClassNames(classNames);
+        }
+    }
 }
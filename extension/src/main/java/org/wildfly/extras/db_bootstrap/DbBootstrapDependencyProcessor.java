@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.naming.deployment.ContextNames;
+import org.jboss.as.server.ServerService;
+import org.jboss.as.server.Services;
+import org.jboss.as.server.deployment.AttachmentKey;
+import org.jboss.as.server.deployment.DeploymentPhaseContext;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.DeploymentUnitProcessor;
+import org.jboss.as.server.deployment.DeploymentUtils;
+import org.jboss.as.server.deployment.annotation.CompositeIndex;
+import org.jboss.as.server.deployment.module.ResourceRoot;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.jandex.Index;
+import org.jboss.msc.value.InjectedValue;
+import org.jboss.vfs.VirtualFile;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.events.BootstrapEvents;
+import org.wildfly.extras.db_bootstrap.events.BootstrapEvents.Span;
+import org.wildfly.extras.db_bootstrap.matchfilter.FilenameContainFilter;
+import org.wildfly.extras.db_bootstrap.processor.BootstrapPlanProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import static org.jboss.as.server.deployment.Attachments.ANNOTATION_INDEX;
+import static org.jboss.as.server.deployment.Attachments.COMPOSITE_ANNOTATION_INDEX;
+import static org.jboss.as.server.deployment.Attachments.DEPLOYMENT_ROOT;
+
+/**
+ * Finds the bootstrap classes of a scanned deployment before its module is used, and makes the bootstrapping of the
+ * deployment depend on the datasources of the scans and the bootstrap classes. The bootstrap classes are attached to
+ * the deployment unit for the {@link DbBootstrapScanDetectorProcessor}, so the annotation index is only searched once.
+ * Scans with a <code>filter-on-name</code> only consult the archives matching the filter, and scans listing their
+ * classes don't search the index at all.
+ */
+class DbBootstrapDependencyProcessor implements DeploymentUnitProcessor {
+
+    static final AttachmentKey<Map<BootstrapScan, List<BootstrapClass>>> BOOTSTRAP_CLASSES = AttachmentKey.create(Map.class);
+    static final AttachmentKey<ExecutorService> SERVER_EXECUTOR = AttachmentKey.create(ExecutorService.class);
+    static final AttachmentKey<ScheduledExecutorService> SCHEDULED_EXECUTOR = AttachmentKey.create(ScheduledExecutorService.class);
+    private static final DotName BOOTSTRAP_DATABASE = DotName.createSimple(BootstrapDatabase.class.getName());
+
+    private final BootstrapScanRegistry registry;
+
+    public DbBootstrapDependencyProcessor(final BootstrapScanRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
+        DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
+        DeploymentUnit topLevelDeployment = deploymentUnit.getParent() == null ? deploymentUnit : deploymentUnit.getParent();
+        List<BootstrapScan> scans = registry.getScans(topLevelDeployment.getName());
+        if (scans.isEmpty()) {
+            return;
+        }
+        // the time budgets and the bootstrap locks are watched on the scheduled executor of the server
+        phaseContext.addDeploymentDependency(ServerService.JBOSS_SERVER_SCHEDULED_EXECUTOR, SCHEDULED_EXECUTOR);
+        if (scans.stream().anyMatch(scan -> scan.getMaxThreads() > 1)) {
+            // the bootstrap classes are executed concurrently on the executor of the server
+            phaseContext.addDeploymentDependency(Services.JBOSS_SERVER_EXECUTOR, SERVER_EXECUTOR);
+        }
+
+        Map<BootstrapScan, List<BootstrapClass>> bootstrapClasses = findBootstrapClasses(deploymentUnit, scans);
+        deploymentUnit.putAttachment(BOOTSTRAP_CLASSES, bootstrapClasses);
+        List<String> listedClasses = scans.stream()
+                .flatMap(scan -> scan.getClassNames().stream())
+                .collect(Collectors.toList());
+        if (listedClasses.isEmpty() && bootstrapClasses.values().stream().allMatch(List::isEmpty)) {
+            return;
+        }
+
+        Set<String> datasources = new LinkedHashSet<>();
+        scans.forEach(scan -> datasources.add(scan.getDatasource()));
+        bootstrapClasses.values().forEach(classes -> classes.forEach(bootstrapClass -> datasources.add(bootstrapClass.getDatasource())));
+        datasources.addAll(listedDatasources(deploymentUnit, listedClasses));
+        datasources.remove("");
+        for (String datasource : datasources) {
+            ContextNames.BindInfo bindInfo = ContextNames.bindInfoFor(datasource);
+            if (bindInfo == null) {
+                throw new DeploymentUnitProcessingException(String.format("Invalid JNDI name '%s' of datasource", datasource));
+            }
+            DbBootstrapLogger.ROOT_LOGGER.tracef("%s depends on datasource %s", deploymentUnit.getName(), datasource);
+            phaseContext.addDependency(bindInfo.getBinderServiceName(), Object.class, new InjectedValue<>());
+        }
+    }
+
+    /**
+     * The classes listed on a scan are only loaded once the module of the deployment is available, their datasources are
+     * looked up by class name in the annotation index, without searching it for annotated classes.
+     *
+     * @param deploymentUnit - the deployment unit
+     * @param classNames - the classes listed on the scans of the deployment
+     * @return the datasources of the listed classes covered by the annotation index of the deployment
+     */
+    private static Set<String> listedDatasources(DeploymentUnit deploymentUnit, List<String> classNames) {
+        Set<String> datasources = new LinkedHashSet<>();
+        CompositeIndex index = deploymentUnit.getAttachment(COMPOSITE_ANNOTATION_INDEX);
+        if (index == null) {
+            return datasources;
+        }
+        for (String className : classNames) {
+            ClassInfo classInfo = index.getClassByName(DotName.createSimple(className));
+            List<AnnotationInstance> annotations = classInfo == null ? null : classInfo.annotations().get(BOOTSTRAP_DATABASE);
+            if (annotations == null) {
+                continue;
+            }
+            annotations.stream()
+                    .filter(annotation -> annotation.target() == classInfo && annotation.value("datasource") != null)
+                    .forEach(annotation -> datasources.add(annotation.value("datasource").asString()));
+        }
+        return datasources;
+    }
+
+    /**
+     * Find the bootstrap classes of the deployment for each scan. The bootstrap classes of an archive with a bootstrap plan
+     * generated at build time are read from the plan, the annotation index is only searched for the archives without a
+     * plan. A scan with a <code>filter-on-name</code> only consults the archives matching the filter, and every archive is
+     * read at most once for all the scans. Scans listing their classes are left out, they don't consult the index.
+     *
+     * @param deploymentUnit - the deployment unit
+     * @param scans - the scans matching the deployment
+     * @return the bootstrap classes of the archives covered by the annotation index of the deployment, per scan
+     * @throws DeploymentUnitProcessingException if a bootstrap plan can't be read
+     * @see BootstrapPlanProcessor
+     */
+    static Map<BootstrapScan, List<BootstrapClass>> findBootstrapClasses(DeploymentUnit deploymentUnit, List<BootstrapScan> scans)
+            throws DeploymentUnitProcessingException {
+        Map<BootstrapScan, List<BootstrapClass>> bootstrapClasses = new LinkedHashMap<>();
+        CompositeIndex index = deploymentUnit.getAttachment(COMPOSITE_ANNOTATION_INDEX);
+        if (index == null) {
+            scans.stream()
+                    .filter(scan -> scan.getClassNames().isEmpty())
+                    .forEach(scan -> bootstrapClasses.put(scan, Collections.emptyList()));
+            return bootstrapClasses;
+        }
+
+        Span span = BootstrapEvents.indexLookup(deploymentUnit.getName());
+        try {
+            DeploymentUnit topLevelDeployment = deploymentUnit.getParent() == null ? deploymentUnit : deploymentUnit.getParent();
+            ResourceRoot deploymentRoot = topLevelDeployment.getAttachment(DEPLOYMENT_ROOT);
+            Map<Index, VirtualFile> archives = new IdentityHashMap<>();
+            List<ResourceRoot> resourceRoots = new ArrayList<>(DeploymentUtils.allResourceRoots(deploymentUnit));
+            if (topLevelDeployment != deploymentUnit) {
+                resourceRoots.addAll(DeploymentUtils.allResourceRoots(topLevelDeployment));
+            }
+            for (ResourceRoot resourceRoot : resourceRoots) {
+                Index rootIndex = resourceRoot.getAttachment(ANNOTATION_INDEX);
+                if (rootIndex != null) {
+                    archives.putIfAbsent(rootIndex, resourceRoot.getRoot());
+                }
+            }
+
+            Map<Index, List<BootstrapClass>> archiveClasses = new IdentityHashMap<>();
+            for (BootstrapScan scan : scans) {
+                if (!scan.getClassNames().isEmpty()) {
+                    continue;
+                }
+                List<BootstrapClass> scanClasses = new ArrayList<>();
+                for (Index rootIndex : index.getIndexes()) {
+                    VirtualFile archive = archives.get(rootIndex);
+                    FilenameContainFilter filter = scan.getFilter();
+                    if (filter != null && (archive == null || !filter.accepts(archive, deploymentRoot == null ? null : deploymentRoot.getRoot()))) {
+                        continue;
+                    }
+                    List<BootstrapClass> classes = archiveClasses.get(rootIndex);
+                    if (classes == null) {
+                        classes = findBootstrapClasses(rootIndex, archive);
+                        archiveClasses.put(rootIndex, classes);
+                    }
+                    scanClasses.addAll(classes);
+                }
+                bootstrapClasses.put(scan, scanClasses);
+            }
+            DbBootstrapLogger.ROOT_LOGGER.tracef("Consulted %s of %s archives of %s", archiveClasses.size(), index.getIndexes().size(),
+                    deploymentUnit.getName());
+            return bootstrapClasses;
+        } finally {
+            span.finish();
+        }
+    }
+
+    /**
+     * The bootstrap classes of an archive with a bootstrap plan are read from the plan, without searching the annotation
+     * index. The plan is checked for staleness by looking up each planned class by name in the index of the archive, a
+     * class that is no longer a bootstrap class or whose {@link BootstrapDatabase} attributes changed since the plan was
+     * generated fails the deployment.
+     *
+     * @param rootIndex - the annotation index of the archive
+     * @param archive - the root of the archive, or <code>null</code> if the index doesn't belong to a resource root
+     * @return the bootstrap classes of the archive
+     * @throws DeploymentUnitProcessingException if the bootstrap plan of the archive can't be read or is stale
+     */
+    private static List<BootstrapClass> findBootstrapClasses(Index rootIndex, VirtualFile archive) throws DeploymentUnitProcessingException {
+        VirtualFile plan = archive == null ? null : BootstrapPlan.find(archive);
+        if (plan == null) {
+            return rootIndex.getAnnotations(BOOTSTRAP_DATABASE)
+                    .stream()
+                    .map(BootstrapClass::fromIndex)
+                    .collect(Collectors.toList());
+        }
+        List<BootstrapClass> plannedClasses = BootstrapPlan.read(plan);
+        for (BootstrapClass plannedClass : plannedClasses) {
+            ClassInfo classInfo = rootIndex.getClassByName(DotName.createSimple(plannedClass.getClassName()));
+            List<AnnotationInstance> annotations = classInfo == null ? null : classInfo.annotations().get(BOOTSTRAP_DATABASE);
+            boolean current = annotations != null && annotations.stream()
+                    .anyMatch(annotation -> annotation.target() == classInfo && plannedClass.hasAttributesOf(annotation));
+            if (!current) {
+                throw new DeploymentUnitProcessingException(String.format("Bootstrap plan %s is stale, %s has changed since it was generated",
+                        plan.getPathName(), plannedClass));
+            }
+        }
+        DbBootstrapLogger.ROOT_LOGGER.tracef("Using bootstrap plan %s", plan.getPathName());
+        return plannedClasses;
+    }
+
+    @Override
+    public void undeploy(DeploymentUnit deploymentUnit) {
+        deploymentUnit.removeAttachment(BOOTSTRAP_CLASSES);
+    }
+}
@@ -39,6 +39,16 @@ public class DbBootstrapExtension implements Extension {
     static final String CLASSNAME_ATTR = "classname";
     static final String FILENAME_ATTR = "filename";
     static final String FILTER_ON_NAME_ATTR = "filter-on-name";
+    static final String MAX_THREADS_ATTR = "max-threads";
+    static final String LEDGER_TABLE_ATTR = "ledger-table";
+    static final String DATASOURCE_ATTR = "datasource";
+    static final String ASYNC_ATTR = "async";
+    static final String QUERY_TIMEOUT_ATTR = "query-timeout";
+    static final String LOCK_TIMEOUT_ATTR = "lock-timeout";
+    static final String TIME_BUDGET_ATTR = "time-budget";
+    static final String LOCK_TABLE_ATTR = "lock-table";
+    static final String LOCK_WAIT_ATTR = "lock-wait";
+    static final String AVOIDED_DUPLICATE_RUNS_METRIC = "avoided-duplicate-runs";
     static final String RESOLVER = "config-scan";
 
     static final PathElement SUBSYSTEM_PATH = PathElement.pathElement(SUBSYSTEM, SUBSYSTEM_NAME);
@@ -61,13 +71,14 @@ public class DbBootstrapExtension implements Extension {
     public void initializeParsers(ExtensionParsingContext context) {
         context.setSubsystemXmlMapping(SUBSYSTEM_NAME, Namespace.DB_BOOTSTRAP_1_0.getUriString(), DbBootstrapSubsystemParser.INSTANCE);
         context.setSubsystemXmlMapping(SUBSYSTEM_NAME, Namespace.DB_BOOTSTRAP_2_0.getUriString(), DbBootstrapSubsystemParser2_0.INSTANCE);
+        context.setSubsystemXmlMapping(SUBSYSTEM_NAME, Namespace.DB_BOOTSTRAP_3_0.getUriString(), DbBootstrapSubsystemParser3_0.INSTANCE);
     }
 
     @Override
     public void initialize(ExtensionContext context) {
         final SubsystemRegistration subsystem = context.registerSubsystem(SUBSYSTEM_NAME, ModelVersion.create(1));
         subsystem.registerSubsystemModel(DbBootstrapRootResourceDefinition.INSTANCE);
-        subsystem.registerXMLElementWriter(DbBootstrapSubsystemParser.INSTANCE);
+        subsystem.registerXMLElementWriter(DbBootstrapSubsystemParser3_0.INSTANCE);
     }
 
 }
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.server.deployment.DeploymentPhaseContext;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.DeploymentUnitProcessor;
+
+import java.util.List;
+
+/**
+ * Fails a top level deployment for the classes listed on its scans that none of its deployment units could load. It
+ * runs after {@link DbBootstrapScanDetectorProcessor} has processed the top level deployment and all its
+ * subdeployments, as the next phase of a deployment waits for the previous phase of its subdeployments.
+ *
+ * @author Rasmus Lund
+ */
+class DbBootstrapListedClassesProcessor implements DeploymentUnitProcessor {
+
+    private final BootstrapScanRegistry registry;
+
+    public DbBootstrapListedClassesProcessor(final BootstrapScanRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
+        DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
+        if (deploymentUnit.getParent() != null) {
+            return;
+        }
+        List<BootstrapScan> scans = registry.getScans(deploymentUnit.getName());
+        if (!scans.isEmpty()) {
+            DbBootstrapScanDetectorProcessor.checkListedClasses(deploymentUnit, scans);
+        }
+    }
+
+    @Override
+    public void undeploy(DeploymentUnit deploymentUnit) {
+    }
+}
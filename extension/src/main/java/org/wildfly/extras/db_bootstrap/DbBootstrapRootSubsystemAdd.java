@@ -32,12 +32,16 @@ class DbBootstrapRootSubsystemAdd extends AbstractBoottimeAddStepHandler {
     @Override
     protected void performBoottime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
         DbBootstrapLogger.ROOT_LOGGER.subsystemStarted();
+        BootstrapScanRegistry.INSTANCE.clear();
 
         context.addStep(new AbstractDeploymentChainStep() {
             @Override
             protected void execute(DeploymentProcessorTarget processorTarget) {
                 // Initialize the deployer chain
                 processorTarget.addDeploymentProcessor(DbBootstrapExtension.SUBSYSTEM_NAME, Phase.FIRST_MODULE_USE, Phase.FIRST_MODULE_USE_PERSISTENCE_CLASS_FILE_TRANSFORMER - 1, new DbBootstrapRootSubsystemDetectorProcessor());
+                processorTarget.addDeploymentProcessor(DbBootstrapExtension.SUBSYSTEM_NAME, Phase.CONFIGURE_MODULE, Phase.CONFIGURE_MODULE_SPEC + 1, new DbBootstrapDependencyProcessor(BootstrapScanRegistry.INSTANCE));
+                processorTarget.addDeploymentProcessor(DbBootstrapExtension.SUBSYSTEM_NAME, Phase.FIRST_MODULE_USE, Phase.FIRST_MODULE_USE_PERSISTENCE_CLASS_FILE_TRANSFORMER - 2, new DbBootstrapScanDetectorProcessor(BootstrapScanRegistry.INSTANCE));
+                processorTarget.addDeploymentProcessor(DbBootstrapExtension.SUBSYSTEM_NAME, Phase.POST_MODULE, Phase.POST_MODULE_INJECTION_ANNOTATION - 1, new DbBootstrapListedClassesProcessor(BootstrapScanRegistry.INSTANCE));
             }
         }, OperationContext.Stage.RUNTIME);
     }
@@ -15,62 +15,109 @@
  */
 package org.wildfly.extras.db_bootstrap;
 
-import org.jboss.as.controller.AbstractBoottimeAddStepHandler;
+import org.jboss.as.controller.AbstractAddStepHandler;
 import org.jboss.as.controller.OperationContext;
 import org.jboss.as.controller.OperationFailedException;
-import org.jboss.as.server.AbstractDeploymentChainStep;
-import org.jboss.as.server.DeploymentProcessorTarget;
-import org.jboss.as.server.deployment.Phase;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.controller.descriptions.ModelDescriptionConstants;
+import org.jboss.as.controller.registry.Resource;
 import org.jboss.dmr.ModelNode;
+import org.wildfly.extras.db_bootstrap.matchfilter.FilenameContainFilter;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapLock;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMetrics;
 import org.wildfly.extras.db_bootstrap.providers.HibernateBootstrapProvider;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
+ * Adds the scan to the {@link BootstrapScanRegistry}, so deployments matching the filename are bootstrapped by the
+ * {@link DbBootstrapScanDetectorProcessor} registered by the subsystem.
+ *
  * @author Frank Vissing
  * @author Flemming Harms
  * @author Rasmus Lund
  */
-class DbBootstrapScanDetectorAdd extends AbstractBoottimeAddStepHandler {
-
-    private final AtomicInteger priorityDelta = new AtomicInteger(1);
+class DbBootstrapScanDetectorAdd extends AbstractAddStepHandler {
 
     @Override
     protected void populateModel(ModelNode operation, ModelNode model) throws OperationFailedException {
         DbBootstrapScanDetectorResourceDefinition.FILENAME.validateAndSet(operation, model);
         DbBootstrapScanDetectorResourceDefinition.FILTER_ON_NAME.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.MAX_THREADS.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.LEDGER_TABLE.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.DATASOURCE.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.ASYNC.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.QUERY_TIMEOUT.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.LOCK_TIMEOUT.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.TIME_BUDGET.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.LOCK_TABLE.validateAndSet(operation, model);
+        DbBootstrapScanDetectorResourceDefinition.LOCK_WAIT.validateAndSet(operation, model);
     }
 
     @Override
-    protected void performBoottime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
-        String filename = model.get(DbBootstrapExtension.FILENAME_ATTR).asString();
-        context.addStep(new DbBootstrapDeploymentChainStep(filename), OperationContext.Stage.RUNTIME);
+    protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        BootstrapScan scan = createScan(context, operation, model);
+        DbBootstrapLogger.ROOT_LOGGER.tracef("%s:'%s'", DbBootstrapExtension.FILENAME_ATTR, scan.getFilename());
+        BootstrapScanRegistry.INSTANCE.add(scan);
     }
 
-    private final class DbBootstrapDeploymentChainStep extends AbstractDeploymentChainStep {
-
-        private final String filename;
+    @Override
+    protected void rollbackRuntime(OperationContext context, ModelNode operation, Resource resource) {
+        ModelNode model = resource.getModel();
+        BootstrapScanRegistry.INSTANCE.remove(scanAddress(operation), model.get(DbBootstrapExtension.FILENAME_ATTR).asString());
+    }
 
-        DbBootstrapDeploymentChainStep(String filename) {
-            this.filename = filename;
+    /**
+     * @param context - the operation context
+     * @param operation - the add or remove operation of the scan
+     * @param model - the model of the scan resource
+     * @return the scan configuration resolved from the model
+     * @throws OperationFailedException if an attribute can't be resolved
+     */
+    static BootstrapScan createScan(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        String filename = DbBootstrapScanDetectorResourceDefinition.FILENAME.resolveModelAttribute(context, model).asString();
+        ModelNode filterNode = DbBootstrapScanDetectorResourceDefinition.FILTER_ON_NAME.resolveModelAttribute(context, model);
+        FilenameContainFilter filter = null;
+        if (filterNode.isDefined()) {
+            filter = new FilenameContainFilter(filterNode.asList().stream().map(ModelNode::asString).collect(Collectors.toList()));
+            if (filter.getFilterOnName().isEmpty()) {
+                filter = null;
+            }
         }
+        int maxThreads = DbBootstrapScanDetectorResourceDefinition.MAX_THREADS.resolveModelAttribute(context, model).asInt();
+        ModelNode ledgerNode = DbBootstrapScanDetectorResourceDefinition.LEDGER_TABLE.resolveModelAttribute(context, model);
+        String ledgerTable = ledgerNode.isDefined() ? ledgerNode.asString() : null;
+        ModelNode datasourceNode = DbBootstrapScanDetectorResourceDefinition.DATASOURCE.resolveModelAttribute(context, model);
+        String datasource = datasourceNode.isDefined() ? datasourceNode.asString() : "";
+        boolean async = DbBootstrapScanDetectorResourceDefinition.ASYNC.resolveModelAttribute(context, model).asBoolean();
+        int queryTimeout = DbBootstrapScanDetectorResourceDefinition.QUERY_TIMEOUT.resolveModelAttribute(context, model).asInt(0);
+        int lockTimeout = DbBootstrapScanDetectorResourceDefinition.LOCK_TIMEOUT.resolveModelAttribute(context, model).asInt(0);
+        int timeBudget = DbBootstrapScanDetectorResourceDefinition.TIME_BUDGET.resolveModelAttribute(context, model).asInt(0);
+        ModelNode lockNode = DbBootstrapScanDetectorResourceDefinition.LOCK_TABLE.resolveModelAttribute(context, model);
+        String lockTable = lockNode.isDefined() ? lockNode.asString() : null;
+        int lockWait = DbBootstrapScanDetectorResourceDefinition.LOCK_WAIT.resolveModelAttribute(context, model).asInt();
+        BootstrapMetrics metrics = new BootstrapMetrics();
+        BootstrapScan scan = new BootstrapScan(scanAddress(operation), filename, filter, maxThreads, datasource, queryTimeout, lockTimeout,
+                timeBudget, async, metrics,
+                (overrides, scheduler) -> new HibernateBootstrapProvider(ledgerTable,
+                        lockTable != null ? new BootstrapLock(lockTable, lockWait, scheduler) : null, metrics, overrides));
+        scan.setClassNames(classNames(context.readResource(PathAddress.EMPTY_ADDRESS, false)));
+        return scan;
+    }
 
-        @Override
-        protected void execute(DeploymentProcessorTarget processorTarget) {
-
-            DbBootstrapLogger.ROOT_LOGGER.tracef("%s:'%s'", DbBootstrapExtension.FILENAME_ATTR, filename);
-
-            try {
-                String subsystemName = DbBootstrapExtension.SUBSYSTEM_NAME;
-                int priority = Phase.FIRST_MODULE_USE_PERSISTENCE_CLASS_FILE_TRANSFORMER - priorityDelta.getAndIncrement();
-                DbBootstrapScanDetectorProcessor processor;
-
-                processor = new DbBootstrapScanDetectorProcessor(filename, new HibernateBootstrapProvider());
-                processorTarget.addDeploymentProcessor(subsystemName, Phase.FIRST_MODULE_USE, priority, processor);
+    /**
+     * @param scanResource - the scan resource
+     * @return the class names of the <code>class</code> children of the scan, in the configured order
+     */
+    static List<String> classNames(Resource scanResource) {
+        return scanResource.getChildren(DbBootstrapExtension.CLASS)
+                .stream()
+                .map(child -> child.getModel().get(DbBootstrapExtension.CLASSNAME_ATTR).asString())
+                .collect(Collectors.toList());
+    }
 
-            } catch (Exception e) {
-                DbBootstrapLogger.ROOT_LOGGER.error("Error when executing db-bootstrap deployment chain step", e);
-            }
-        }
+    static PathAddress scanAddress(ModelNode operation) {
+        return PathAddress.pathAddress(operation.require(ModelDescriptionConstants.OP_ADDR));
     }
 }
@@ -16,41 +16,59 @@
 package org.wildfly.extras.db_bootstrap;
 
 import org.hibernate.Session;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.server.Services;
+import org.jboss.as.server.deployment.AttachmentKey;
 import org.jboss.as.server.deployment.DeploymentPhaseContext;
 import org.jboss.as.server.deployment.DeploymentUnit;
 import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
 import org.jboss.as.server.deployment.DeploymentUnitProcessor;
-import org.jboss.as.server.deployment.annotation.CompositeIndex;
 import org.jboss.as.server.deployment.module.ResourceRoot;
-import org.jboss.jandex.AnnotationInstance;
-import org.jboss.jandex.AnnotationValue;
-import org.jboss.jandex.ClassInfo;
 import org.jboss.jandex.DotName;
-import org.jboss.jandex.MethodInfo;
 import org.jboss.modules.Module;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.value.InjectedValue;
 import org.jboss.vfs.VirtualFile;
-import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
-import org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema;
-import org.wildfly.extras.db_bootstrap.annotations.UpdateSchema;
+import org.wildfly.extras.db_bootstrap.events.BootstrapEvents;
+import org.wildfly.extras.db_bootstrap.events.BootstrapEvents.Span;
+import org.wildfly.extras.db_bootstrap.processor.BootstrapPlanProcessor;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMethod;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMetrics;
 import org.wildfly.extras.db_bootstrap.providers.BootstrapProvider;
+import org.wildfly.extras.db_bootstrap.providers.ConfigurationOverrides;
+import org.wildfly.extras.db_bootstrap.providers.SessionConfiguration;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.jboss.as.server.deployment.Attachments.*;
 
 /**
- * Reacts on the deployment process on the specified archives in the configuration. It scan all JAR archives for
+ * Reacts on the deployment process on the specified archives in the configuration. A single processor is registered for
+ * all the scans, the scans of a deployment are looked up by its name in the {@link BootstrapScanRegistry}. It scan all
+ * JAR archives for
  * {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase} annotation to locate database
- * bootstrapping classes. <br>
+ * bootstrapping classes. A scan listing its classes skips the annotation index, the listed classes are loaded through
+ * the module of the deployment and executed in the listed order. <br>
  *
  * By default it all children in the archive is added to a new class loader and passed to the Hibernate
  * {@link org.hibernate.boot.registry.internal.BootstrapServiceRegistryImpl} for creating a new
- * {@link org.hibernate.SessionFactory}
+ * {@link org.hibernate.SessionFactory}. A new {@link BootstrapProvider} is created for every bootstrap run, so the
+ * session factories are shared by all the bootstrap methods of the deployment and closed once the run is done. <br>
+ * <br>
+ * Archives compiled with the {@link BootstrapPlanProcessor} contain a bootstrap plan, their bootstrap classes are read
+ * from the plan and the methods are called through the generated invokers. The methods of the other archives are
+ * resolved to {@link java.lang.invoke.MethodHandle}s once per bootstrap run.
  *
  * @author Frank Vissing (frank.vissing@schneider-electric.com)
  * @author Flemming Harms (flemming.harms@gmail.com)
@@ -59,46 +77,173 @@ import static org.jboss.as.server.deployment.Attachments.*;
  */
 class DbBootstrapScanDetectorProcessor implements DeploymentUnitProcessor {
 
-    private final String filename;
-    private final BootstrapProvider provider;
+    private static final AttachmentKey<BootstrappedClasses> BOOTSTRAPPED_CLASSES = AttachmentKey.create(BootstrappedClasses.class);
 
-    public DbBootstrapScanDetectorProcessor(final String filename, final BootstrapProvider provider) {
-        this.filename = filename;
-        this.provider = provider;
+    private final BootstrapScanRegistry registry;
+
+    public DbBootstrapScanDetectorProcessor(final BootstrapScanRegistry registry) {
+        this.registry = registry;
     }
 
     @Override
     public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
         DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
-        String deploymentName = deploymentUnit.getName();
+        DeploymentUnit topLevelDeployment = deploymentUnit.getParent() == null ? deploymentUnit : deploymentUnit.getParent();
+        String deploymentName = topLevelDeployment.getName();
 
-        if (deploymentUnit.getParent() != null) {
-            deploymentName = deploymentUnit.getParent().getName();
+        List<BootstrapScan> scans = registry.getScans(deploymentName);
+        if (scans.isEmpty()) {
+            DbBootstrapLogger.ROOT_LOGGER.tracef("No scan matched %s", deploymentName);
+            return;
+        }
+        List<BootstrapScan> indexScans = scans.stream().filter(scan -> scan.getClassNames().isEmpty()).collect(Collectors.toList());
+        Map<BootstrapScan, List<BootstrapClass>> found = deploymentUnit.getAttachment(DbBootstrapDependencyProcessor.BOOTSTRAP_CLASSES);
+        if (found == null || !found.keySet().containsAll(indexScans)) {
+            found = DbBootstrapDependencyProcessor.findBootstrapClasses(deploymentUnit, indexScans);
+        }
+        BootstrappedClasses bootstrappedClasses = getBootstrappedClasses(topLevelDeployment);
+        for (BootstrapScan scan : scans) {
+            List<BootstrapClass> bootstrapClasses = scan.getClassNames().isEmpty() ? found.get(scan) : loadListedClasses(deploymentUnit, scan);
+            if (!scan.getClassNames().isEmpty()) {
+                bootstrappedClasses.loaded(scan, bootstrapClasses);
+            }
+            if (scan.isAsync()) {
+                ServiceName serviceName = deploymentUnit.getServiceName().append(DbBootstrapExtension.SUBSYSTEM_NAME, scan.getDeploymentsName(),
+                        scan.getName());
+                BootstrapService service = new BootstrapService(started -> bootstrap(deploymentUnit, bootstrapClasses, scan, bootstrappedClasses,
+                        started));
+                ServiceBuilder<Void> builder = phaseContext.getServiceTarget().addService(serviceName, service);
+                Services.addServerExecutorDependency(builder, service.getExecutor(), false);
+                builder.install();
+                phaseContext.addDependency(serviceName, Void.class, new InjectedValue<>());
+                DbBootstrapLogger.ROOT_LOGGER.debugf("Bootstrapping %s asynchronously", deploymentUnit.getName());
+            } else {
+                bootstrap(deploymentUnit, bootstrapClasses, scan, bootstrappedClasses, provider -> { });
+            }
         }
+    }
 
-        if (deploymentName.equals(filename)) {
-            long before = System.currentTimeMillis();
+    /**
+     * Load the classes listed on the scan through the module of the deployment unit, in the listed order, and read their
+     * annotations without consulting the annotation index. A deployment without subdeployments fails when a listed
+     * class is missing. In an EAR a class is bootstrapped by the first deployment unit whose module can load it, so a
+     * class the module can't load is left for the other units, and the EAR fails once all its units are processed if
+     * none of them could load it, see {@link #checkListedClasses(DeploymentUnit, List)}.
+     *
+     * @param deploymentUnit - the deployment unit
+     * @param scan - the scan listing the classes
+     * @return the listed bootstrap classes the module of the deployment unit can load
+     * @throws DeploymentUnitProcessingException if a listed class is missing or isn't a bootstrap class
+     */
+    static List<BootstrapClass> loadListedClasses(DeploymentUnit deploymentUnit, BootstrapScan scan) throws DeploymentUnitProcessingException {
+        Module module = deploymentUnit.getAttachment(MODULE);
+        if (module == null) {
+            throw new DeploymentUnitProcessingException(String.format("%s has no module to load the classes of %s", deploymentUnit.getName(), scan));
+        }
+        List<DeploymentUnit> subDeployments = deploymentUnit.getAttachment(SUB_DEPLOYMENTS);
+        boolean standalone = deploymentUnit.getParent() == null && (subDeployments == null || subDeployments.isEmpty());
+        List<BootstrapClass> bootstrapClasses = new ArrayList<>();
+        for (String className : scan.getClassNames()) {
+            Class<?> clazz;
             try {
-                processAnnotationIndex(deploymentUnit);
+                clazz = Class.forName(className, false, module.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                if (standalone) {
+                    throw new DeploymentUnitProcessingException(String.format("Bootstrap class %s of %s not found in %s", className, scan,
+                            deploymentUnit.getName()), e);
+                }
+                DbBootstrapLogger.ROOT_LOGGER.tracef("Bootstrap class %s of %s not visible to %s", className, scan, deploymentUnit.getName());
+                continue;
+            }
+            BootstrapClass bootstrapClass = BootstrapClass.fromClass(clazz);
+            if (bootstrapClass == null) {
+                throw new DeploymentUnitProcessingException(String.format("Bootstrap class %s of %s is not annotated with @BootstrapDatabase",
+                        className, scan));
+            }
+            bootstrapClasses.add(bootstrapClass);
+        }
+        return bootstrapClasses;
+    }
+
+    /**
+     * Bootstrap the deployment unit for the scan. The subdeployments of a deployment are bootstrapped one at a time, so
+     * a class another subdeployment depends on is done. The deployment fails once the time budget of the scan for the
+     * top level deployment is exceeded.
+     *
+     * @param deploymentUnit - the deployment unit
+     * @param found - the bootstrap classes found in the deployment unit
+     * @param scan - the scan matching the deployment
+     * @param bootstrappedClasses - the bootstrap classes already executed for the top level deployment
+     * @param started - called with the provider of the bootstrap run once it is created, e.g. to cancel it
+     * @throws DeploymentUnitProcessingException
+     */
+    private void bootstrap(DeploymentUnit deploymentUnit, List<BootstrapClass> found, BootstrapScan scan, BootstrappedClasses bootstrappedClasses,
+            Consumer<BootstrapProvider> started) throws DeploymentUnitProcessingException {
+        long before = System.nanoTime();
+        synchronized (bootstrappedClasses) {
+            ScheduledExecutorService scheduler = deploymentUnit.getAttachment(DbBootstrapDependencyProcessor.SCHEDULED_EXECUTOR);
+            BootstrapBudget budget = bootstrappedClasses.getBudget(scan, deploymentUnit, scheduler);
+            try (BootstrapProvider provider = scan.createProvider(bootstrappedClasses.getOverrides(), scheduler)) {
+                BootstrapBudget.Watch watch = budget.watch(provider);
+                try {
+                    started.accept(provider);
+                    processAnnotationIndex(deploymentUnit, found, scan, provider, bootstrappedClasses.get(scan), budget);
+                } finally {
+                    watch.finish();
+                }
+            } catch (DeploymentUnitProcessingException e) {
+                throw e;
             } catch (Exception e) {
                 throw new DeploymentUnitProcessingException(e);
             }
-            long duration = System.currentTimeMillis() - before;
-            DbBootstrapLogger.ROOT_LOGGER.infof("Database bootstrapping took [%s] ms", duration);
-        } else {
-            DbBootstrapLogger.ROOT_LOGGER.tracef("%s did not match %s", filename, deploymentName);
         }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+        DbBootstrapLogger.ROOT_LOGGER.infof("Database bootstrapping took [%s] ms", duration);
     }
 
-    private void processAnnotationIndex(DeploymentUnit deploymentUnit) {
-        DotName dotName = DotName.createSimple(BootstrapDatabase.class.getName());
-        CompositeIndex index = deploymentUnit.getAttachment(COMPOSITE_ANNOTATION_INDEX);
-        if (index == null) {
-            return;
+    /**
+     * @param topLevelDeployment - the top level deployment unit
+     * @return the bootstrap classes already executed for the deployment and its subdeployments
+     */
+    private static BootstrappedClasses getBootstrappedClasses(DeploymentUnit topLevelDeployment) {
+        synchronized (topLevelDeployment) {
+            BootstrappedClasses bootstrappedClasses = topLevelDeployment.getAttachment(BOOTSTRAPPED_CLASSES);
+            if (bootstrappedClasses == null) {
+                bootstrappedClasses = new BootstrappedClasses();
+                topLevelDeployment.putAttachment(BOOTSTRAPPED_CLASSES, bootstrappedClasses);
+            }
+            return bootstrappedClasses;
         }
+    }
 
-        List<AnnotationInstance> indexAnnotations = index.getAnnotations(dotName);
-        if (indexAnnotations.isEmpty()) {
+    /**
+     * Execute the bootstrap classes of the deployment unit that haven't already been executed for the top level
+     * deployment. The composite index of a subdeployment also covers the libraries of the top level deployment, so the
+     * same class is found by every subdeployment, but only executed by the first one.
+     *
+     * @param deploymentUnit - the deployment unit
+     * @param found - the bootstrap classes found in the deployment unit
+     * @param scan - the scan matching the deployment
+     * @param provider - the provider for the bootstrap run
+     * @param bootstrapped - the names of the bootstrap classes already executed by the scan for the top level deployment
+     * @param budget - the time budget of the scan for the top level deployment
+     * @throws DeploymentUnitProcessingException if the dependencies of the classes are invalid, a bootstrap class fails
+     *         or the time budget is exceeded
+     */
+    private void processAnnotationIndex(DeploymentUnit deploymentUnit, List<BootstrapClass> found, BootstrapScan scan, BootstrapProvider provider,
+            Set<String> bootstrapped, BootstrapBudget budget)
+            throws DeploymentUnitProcessingException {
+        List<BootstrapClass> bootstrapClasses = new ArrayList<>();
+        Set<String> completed = new HashSet<>(bootstrapped);
+        for (BootstrapClass bootstrapClass : found) {
+            if (bootstrapped.add(bootstrapClass.getClassName())) {
+                bootstrapClasses.add(bootstrapClass);
+            } else {
+                DbBootstrapLogger.ROOT_LOGGER.tracef("%s has already been bootstrapped for %s", bootstrapClass, scan);
+                scan.duplicateRunAvoided();
+            }
+        }
+        if (bootstrapClasses.isEmpty()) {
             return;
         }
 
@@ -106,123 +251,190 @@ class DbBootstrapScanDetectorProcessor implements DeploymentUnitProcessor {
         VirtualFile root = deploymentRoot.getRoot();
 
         DbBootstrapLogger.ROOT_LOGGER.tracef("match on %s", root.getPathName());
+        final Module module = deploymentUnit.getAttachment(MODULE);
+        if (module == null) {
+            DbBootstrapLogger.ROOT_LOGGER.errorf("Unable to process the internal jar files of %s, the deployment has no module", deploymentUnit.getName());
+            return;
+        }
+        BootstrapScheduler scheduler = new BootstrapScheduler(bootstrapClasses, completed, !scan.getClassNames().isEmpty());
+        ExecutorService executor = deploymentUnit.getAttachment(DbBootstrapDependencyProcessor.SERVER_EXECUTOR);
         try {
-            final Module module = deploymentUnit.getAttachment(MODULE);
-            processAnnotatedClasses(indexAnnotations, module.getClassLoader());
+            processAnnotatedClasses(scheduler, deploymentUnit.getName(), scan, module.getClassLoader(), provider, budget, executor);
+        } catch (DeploymentUnitProcessingException e) {
+            budget.checkExpired();
+            throw e;
         } catch (Exception e) {
-            DbBootstrapLogger.ROOT_LOGGER.error("Unable to process the internal jar files", e);
+            budget.checkExpired();
+            throw new DeploymentUnitProcessingException(String.format("Unable to bootstrap %s for %s", deploymentUnit.getName(), scan), e);
         }
+        budget.checkExpired();
     }
 
-
     /**
-     * Process a sorted list of bootstrap classes, by calling method's annotated with
+     * Process the bootstrap classes in dependency order, by calling method's annotated with
      * {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema} first and second
-     * {@link org.wildfly.extras.db_bootstrap.annotations.UpdateSchema}.
+     * {@link org.wildfly.extras.db_bootstrap.annotations.UpdateSchema}. <br>
+     * <br>
+     * When the scan is configured with more than one thread, the classes whose prerequisites are done are executed
+     * concurrently on the executor of the server, at most <code>max-threads</code> at the same time. The update phase is
+     * not started before the bootstrap phase is done. Each bootstrap class is instantiated once, and the same instance is
+     * used for both phases.
      *
-     * @param bootstrapList - List of all the scanned AnnotationInstance
+     * @param scheduler - the dependency graph of all the scanned AnnotationInstance
+     * @param deploymentName - the name of the deployment unit
+     * @param scan - the scan matching the deployment
      * @param classLoader
+     * @param provider - the provider for the bootstrap run
+     * @param budget - the time budget checked before every bootstrap method
+     * @param executor - the executor of the server, or <code>null</code> to execute the classes in the calling thread
      * @throws Exception
+     * @see BootstrapScheduler
      */
-    private void processAnnotatedClasses(final List<AnnotationInstance> bootstrapList, final ClassLoader classLoader)
-            throws Exception {
-
-        DotName bootstrapSchemaMethod = DotName.createSimple(BootstrapSchema.class.getName());
-        DotName updateSchemaMethod = DotName.createSimple(UpdateSchema.class.getName());
-
-        bootstrapList
-                .stream()
-                .sorted(new BootstrapperSorter())
-                .forEachOrdered(a -> {
-                    try {
-                        DbBootstrapLogger.ROOT_LOGGER.infof("Executing Bootstrap Schema method for %s",a.toString());
-                        executeMethod(a, bootstrapSchemaMethod, classLoader);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-
-        bootstrapList
-                .stream()
-                .sorted(new BootstrapperSorter())
-                .forEachOrdered(a -> {
-                    try {
-                        DbBootstrapLogger.ROOT_LOGGER.infof("Executing Update Schema method for %s",a.toString());
-                        executeMethod(a, updateSchemaMethod, classLoader);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                });
-    }
+    void processAnnotatedClasses(final BootstrapScheduler scheduler, final String deploymentName, final BootstrapScan scan, final ClassLoader classLoader,
+            final BootstrapProvider provider, final BootstrapBudget budget, final ExecutorService executor) throws Exception {
 
-    private static class BootstrapperSorter implements Comparator<AnnotationInstance> {
+        InvocationPlan invocationPlan = new InvocationPlan(classLoader);
+        int maxThreads = scan.getMaxThreads();
+        BootstrapMetrics metrics = scan.getMetrics();
+        long before = System.nanoTime();
+        scheduler.execute(a -> {
+            DbBootstrapLogger.ROOT_LOGGER.infof("Executing Bootstrap Schema method for %s", a.toString());
+            executeMethod(a, BootstrapClass.BOOTSTRAP_SCHEMA, deploymentName, scan, classLoader, invocationPlan, provider, budget);
+        }, executor, maxThreads);
+        long bootstrapSchemaDone = System.nanoTime();
+        metrics.bootstrapSchemaCompleted(bootstrapSchemaDone - before);
 
-        @Override
-        public int compare(AnnotationInstance o1, AnnotationInstance o2) {
-            int priority1 = o1.value("priority").asInt();
-            int priority2 = o2.value("priority").asInt();
-
-            return (priority1 > priority2 ? -1 : 1);
-        }
+        scheduler.execute(a -> {
+            DbBootstrapLogger.ROOT_LOGGER.infof("Executing Update Schema method for %s", a.toString());
+            executeMethod(a, BootstrapClass.UPDATE_SCHEMA, deploymentName, scan, classLoader, invocationPlan, provider, budget);
+        }, executor, maxThreads);
+        long updateSchemaDone = System.nanoTime();
+        metrics.updateSchemaCompleted(updateSchemaDone - bootstrapSchemaDone);
+        metrics.runCompleted(updateSchemaDone - before);
     }
 
     /**
-     * Execute the method annotated with specified class. If the annotated method has parameter signature {@link Session} it
-     * will create a session a pass it as parameter.
+     * Execute the method annotated with specified class. If the annotated method has parameter signature {@link Session},
+     * {@link org.hibernate.StatelessSession} or {@link java.sql.Connection} it will create a session a pass it, or its
+     * connection, as parameter. The session is connected through the datasource of the bootstrap class, or else the
+     * datasource of the scan, if any. A session is also created for a method annotated with
+     * {@link org.wildfly.extras.db_bootstrap.annotations.SqlScript} or
+     * {@link org.wildfly.extras.db_bootstrap.annotations.SeedData}, to apply them on.
      *
-     * @param annotatedInstance - The annotated class
-     * @param name - The name of the method annotated
+     * @param bootstrapClass - The annotated class
+     * @param name - The name of the method annotation
+     * @param deploymentName - the name of the deployment unit
+     * @param scan - the scan matching the deployment
      * @param classLoader - The class loader
+     * @param invocationPlan - the resolved bootstrap methods of the bootstrap run
+     * @param provider - the provider for the bootstrap run
+     * @param budget - the time budget of the scan, the current thread is interrupted when it expires
      * @throws Exception
      */
-    private <T extends Annotation> void executeMethod(final AnnotationInstance annotatedInstance, final DotName name, final ClassLoader classLoader)
+    private void executeMethod(final BootstrapClass bootstrapClass, final DotName name, final String deploymentName, final BootstrapScan scan,
+            final ClassLoader classLoader, final InvocationPlan invocationPlan, final BootstrapProvider provider, final BootstrapBudget budget)
             throws Exception {
-        ClassInfo classInfo = (ClassInfo) annotatedInstance.target();
-        classInfo.annotations().entrySet()
-                .stream()
-                .filter(annotationMap -> annotationMap.getKey().equals(name))
-                .flatMap(annotationInstanceList -> annotationInstanceList.getValue().stream())
-                .filter(methodInstance -> methodInstance.target() instanceof MethodInfo)
-                .map(methodTarget -> methodTarget.target())
-                .map(MethodInfo.class::cast)
-                .forEach(t -> {
-                    executeMethodWithParameters(annotatedInstance, classLoader,  t, (ClassInfo) annotatedInstance.target());
-
-                });
+        SessionConfiguration configuration = bootstrapClass.getSessionConfiguration(scan);
+        String phase = name.local();
+        Span classSpan = BootstrapEvents.bootstrapClass(deploymentName, bootstrapClass.getClassName(), phase, bootstrapClass.getHibernateCfg());
+        try {
+            for (BootstrapClass.AnnotatedMethod annotatedMethod : bootstrapClass.getMethods(name)) {
+                BootstrapMethod method = invocationPlan.getMethod(bootstrapClass, annotatedMethod);
+                Span methodSpan = BootstrapEvents.method(deploymentName, bootstrapClass.getClassName(), method.getName(), phase,
+                        bootstrapClass.getHibernateCfg());
+                try {
+                    budget.started(bootstrapClass.getClassName(), method.getName());
+                    try {
+                        if (annotatedMethod.getParameter() != null || !annotatedMethod.getResources().isEmpty()) {
+                            provider.invokeWithParameters(configuration, classLoader, method, annotatedMethod.getResources(),
+                                    annotatedMethod.isAlwaysRun());
+                        } else {
+                            provider.invoke(method);
+                        }
+                    } finally {
+                        budget.completed();
+                    }
+                } finally {
+                    methodSpan.finish();
+                }
+            }
+        } finally {
+            classSpan.finish();
+        }
     }
 
-    private void executeMethodWithParameters(AnnotationInstance annotatedInstance, ClassLoader classLoader, MethodInfo invoke, ClassInfo annotationTarget) {
-        String className = annotationTarget.name().toString();
-        try {
-            Class<?> clazz = classLoader.loadClass(className);
-            Object bootstrapClass = clazz.newInstance();
-
-            DotName sessionName = DotName.createSimple("org.hibernate.Session");
-
-            boolean session = Stream.of(invoke.args())
-                    .filter(types -> types.name().equals(sessionName))
-                    .findFirst()
-                    .isPresent();
-
-            if (session) {
-                Class<?> sessionClass = classLoader.loadClass(Session.class.getName());
-                Method method = clazz.getMethod(invoke.name().toString(), sessionClass);
-                String hibernateCfg = annotatedInstance.value("hibernateCfg").asString();
-                String prefix = Optional.ofNullable(annotatedInstance.value("name"))
-                        .map(AnnotationValue::asString)
-                        .orElse("");
-                provider.invokeWithParameters(prefix, hibernateCfg, bootstrapClass, classLoader, method);
-            } else {
-                Method method = clazz.getMethod(invoke.name().toString());
-                provider.invoke(method,bootstrapClass);
+    /**
+     * Fail the top level deployment for the classes listed on its scans that none of its deployment units could load.
+     * Called once all the deployment units of the top level deployment are processed.
+     *
+     * @param topLevelDeployment - the top level deployment unit
+     * @param scans - the scans matching the deployment
+     * @throws DeploymentUnitProcessingException if a listed class wasn't loaded by any deployment unit
+     */
+    static void checkListedClasses(DeploymentUnit topLevelDeployment, List<BootstrapScan> scans) throws DeploymentUnitProcessingException {
+        BootstrappedClasses bootstrappedClasses = topLevelDeployment.getAttachment(BOOTSTRAPPED_CLASSES);
+        if (bootstrappedClasses == null) {
+            return;
+        }
+        List<String> missing = new ArrayList<>();
+        synchronized (bootstrappedClasses) {
+            for (BootstrapScan scan : scans) {
+                Set<String> loaded = bootstrappedClasses.getLoaded(scan);
+                for (String className : scan.getClassNames()) {
+                    if (!loaded.contains(className)) {
+                        missing.add(String.format("%s of %s", className, scan));
+                    }
+                }
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        }
+        if (!missing.isEmpty()) {
+            throw new DeploymentUnitProcessingException(String.format("Bootstrap classes %s not found in any module of %s", missing,
+                    topLevelDeployment.getName()));
         }
     }
 
     @Override
     public void undeploy(DeploymentUnit deploymentUnit) {
+        if (deploymentUnit.getParent() == null) {
+            deploymentUnit.removeAttachment(BOOTSTRAPPED_CLASSES);
+        }
+    }
+
+    /**
+     * The names of the bootstrap classes executed for a top level deployment by each scan, attached to the top level
+     * deployment unit together with the names of the listed classes loaded by any of its deployment units, the
+     * configuration overrides of the deployment, which are resolved once when the deployment is deployed, and the time
+     * budget of each scan, which starts when the scan first runs.
+     */
+    private static final class BootstrappedClasses {
+        private final Map<PathAddress, Set<String>> classNamesByScan = new HashMap<>();
+        private final Map<PathAddress, Set<String>> loadedByScan = new HashMap<>();
+        private final Map<PathAddress, BootstrapBudget> budgetsByScan = new HashMap<>();
+        private final ConfigurationOverrides overrides = ConfigurationOverrides.fromEnvironment();
+
+        ConfigurationOverrides getOverrides() {
+            return overrides;
+        }
+
+        Set<String> get(BootstrapScan scan) {
+            return classNamesByScan.computeIfAbsent(scan.getAddress(), address -> new HashSet<>());
+        }
+
+        synchronized void loaded(BootstrapScan scan, List<BootstrapClass> bootstrapClasses) {
+            Set<String> loaded = getLoaded(scan);
+            for (BootstrapClass bootstrapClass : bootstrapClasses) {
+                loaded.add(bootstrapClass.getClassName());
+            }
+        }
+
+        Set<String> getLoaded(BootstrapScan scan) {
+            return loadedByScan.computeIfAbsent(scan.getAddress(), address -> new HashSet<>());
+        }
+
+        BootstrapBudget getBudget(BootstrapScan scan, DeploymentUnit deploymentUnit, ScheduledExecutorService scheduler) {
+            DeploymentUnit topLevelDeployment = deploymentUnit.getParent() == null ? deploymentUnit : deploymentUnit.getParent();
+            return budgetsByScan.computeIfAbsent(scan.getAddress(), address -> new BootstrapBudget(scan, topLevelDeployment.getName(), scheduler));
+        }
     }
 
 
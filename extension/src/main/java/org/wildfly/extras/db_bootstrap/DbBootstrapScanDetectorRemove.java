@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.controller.AbstractRemoveStepHandler;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.dmr.ModelNode;
+
+/**
+ * Removes the scan from the {@link BootstrapScanRegistry}, deployments deployed after the removal are no longer
+ * bootstrapped by the scan.
+ */
+class DbBootstrapScanDetectorRemove extends AbstractRemoveStepHandler {
+
+    static final DbBootstrapScanDetectorRemove INSTANCE = new DbBootstrapScanDetectorRemove();
+    private static final OperationContext.AttachmentKey<BootstrapScan> REMOVED_SCAN = OperationContext.AttachmentKey.create(BootstrapScan.class);
+
+    private DbBootstrapScanDetectorRemove() {
+    }
+
+    @Override
+    protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        String filename = DbBootstrapScanDetectorResourceDefinition.FILENAME.resolveModelAttribute(context, model).asString();
+        PathAddress address = DbBootstrapScanDetectorAdd.scanAddress(operation);
+        BootstrapScanRegistry.INSTANCE.getScans(filename)
+                .stream()
+                .filter(scan -> scan.getAddress().equals(address))
+                .findFirst()
+                .ifPresent(scan -> context.attach(REMOVED_SCAN, scan));
+        BootstrapScanRegistry.INSTANCE.remove(address, filename);
+    }
+
+    @Override
+    protected void recoverServices(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        // the removed scan keeps its listed classes and metrics, the class children are no longer part of the model
+        BootstrapScan removed = context.getAttachment(REMOVED_SCAN);
+        if (removed != null) {
+            BootstrapScanRegistry.INSTANCE.add(removed);
+        }
+    }
+}
@@ -18,10 +18,13 @@ package org.wildfly.extras.db_bootstrap;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.DefaultAttributeMarshaller;
 import org.jboss.as.controller.PersistentResourceDefinition;
-import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
 import org.jboss.as.controller.SimpleAttributeDefinition;
 import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
 import org.jboss.as.controller.StringListAttributeDefinition;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.operations.validation.StringLengthValidator;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.dmr.ModelNode;
 import org.jboss.dmr.ModelType;
 
@@ -60,17 +63,66 @@ class DbBootstrapScanDetectorResourceDefinition extends PersistentResourceDefini
         }
     })
     .build();
+    static final SimpleAttributeDefinition MAX_THREADS = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.MAX_THREADS_ATTR, ModelType.INT, true)
+            .setDefaultValue(new ModelNode(1))
+            .setValidator(new IntRangeValidator(1, true))
+            .build();
+    static final SimpleAttributeDefinition LEDGER_TABLE = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.LEDGER_TABLE_ATTR, ModelType.STRING, true)
+            .setAllowExpression(true)
+            .setValidator(new StringLengthValidator(1, true, true))
+            .build();
+
+    static final SimpleAttributeDefinition DATASOURCE = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.DATASOURCE_ATTR, ModelType.STRING, true)
+            .setAllowExpression(true)
+            .setValidator(new StringLengthValidator(1, true, true))
+            .build();
+    static final SimpleAttributeDefinition ASYNC = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.ASYNC_ATTR, ModelType.BOOLEAN, true)
+            .setAllowExpression(true)
+            .setDefaultValue(new ModelNode(false))
+            .build();
+    static final SimpleAttributeDefinition QUERY_TIMEOUT = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.QUERY_TIMEOUT_ATTR, ModelType.INT, true)
+            .setAllowExpression(true)
+            .setValidator(new IntRangeValidator(1, true, true))
+            .setMeasurementUnit(MeasurementUnit.SECONDS)
+            .build();
+    static final SimpleAttributeDefinition LOCK_TIMEOUT = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.LOCK_TIMEOUT_ATTR, ModelType.INT, true)
+            .setAllowExpression(true)
+            .setValidator(new IntRangeValidator(1, true, true))
+            .setMeasurementUnit(MeasurementUnit.SECONDS)
+            .build();
+    static final SimpleAttributeDefinition LOCK_TABLE = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.LOCK_TABLE_ATTR, ModelType.STRING, true)
+            .setAllowExpression(true)
+            .setValidator(new StringLengthValidator(1, true, true))
+            .build();
+    static final SimpleAttributeDefinition LOCK_WAIT = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.LOCK_WAIT_ATTR, ModelType.INT, true)
+            .setAllowExpression(true)
+            .setDefaultValue(new ModelNode(300))
+            .setValidator(new IntRangeValidator(1, true, true))
+            .setMeasurementUnit(MeasurementUnit.SECONDS)
+            .build();
+    static final SimpleAttributeDefinition TIME_BUDGET = new SimpleAttributeDefinitionBuilder(DbBootstrapExtension.TIME_BUDGET_ATTR, ModelType.INT, true)
+            .setAllowExpression(true)
+            .setValidator(new IntRangeValidator(1, true, true))
+            .setMeasurementUnit(MeasurementUnit.SECONDS)
+            .build();
 
     private DbBootstrapScanDetectorResourceDefinition() {
         super(DbBootstrapExtension.SCAN_PATH,
                 DbBootstrapExtension.getResolver(DbBootstrapExtension.RESOLVER),
                 new DbBootstrapScanDetectorAdd(),
-                ReloadRequiredRemoveStepHandler.INSTANCE);
+                DbBootstrapScanDetectorRemove.INSTANCE);
     }
 
     @Override
     public Collection<AttributeDefinition> getAttributes() {
-        return Arrays.asList(FILENAME, FILTER_ON_NAME);
+        return Arrays.asList(FILENAME, FILTER_ON_NAME, MAX_THREADS, LEDGER_TABLE, DATASOURCE, ASYNC, QUERY_TIMEOUT, LOCK_TIMEOUT, TIME_BUDGET, LOCK_TABLE,
+                LOCK_WAIT);
+    }
+
+    @Override
+    public void registerAttributes(ManagementResourceRegistration resourceRegistration) {
+        super.registerAttributes(resourceRegistration);
+        DbBootstrapScanMetrics.register(resourceRegistration);
     }
 
     @Override
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.jboss.as.controller.AbstractRuntimeOnlyHandler;
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.ObjectListAttributeDefinition;
+import org.jboss.as.controller.ObjectTypeAttributeDefinition;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMetrics;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The read-only runtime attributes of a <code>scan</code> resource, read from the {@link BootstrapMetrics} of the scan.
+ * The metrics are reset when the scan is added again, e.g. on reload.
+ */
+final class DbBootstrapScanMetrics {
+
+    static final SimpleAttributeDefinition RUNS = counter("runs");
+    static final SimpleAttributeDefinition LAST_DURATION = duration("last-duration");
+    static final SimpleAttributeDefinition TOTAL_DURATION = duration("total-duration");
+    static final SimpleAttributeDefinition LAST_BOOTSTRAP_SCHEMA_DURATION = duration("last-bootstrap-schema-duration");
+    static final SimpleAttributeDefinition TOTAL_BOOTSTRAP_SCHEMA_DURATION = duration("total-bootstrap-schema-duration");
+    static final SimpleAttributeDefinition LAST_UPDATE_SCHEMA_DURATION = duration("last-update-schema-duration");
+    static final SimpleAttributeDefinition TOTAL_UPDATE_SCHEMA_DURATION = duration("total-update-schema-duration");
+    static final SimpleAttributeDefinition SESSION_FACTORY_BUILDS = counter("session-factory-builds");
+    static final SimpleAttributeDefinition SESSION_FACTORY_BUILD_TIME = duration("session-factory-build-time");
+    static final SimpleAttributeDefinition CONNECTION_ACQUISITIONS = counter("connection-acquisitions");
+    static final SimpleAttributeDefinition CONNECTION_ACQUISITION_TIME = duration("connection-acquisition-time");
+    static final SimpleAttributeDefinition SUCCEEDED_METHODS = counter("succeeded-methods");
+    static final SimpleAttributeDefinition FAILED_METHODS = counter("failed-methods");
+    static final SimpleAttributeDefinition AVOIDED_DUPLICATE_RUNS = counter(DbBootstrapExtension.AVOIDED_DUPLICATE_RUNS_METRIC);
+
+    private static final SimpleAttributeDefinition CLASS_NAME = new SimpleAttributeDefinitionBuilder("class-name", ModelType.STRING).build();
+    private static final SimpleAttributeDefinition METHOD_NAME = new SimpleAttributeDefinitionBuilder("method-name", ModelType.STRING).build();
+    private static final SimpleAttributeDefinition INVOCATIONS = counter("invocations");
+    private static final SimpleAttributeDefinition FAILURES = counter("failures");
+    private static final SimpleAttributeDefinition ALLOCATED_BYTES = new SimpleAttributeDefinitionBuilder("allocated-bytes", ModelType.LONG)
+            .setMeasurementUnit(MeasurementUnit.BYTES)
+            .build();
+    static final ObjectListAttributeDefinition METHODS = ObjectListAttributeDefinition.Builder.of("methods",
+            ObjectTypeAttributeDefinition.Builder.of("method", CLASS_NAME, METHOD_NAME, INVOCATIONS, FAILURES, LAST_DURATION,
+                    TOTAL_DURATION, ALLOCATED_BYTES).build())
+            .setAllowNull(true)
+            .setStorageRuntime()
+            .build();
+
+    private DbBootstrapScanMetrics() {
+    }
+
+    /**
+     * Register the metrics on the scan resource
+     *
+     * @param resourceRegistration - the registration of the scan resource
+     */
+    static void register(ManagementResourceRegistration resourceRegistration) {
+        register(resourceRegistration, RUNS, BootstrapMetrics::getRuns);
+        register(resourceRegistration, LAST_DURATION, BootstrapMetrics::getLastDuration);
+        register(resourceRegistration, TOTAL_DURATION, BootstrapMetrics::getTotalDuration);
+        register(resourceRegistration, LAST_BOOTSTRAP_SCHEMA_DURATION, BootstrapMetrics::getLastBootstrapSchemaDuration);
+        register(resourceRegistration, TOTAL_BOOTSTRAP_SCHEMA_DURATION, BootstrapMetrics::getTotalBootstrapSchemaDuration);
+        register(resourceRegistration, LAST_UPDATE_SCHEMA_DURATION, BootstrapMetrics::getLastUpdateSchemaDuration);
+        register(resourceRegistration, TOTAL_UPDATE_SCHEMA_DURATION, BootstrapMetrics::getTotalUpdateSchemaDuration);
+        register(resourceRegistration, SESSION_FACTORY_BUILDS, BootstrapMetrics::getSessionFactoryBuilds);
+        register(resourceRegistration, SESSION_FACTORY_BUILD_TIME, BootstrapMetrics::getSessionFactoryBuildTime);
+        register(resourceRegistration, CONNECTION_ACQUISITIONS, BootstrapMetrics::getConnectionAcquisitions);
+        register(resourceRegistration, CONNECTION_ACQUISITION_TIME, BootstrapMetrics::getConnectionAcquisitionTime);
+        register(resourceRegistration, SUCCEEDED_METHODS, BootstrapMetrics::getSucceededMethods);
+        register(resourceRegistration, FAILED_METHODS, BootstrapMetrics::getFailedMethods);
+        resourceRegistration.registerMetric(AVOIDED_DUPLICATE_RUNS,
+                new ScanMetricHandler(scan -> new ModelNode(scan.getAvoidedDuplicateRuns())));
+        resourceRegistration.registerMetric(METHODS, new ScanMetricHandler(scan -> {
+            ModelNode methods = new ModelNode().setEmptyList();
+            scan.getMetrics().getMethods().values().forEach(method -> {
+                ModelNode node = new ModelNode();
+                node.get(CLASS_NAME.getName()).set(method.getClassName());
+                node.get(METHOD_NAME.getName()).set(method.getMethodName());
+                node.get(INVOCATIONS.getName()).set(method.getInvocations());
+                node.get(FAILURES.getName()).set(method.getFailures());
+                node.get(LAST_DURATION.getName()).set(method.getLastDuration());
+                node.get(TOTAL_DURATION.getName()).set(method.getTotalDuration());
+                node.get(ALLOCATED_BYTES.getName()).set(method.getAllocatedBytes());
+                methods.add(node);
+            });
+            return methods;
+        }));
+    }
+
+    private static void register(ManagementResourceRegistration resourceRegistration, AttributeDefinition attribute,
+            ToLongFunction<BootstrapMetrics> metric) {
+        resourceRegistration.registerMetric(attribute, new ScanMetricHandler(scan -> new ModelNode(metric.applyAsLong(scan.getMetrics()))));
+    }
+
+    private static SimpleAttributeDefinition counter(String name) {
+        return new SimpleAttributeDefinitionBuilder(name, ModelType.LONG, true)
+                .setStorageRuntime()
+                .build();
+    }
+
+    private static SimpleAttributeDefinition duration(String name) {
+        return new SimpleAttributeDefinitionBuilder(name, ModelType.LONG, true)
+                .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                .setStorageRuntime()
+                .build();
+    }
+
+    /**
+     * Reads a metric of the scan addressed by the operation, a scan that isn't registered has no metrics yet
+     */
+    private static final class ScanMetricHandler extends AbstractRuntimeOnlyHandler {
+        private final Function<BootstrapScan, ModelNode> metric;
+
+        private ScanMetricHandler(Function<BootstrapScan, ModelNode> metric) {
+            this.metric = metric;
+        }
+
+        @Override
+        protected void executeRuntimeStep(OperationContext context, ModelNode operation) throws OperationFailedException {
+            BootstrapScan scan = BootstrapScanRegistry.INSTANCE.getScan(DbBootstrapScanDetectorAdd.scanAddress(operation));
+            if (scan != null) {
+                context.getResult().set(metric.apply(scan));
+            }
+        }
+    }
+}
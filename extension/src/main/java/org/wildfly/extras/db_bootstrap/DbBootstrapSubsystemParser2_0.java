@@ -31,7 +31,8 @@ class DbBootstrapSubsystemParser2_0 extends PersistentResourceXMLParser {
         xmlDescription = builder(DbBootstrapRootResourceDefinition.INSTANCE, Namespace.DB_BOOTSTRAP_2_0.getUriString())
                 .addChild(builder(DbBootstrapDeploymentResourceDefinition.INSTANCE)
                         .addChild(builder(DbBootstrapScanDetectorResourceDefinition.INSTANCE)
-                                .addAttribute(DbBootstrapScanDetectorResourceDefinition.FILENAME))
+                                .addAttribute(DbBootstrapScanDetectorResourceDefinition.FILENAME)
+                                .addAttribute(DbBootstrapScanDetectorResourceDefinition.FILTER_ON_NAME))
                 )
                 .build();
     }
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMethod;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.BiConsumer;
+
+/**
+ * Invokes a bootstrap method through the invoker generated for its class at build time.
+ *
+ * @see org.wildfly.extras.db_bootstrap.processor.BootstrapPlanProcessor
+ */
+final class GeneratedBootstrapMethod implements BootstrapMethod {
+
+    private final String className;
+    private final String name;
+    private final String descriptor;
+    private final BiConsumer<String, Object> invoker;
+
+    GeneratedBootstrapMethod(final String className, final String name, final String descriptor, final BiConsumer<String, Object> invoker) {
+        this.className = className;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.invoker = invoker;
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public void invoke(final Object... parameters) throws Exception {
+        try {
+            invoker.accept(name + descriptor, parameters.length > 0 ? parameters[0] : null);
+        } catch (UndeclaredThrowableException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMethod;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapParameter;
+import org.wildfly.extras.db_bootstrap.providers.MethodChecksum;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The resolved bootstrap methods of a bootstrap run. <br>
+ * <br>
+ * A bootstrap class is loaded, instantiated and has all its annotated methods resolved the first time one of its
+ * methods is needed. The same instance is used for both phases, so state set by a
+ * {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema} method is visible to the
+ * {@link org.wildfly.extras.db_bootstrap.annotations.UpdateSchema} methods of the class. Methods of classes read from a
+ * bootstrap plan are called through the generated invoker, the others through a {@link MethodHandle}. <br>
+ * <br>
+ * The {@link BootstrapScheduler} never executes the same class in two threads at once, so a class is only ever
+ * resolved by one thread.
+ */
+final class InvocationPlan {
+
+    private final ClassLoader classLoader;
+    private final ConcurrentMap<String, Map<BootstrapClass.AnnotatedMethod, BootstrapMethod>> resolvedClasses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<BootstrapParameter, Class<?>> parameterClasses = new ConcurrentHashMap<>();
+
+    /**
+     * @param classLoader - the class loader of the deployment
+     */
+    InvocationPlan(final ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @param bootstrapClass - the bootstrap class
+     * @param annotatedMethod - the annotated method of the class
+     * @return the method bound to the instance of the class
+     * @throws Exception if the class or one of its methods can't be resolved
+     */
+    BootstrapMethod getMethod(final BootstrapClass bootstrapClass, final BootstrapClass.AnnotatedMethod annotatedMethod) throws Exception {
+        Map<BootstrapClass.AnnotatedMethod, BootstrapMethod> methods = resolvedClasses.get(bootstrapClass.getClassName());
+        if (methods == null) {
+            methods = resolve(bootstrapClass);
+            resolvedClasses.put(bootstrapClass.getClassName(), methods);
+        }
+        return methods.get(annotatedMethod);
+    }
+
+    private Map<BootstrapClass.AnnotatedMethod, BootstrapMethod> resolve(final BootstrapClass bootstrapClass) throws Exception {
+        Map<BootstrapClass.AnnotatedMethod, BootstrapMethod> methods = new IdentityHashMap<>();
+        if (bootstrapClass.getInvoker() != null) {
+            BiConsumer<String, Object> invoker = loadInvoker(bootstrapClass);
+            for (BootstrapClass.AnnotatedMethod annotatedMethod : bootstrapClass.getMethods()) {
+                methods.put(annotatedMethod, new GeneratedBootstrapMethod(bootstrapClass.getClassName(), annotatedMethod.getName(),
+                        annotatedMethod.getDescriptor(), invoker));
+            }
+            return methods;
+        }
+
+        Class<?> clazz = classLoader.loadClass(bootstrapClass.getClassName());
+        Object instance = newInstance(clazz);
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (BootstrapClass.AnnotatedMethod annotatedMethod : bootstrapClass.getMethods()) {
+            Method method;
+            if (annotatedMethod.getParameter() != null) {
+                method = clazz.getMethod(annotatedMethod.getName(), getParameterClass(annotatedMethod.getParameter()));
+            } else {
+                method = clazz.getMethod(annotatedMethod.getName());
+            }
+            MethodHandle handle = lookup.unreflect(method).bindTo(instance);
+            methods.put(annotatedMethod, new MethodHandleBootstrapMethod(bootstrapClass.getClassName(), method.getName(),
+                    MethodChecksum.descriptor(method), annotatedMethod.getParameter() != null, handle));
+        }
+        return methods;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BiConsumer<String, Object> loadInvoker(final BootstrapClass bootstrapClass) throws Exception {
+        return (BiConsumer<String, Object>) newInstance(classLoader.loadClass(bootstrapClass.getInvoker()));
+    }
+
+    /**
+     * @return a new instance created by the no-arg constructor of the class
+     * @throws Exception the exception thrown by the constructor, or if the class can't be instantiated
+     */
+    private static Object newInstance(final Class<?> clazz) throws Exception {
+        try {
+            return clazz.getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private Class<?> getParameterClass(final BootstrapParameter parameter) throws ClassNotFoundException {
+        Class<?> parameterClass = parameterClasses.get(parameter);
+        if (parameterClass == null) {
+            parameterClass = classLoader.loadClass(parameter.getTypeName());
+            parameterClasses.put(parameter, parameterClass);
+        }
+        return parameterClass;
+    }
+}
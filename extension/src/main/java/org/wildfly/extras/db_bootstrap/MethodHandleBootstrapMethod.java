@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMethod;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Invokes a bootstrap method found in the annotation index through a {@link MethodHandle} bound to the instance of
+ * its bootstrap class.
+ *
+ * @see InvocationPlan
+ */
+final class MethodHandleBootstrapMethod implements BootstrapMethod {
+
+    private static final MethodType NO_PARAMETERS = MethodType.methodType(void.class);
+    private static final MethodType ONE_PARAMETER = MethodType.methodType(void.class, Object.class);
+
+    private final String className;
+    private final String name;
+    private final String descriptor;
+    private final boolean parameter;
+    private final MethodHandle handle;
+
+    /**
+     * @param className - the name of the bootstrap class
+     * @param name - the name of the method
+     * @param descriptor - the JVM descriptor of the method
+     * @param parameter - true if the method takes a {@link org.wildfly.extras.db_bootstrap.providers.BootstrapParameter}
+     * @param handle - the method handle bound to the bootstrap class instance
+     */
+    MethodHandleBootstrapMethod(final String className, final String name, final String descriptor, final boolean parameter, final MethodHandle handle) {
+        this.className = className;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.parameter = parameter;
+        this.handle = handle.asType(parameter ? ONE_PARAMETER : NO_PARAMETERS);
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    @Override
+    public void invoke(final Object... parameters) throws Exception {
+        try {
+            if (parameter) {
+                handle.invokeExact(parameters[0]);
+            } else {
+                handle.invokeExact();
+            }
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+}
@@ -24,12 +24,13 @@ enum Namespace {
     UNKNOWN(null),
 
     DB_BOOTSTRAP_1_0("urn:jboss:domain:db_bootstrap:1.0"),
-    DB_BOOTSTRAP_2_0("urn:jboss:domain:db_bootstrap:2.0");
+    DB_BOOTSTRAP_2_0("urn:jboss:domain:db_bootstrap:2.0"),
+    DB_BOOTSTRAP_3_0("urn:jboss:domain:db_bootstrap:3.0");
 
     /**
      * The current namespace version.
      */
-    public static final Namespace CURRENT = DB_BOOTSTRAP_2_0;
+    public static final Namespace CURRENT = DB_BOOTSTRAP_3_0;
 
     private final String name;
 
@@ -52,4 +52,53 @@ public @interface BootstrapDatabase {
      * file.
      */
     String name() default "";
+    /**
+     * The bootstrap classes that must be done before this class is executed.
+     * <br><br>
+     * A class declaring dependencies is executed as soon as the classes it depends on are done, regardless of
+     * its priority. Classes without any declared dependencies are executed in prioritized order.
+     */
+    Class<?>[] dependsOn() default {};
+    /**
+     * An optional JNDI name of a datasource managed by the server, e.g. <code>java:jboss/datasources/ExampleDS</code>.
+     * <br><br>
+     * When specified the Session is connected through the pool of the datasource instead of the connection
+     * properties of the hibernate configuration file, and the deployment is not bootstrapped before the datasource
+     * is bound. The hibernate configuration file is optional when a datasource is specified. Overrides the
+     * datasource of the scan.
+     */
+    String datasource() default "";
+    /**
+     * An optional JDBC batch size of the sessions passed to the bootstrap methods.
+     * <br><br>
+     * When specified the inserts and updates of a Session or StatelessSession are sent to the database in batches
+     * of this size, ordered by entity so they can be batched, and the Session doesn't interact with the second level
+     * cache. A Session still keeps every entity in its first level cache until it is flushed and cleared, bulk loads
+     * should take a StatelessSession parameter. Doesn't apply to the statements of a Connection parameter.
+     */
+    int batchSize() default 0;
+    /**
+     * An optional JDBC fetch size of the queries of the sessions passed to the bootstrap methods.
+     * <br><br>
+     * When specified the rows of a query are fetched from the database this many at a time, so large results can be
+     * iterated with constant memory through {@link org.hibernate.Query#scroll()}. Doesn't apply to the statements of a
+     * Connection parameter.
+     */
+    int fetchSize() default 0;
+    /**
+     * An optional JDBC query timeout in seconds of the statements of the bootstrap methods.
+     * <br><br>
+     * When specified a statement taking longer is cancelled by the driver and fails the method. Applies to the
+     * statements of a Session, StatelessSession or Connection parameter and to the SQL scripts and seed data of the
+     * methods. Overrides the query timeout of the scan.
+     */
+    int queryTimeout() default 0;
+    /**
+     * An optional lock wait timeout in seconds of the sessions passed to the bootstrap methods.
+     * <br><br>
+     * When specified a statement waiting longer for a lock held by another transaction fails instead of blocking, on
+     * the databases supporting a lock wait timeout for the connection: H2, PostgreSQL, MySQL, MariaDB, SQL Server,
+     * DB2 and, for DDL only, Oracle. Overrides the lock timeout of the scan.
+     */
+    int lockTimeout() default 0;
 }
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies a file of seed data to load into a table for a {@link BootstrapSchema} or {@link UpdateSchema} method.
+ * The rows are inserted on the connection of the session of the method, within the transaction of the method and
+ * before the method itself is invoked, but after its {@link SqlScript}, if any.
+ * <br><br>
+ * The file is read from the deployment archive, memory mapped when the archive is exploded on disk and streamed
+ * otherwise, so it is never held in memory as a whole. The rows are inserted with multi-row <code>INSERT</code>
+ * statements sent to the database in JDBC batches. The values are converted to the types of the columns of the table.
+ * An empty unquoted value is inserted as <code>NULL</code>, an empty quoted value as an empty string.
+ * <br><br>
+ * When key columns are specified, existing rows with the same keys are updated instead, with a <code>MERGE</code> on
+ * H2, <code>INSERT ... ON CONFLICT</code> on PostgreSQL, <code>INSERT ... ON DUPLICATE KEY UPDATE</code> on MySQL and
+ * MariaDB and a standard <code>MERGE</code> on the other databases. The keys must then be unique within the file.
+ *
+ * @author Flemming Harms
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface SeedData {
+    /**
+     * The table to load the rows into, optionally qualified with its schema
+     */
+    String table();
+    /**
+     * The location of the UTF-8 encoded file in the module classpath, e.g. <code>db/seed/countries.csv</code>
+     */
+    String resource();
+    /**
+     * The format of the file
+     */
+    Format format() default Format.CSV;
+    /**
+     * The columns of the values of the rows, in order. If not specified, the columns are read from the header of the
+     * file.
+     */
+    String[] columns() default {};
+    /**
+     * The first line of the file is a header holding the column names
+     */
+    boolean header() default true;
+    /**
+     * The key columns compared to update existing rows. If not specified, all rows are inserted.
+     */
+    String[] keys() default {};
+    /**
+     * The number of rows inserted by a single statement. It is lowered if the statement would otherwise have more
+     * than 2000 parameters.
+     */
+    int rowsPerStatement() default 100;
+    /**
+     * The number of statements sent to the database in a single JDBC batch
+     */
+    int batchSize() default 50;
+    /**
+     * The number of rows after which the transaction is committed. The default 0 loads the whole file and invokes
+     * the method in a single transaction.
+     * <br><br>
+     * A load failing after an intermediate commit leaves the rows committed so far loaded.
+     */
+    int commitInterval() default 0;
+
+    /**
+     * The format of a seed data file
+     */
+    enum Format {
+        /**
+         * Comma separated values, as defined by RFC 4180. Values containing commas, quotes or line breaks are enclosed
+         * in double quotes, and a double quote within a value is escaped by another double quote.
+         */
+        CSV,
+        /**
+         * Tab separated values, without any quoting
+         */
+        TSV
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies a SQL script to execute for a {@link BootstrapSchema} or {@link UpdateSchema} method. The script is
+ * executed on the connection of the session of the method, within the transaction of the method and before the
+ * method itself is invoked.
+ * <br><br>
+ * The script is streamed from the deployment archive, so it is never held in memory as a whole. It is split into
+ * statements on the delimiter, which is ignored within quoted strings and identifiers, PostgreSQL dollar quoted
+ * strings and comments. Comments are removed, except for optimizer hints (<code>/*+ ... *&#47;</code>). A line
+ * <code>DELIMITER &lt;delimiter&gt;</code> switches to another delimiter for the rest of the script, and a delimiter
+ * consisting of letters only, e.g. <code>GO</code>, must be on a line of its own.
+ * <br><br>
+ * The statements are sent to the database in JDBC batches, statements returning a result set are therefore only
+ * supported when the batch size is 1.
+ *
+ * @author Flemming Harms
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface SqlScript {
+    /**
+     * The location of the UTF-8 encoded script in the module classpath, e.g. <code>db/V12__add_orders.sql</code>
+     */
+    String value();
+    /**
+     * The delimiter separating the statements of the script
+     */
+    String delimiter() default ";";
+    /**
+     * The number of statements sent to the database in a single JDBC batch. A batch size of 1 executes the statements
+     * one at a time.
+     */
+    int batchSize() default 100;
+    /**
+     * The number of statements after which the transaction is committed. The default 0 executes the whole script and
+     * the method in a single transaction.
+     * <br><br>
+     * A script failing after an intermediate commit leaves the statements committed so far applied.
+     */
+    int commitInterval() default 0;
+}
@@ -28,7 +28,9 @@ import java.lang.annotation.Target;
  * second phase of bootstrapping and run after {@link BootstrapSchema}
  * <br><br>
  * If the parameter signature of the method is {@link org.hibernate.Session} the
- * hibernate session will be passed into the method call.
+ * hibernate session will be passed into the method call. A {@link org.hibernate.StatelessSession}
+ * parameter is passed a stateless session, and a {@link java.sql.Connection} parameter the JDBC
+ * connection of the session, both within the transaction of the method.
  * If it's not present the method is responsible for creating a connection to the database.
  *
  * @author Flemming Harms
@@ -38,4 +40,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Documented
 public @interface UpdateSchema {
+    /**
+     * Execute the method on every bootstrap run, even if the bootstrap ledger shows it has already been applied
+     * with the same bytecode.
+     * <br><br>
+     * Only relevant when the scan is configured with a ledger table.
+     */
+    boolean alwaysRun() default false;
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.events;
+
+/**
+ * Emits JDK Flight Recorder events for the stages of a bootstrap run. <br>
+ * <br>
+ * An event is only created if the JVM provides the <code>jdk.jfr</code> API and the event type is enabled in a
+ * running recording, otherwise {@link Span#NONE} is returned and nothing is recorded. The event classes are only
+ * loaded when the API is present, so the extension still runs on JVMs without it.
+ */
+public final class BootstrapEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private BootstrapEvents() {
+    }
+
+    /**
+     * @param deployment - the name of the deployment unit
+     * @return the span of the lookup of the bootstrap classes in the annotation index and bootstrap plans
+     */
+    public static Span indexLookup(String deployment) {
+        return AVAILABLE ? IndexLookupEvent.begin(deployment) : Span.NONE;
+    }
+
+    /**
+     * @param deployment - the name of the deployment unit
+     * @param className - the bootstrap class
+     * @param phase - the simple name of the method annotation of the phase
+     * @param cfg - the hibernate configuration file of the class
+     * @return the span of a bootstrap class in a phase
+     */
+    public static Span bootstrapClass(String deployment, String className, String phase, String cfg) {
+        return AVAILABLE ? ClassEvent.begin(deployment, className, phase, cfg) : Span.NONE;
+    }
+
+    /**
+     * @param deployment - the name of the deployment unit
+     * @param className - the bootstrap class
+     * @param method - the name of the bootstrap method
+     * @param phase - the simple name of the method annotation of the phase
+     * @param cfg - the hibernate configuration file of the class
+     * @return the span of a bootstrap method
+     */
+    public static Span method(String deployment, String className, String method, String phase, String cfg) {
+        return AVAILABLE ? MethodEvent.begin(deployment, className, method, phase, cfg) : Span.NONE;
+    }
+
+    /**
+     * @param name - the name of the bootstrap configuration
+     * @param cfg - the hibernate configuration file
+     * @param datasource - the JNDI name of the datasource, empty if not specified
+     * @return the span of building a session factory
+     */
+    public static Span sessionFactoryBuild(String name, String cfg, String datasource) {
+        return AVAILABLE ? SessionFactoryBuildEvent.begin(name, cfg, datasource) : Span.NONE;
+    }
+
+    /**
+     * @param className - the bootstrap class
+     * @param method - the name of the bootstrap method
+     * @param commit - true for a commit, false for a rollback
+     * @return the span of the commit or rollback of the transaction of a bootstrap method
+     */
+    public static Span transaction(String className, String method, boolean commit) {
+        return AVAILABLE ? TransactionEvent.begin(className, method, commit) : Span.NONE;
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, BootstrapEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * A stage of a bootstrap run, the event is committed when the span is finished
+     */
+    @FunctionalInterface
+    public interface Span {
+
+        /**
+         * Nothing is recorded
+         */
+        Span NONE = () -> {
+        };
+
+        /**
+         * Commit the event of the stage, called in a finally block once the stage is done
+         */
+        void finish();
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Execution of the methods of a bootstrap class in a phase.
+ */
+@Name("org.wildfly.extras.db_bootstrap.BootstrapClass")
+@Label("Bootstrap Class")
+@Category({"WildFly", "DB Bootstrap"})
+@Description("Execution of the methods of a bootstrap class in a phase.")
+class ClassEvent extends Event implements BootstrapEvents.Span {
+
+    @Label("Deployment")
+    String deployment;
+    @Label("Class")
+    String className;
+    @Label("Phase")
+    String phase;
+    @Label("Hibernate Configuration")
+    String cfg;
+
+    static BootstrapEvents.Span begin(String deployment, String className, String phase, String cfg) {
+        ClassEvent event = new ClassEvent();
+        if (!event.isEnabled()) {
+            return BootstrapEvents.Span.NONE;
+        }
+        event.deployment = deployment;
+        event.className = className;
+        event.phase = phase;
+        event.cfg = cfg;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void finish() {
+        commit();
+    }
+}
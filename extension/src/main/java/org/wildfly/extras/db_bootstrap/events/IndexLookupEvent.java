@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lookup of the bootstrap classes of a deployment unit in its annotation index and bootstrap plans.
+ */
+@Name("org.wildfly.extras.db_bootstrap.IndexLookup")
+@Label("Index Lookup")
+@Category({"WildFly", "DB Bootstrap"})
+@Description("Lookup of the bootstrap classes of a deployment unit in its annotation index and bootstrap plans.")
+class IndexLookupEvent extends Event implements BootstrapEvents.Span {
+
+    @Label("Deployment")
+    String deployment;
+
+    static BootstrapEvents.Span begin(String deployment) {
+        IndexLookupEvent event = new IndexLookupEvent();
+        if (!event.isEnabled()) {
+            return BootstrapEvents.Span.NONE;
+        }
+        event.deployment = deployment;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void finish() {
+        commit();
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Invocation of a bootstrap method, including opening its session and committing its transaction.
+ */
+@Name("org.wildfly.extras.db_bootstrap.BootstrapMethod")
+@Label("Bootstrap Method")
+@Category({"WildFly", "DB Bootstrap"})
+@Description("Invocation of a bootstrap method, including opening its session and committing its transaction.")
+class MethodEvent extends Event implements BootstrapEvents.Span {
+
+    @Label("Deployment")
+    String deployment;
+    @Label("Class")
+    String className;
+    @Label("Method")
+    String method;
+    @Label("Phase")
+    String phase;
+    @Label("Hibernate Configuration")
+    String cfg;
+
+    static BootstrapEvents.Span begin(String deployment, String className, String method, String phase, String cfg) {
+        MethodEvent event = new MethodEvent();
+        if (!event.isEnabled()) {
+            return BootstrapEvents.Span.NONE;
+        }
+        event.deployment = deployment;
+        event.className = className;
+        event.method = method;
+        event.phase = phase;
+        event.cfg = cfg;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void finish() {
+        commit();
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Build of a Hibernate session factory for a bootstrap configuration.
+ */
+@Name("org.wildfly.extras.db_bootstrap.SessionFactoryBuild")
+@Label("Session Factory Build")
+@Category({"WildFly", "DB Bootstrap"})
+@Description("Build of a Hibernate session factory for a bootstrap configuration.")
+class SessionFactoryBuildEvent extends Event implements BootstrapEvents.Span {
+
+    @Label("Name")
+    String name;
+    @Label("Hibernate Configuration")
+    String cfg;
+    @Label("Datasource")
+    String datasource;
+
+    static BootstrapEvents.Span begin(String name, String cfg, String datasource) {
+        SessionFactoryBuildEvent event = new SessionFactoryBuildEvent();
+        if (!event.isEnabled()) {
+            return BootstrapEvents.Span.NONE;
+        }
+        event.name = name;
+        event.cfg = cfg;
+        event.datasource = datasource;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void finish() {
+        commit();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.wildfly.extras.db_bootstrap.matchfilter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.jboss.modules.filter.PathFilter;
@@ -24,27 +26,71 @@ import org.jboss.vfs.VisitorAttributes;
 import org.jboss.vfs.util.AbstractVirtualFileFilterWithAttributes;
 
 /**
- * Match all files that contain the filtered list
+ * Match all files that contain the filtered list. <br>
+ * <br>
+ * The filters are glob patterns, e.g. <code>core.jar</code>, <code>com.mycompany*</code> or <code>lib/*.jar</code>,
+ * matched against the name of a file and its path. An entry may hold several patterns separated by commas, as written
+ * by the <code>filter-on-name</code> attribute. The patterns are compiled once into a single matcher when the filter is
+ * created.
  * @author Flemming Harms
  *
  */
 public class FilenameContainFilter extends AbstractVirtualFileFilterWithAttributes {
-    private List<String> filterOnName;
+    private final List<String> filterOnName;
+    private final PathFilter matcher;
 
     public FilenameContainFilter(List<String> filterOnName, VisitorAttributes attributes) {
         super(attributes);
-        this.filterOnName = filterOnName;
+        List<String> patterns = new ArrayList<>();
+        for (String filter : filterOnName) {
+            for (String pattern : filter.split(",")) {
+                if (!pattern.trim().isEmpty()) {
+                    patterns.add(pattern.trim());
+                }
+            }
+        }
+        this.filterOnName = Collections.unmodifiableList(patterns);
+        PathFilter[] filters = new PathFilter[patterns.size()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = PathFilters.match(patterns.get(i));
+        }
+        this.matcher = PathFilters.any(filters);
+    }
+
+    public FilenameContainFilter(List<String> filterOnName) {
+        this(filterOnName, VisitorAttributes.DEFAULT);
+    }
+
+    /**
+     * @return the patterns of the filter
+     */
+    public List<String> getFilterOnName() {
+        return filterOnName;
     }
 
     @Override
     public boolean accepts(VirtualFile file) {
-        for (String filter : filterOnName) {
-            PathFilter matchFilter = PathFilters.match(filter);
-            if (matchFilter.accept(file.getPathName())) {
-                return true;
-            }
+        return matcher.accept(file.getName()) || matcher.accept(file.getPathName());
+    }
+
+    /**
+     * @param file - the archive, e.g. a resource root of a deployment
+     * @param root - the root of the deployment containing the archive
+     * @return true if the name of the archive or its path relative to the root matches one of the patterns
+     */
+    public boolean accepts(VirtualFile file, VirtualFile root) {
+        if (matcher.accept(file.getName())) {
+            return true;
+        }
+        if (root == null || file.equals(root)) {
+            return false;
+        }
+        try {
+            return matcher.accept(file.getPathNameRelativeTo(root));
+        } catch (IllegalArgumentException e) {
+            // not an archive of the deployment, e.g. an additional module
+            return matcher.accept(file.getPathName());
         }
-        return false;
     }
 
     @Override
@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.processor;
+
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema;
+import org.wildfly.extras.db_bootstrap.annotations.SeedData;
+import org.wildfly.extras.db_bootstrap.annotations.SqlScript;
+import org.wildfly.extras.db_bootstrap.annotations.UpdateSchema;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapParameter;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the bootstrap plan of an archive at build time, so the deployment doesn't have to search the annotation
+ * index and use reflection to find and invoke the bootstrap methods. <br>
+ * <br>
+ * For every {@link BootstrapDatabase} annotated class <code>Foo</code> an invoker class
+ * <code>Foo_DbBootstrapInvoker</code> is generated in the same package. The invoker implements
+ * {@link java.util.function.BiConsumer}, accepting the name and descriptor of the bootstrap method to call and the
+ * {@link BootstrapParameter} of the method, and calls the method directly on the single bootstrap class instance it
+ * holds. Checked exceptions thrown by the method are wrapped in a {@link java.lang.reflect.UndeclaredThrowableException}. <br>
+ * <br>
+ * The plan is written to {@value #PLAN}, a tab separated text file with a line per bootstrap class followed by a line
+ * per annotated method of the class:
+ * <pre>
+ * class  &lt;class name&gt;  &lt;invoker class name&gt;  &lt;priority&gt;  &lt;hibernateCfg&gt;  &lt;name&gt;  &lt;comma separated dependsOn&gt;  &lt;datasource&gt;  &lt;batchSize&gt;  &lt;fetchSize&gt;  &lt;queryTimeout&gt;  &lt;lockTimeout&gt;
+ * method &lt;annotation class name&gt;  &lt;method name&gt;  &lt;method descriptor&gt;  &lt;alwaysRun&gt;
+ * </pre>
+ * A method line is followed by a line for its {@link SqlScript} and a line for its {@link SeedData}, if any:
+ * <pre>
+ * script &lt;path&gt;  &lt;delimiter&gt;  &lt;batchSize&gt;  &lt;commitInterval&gt;
+ * seed   &lt;table&gt;  &lt;resource&gt;  &lt;format&gt;  &lt;comma separated columns&gt;  &lt;header&gt;  &lt;comma separated keys&gt;  &lt;rowsPerStatement&gt;  &lt;batchSize&gt;  &lt;commitInterval&gt;
+ * </pre>
+ * The processor is registered as a service, so it is picked up when compiling against the db-bootstrap artifact.
+ *
+ * @author Flemming Harms
+ */
+@SupportedAnnotationTypes({"org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase",
+        "org.wildfly.extras.db_bootstrap.annotations.SqlScript", "org.wildfly.extras.db_bootstrap.annotations.SeedData"})
+public class BootstrapPlanProcessor extends AbstractProcessor {
+
+    /**
+     * The location of the bootstrap plan in the archive
+     */
+    public static final String PLAN = "META-INF/db-bootstrap/plan";
+
+    /**
+     * The suffix of the generated invoker class names
+     */
+    public static final String INVOKER_SUFFIX = "_DbBootstrapInvoker";
+
+    private final Map<String, String> plan = new TreeMap<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writePlan();
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(BootstrapDatabase.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@BootstrapDatabase is only supported on classes");
+                continue;
+            }
+            processBootstrapClass((TypeElement) element);
+        }
+        for (Class<? extends Annotation> annotation : Arrays.asList(SqlScript.class, SeedData.class)) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getAnnotation(BootstrapSchema.class) == null && element.getAnnotation(UpdateSchema.class) == null) {
+                    error(element, "@%s is only supported on methods annotated with @BootstrapSchema or @UpdateSchema", annotation.getSimpleName());
+                }
+            }
+        }
+        return false;
+    }
+
+    private void processBootstrapClass(final TypeElement type) {
+        boolean valid = true;
+        if (!type.getModifiers().contains(Modifier.PUBLIC) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            valid = error(type, "The bootstrap class %s must be public and not abstract", type.getQualifiedName());
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+                && !(type.getNestingKind() == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC))) {
+            valid = error(type, "The bootstrap class %s must be a top level or static nested class", type.getQualifiedName());
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        if (!constructors.isEmpty() && constructors.stream()
+                .noneMatch(c -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC))) {
+            valid = error(type, "The bootstrap class %s must have a public no-arg constructor", type.getQualifiedName());
+        }
+
+        StringBuilder methods = new StringBuilder();
+        StringBuilder cases = new StringBuilder();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            for (Class<? extends Annotation> annotation : Arrays.asList(BootstrapSchema.class, UpdateSchema.class)) {
+                Annotation methodAnnotation = method.getAnnotation(annotation);
+                if (methodAnnotation == null) {
+                    continue;
+                }
+                if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+                    valid = error(method, "The bootstrap method %s must be public and not static", method.getSimpleName());
+                    continue;
+                }
+                BootstrapParameter parameter = method.getParameters().size() == 1
+                        ? BootstrapParameter.forTypeName(processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType()).toString())
+                        : null;
+                if (!method.getParameters().isEmpty() && parameter == null) {
+                    valid = error(method, "The bootstrap method %s must either have no parameters or a single parameter of type %s",
+                            method.getSimpleName(), Stream.of(BootstrapParameter.values())
+                                    .map(BootstrapParameter::getTypeName)
+                                    .collect(Collectors.joining(", ")));
+                    continue;
+                }
+                boolean alwaysRun = methodAnnotation instanceof BootstrapSchema
+                        ? ((BootstrapSchema) methodAnnotation).alwaysRun()
+                        : ((UpdateSchema) methodAnnotation).alwaysRun();
+                String descriptor = "(" + (parameter != null ? parameter.getDescriptor() : "") + ")" + descriptor(method.getReturnType());
+                String resources = resources(method);
+                if (resources == null) {
+                    valid = false;
+                    continue;
+                }
+
+                methods.append(String.join("\t", "method", annotation.getName(), method.getSimpleName(), descriptor,
+                        Boolean.toString(alwaysRun))).append('\n').append(resources);
+                cases.append(invokerCase(method, descriptor, parameter));
+            }
+        }
+        if (!valid) {
+            return;
+        }
+
+        BootstrapDatabase bootstrapDatabase = type.getAnnotation(BootstrapDatabase.class);
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String invoker = invokerName(type);
+        plan.put(className, String.join("\t", "class", className, invoker, Integer.toString(bootstrapDatabase.priority()),
+                bootstrapDatabase.hibernateCfg(), bootstrapDatabase.name(), String.join(",", dependsOn(type)), bootstrapDatabase.datasource(),
+                Integer.toString(bootstrapDatabase.batchSize()), Integer.toString(bootstrapDatabase.fetchSize()),
+                Integer.toString(bootstrapDatabase.queryTimeout()), Integer.toString(bootstrapDatabase.lockTimeout())) + '\n' + methods);
+        originatingElements.add(type);
+        writeInvoker(type, invoker, cases);
+    }
+
+    /**
+     * @return the plan lines of the {@link SqlScript} and {@link SeedData} of the method, or <code>null</code> if they
+     * are invalid
+     */
+    private String resources(final ExecutableElement method) {
+        StringBuilder lines = new StringBuilder();
+        SqlScript script = method.getAnnotation(SqlScript.class);
+        if (script != null) {
+            if (!isPlanValue(script.value())) {
+                return invalid(method, "Invalid SQL script '%s' of %s", script.value(), method.getSimpleName());
+            }
+            if (script.delimiter().isEmpty() || script.delimiter().chars().anyMatch(Character::isWhitespace)) {
+                return invalid(method, "The delimiter of the SQL script of %s must not be empty or contain whitespace", method.getSimpleName());
+            }
+            lines.append(String.join("\t", "script", script.value(), script.delimiter(), Integer.toString(script.batchSize()),
+                    Integer.toString(script.commitInterval()))).append('\n');
+        }
+        SeedData seedData = method.getAnnotation(SeedData.class);
+        if (seedData != null) {
+            if (!isPlanValue(seedData.table()) || !isPlanValue(seedData.resource())) {
+                return invalid(method, "Invalid table '%s' or resource '%s' of the seed data of %s", seedData.table(), seedData.resource(),
+                        method.getSimpleName());
+            }
+            if (Stream.concat(Stream.of(seedData.columns()), Stream.of(seedData.keys())).anyMatch(column -> !isPlanValue(column) || column.contains(","))) {
+                return invalid(method, "Invalid columns or keys of the seed data of %s", method.getSimpleName());
+            }
+            if (seedData.columns().length == 0 && !seedData.header()) {
+                return invalid(method, "The columns of the seed data of %s must be specified if the file has no header", method.getSimpleName());
+            }
+            lines.append(String.join("\t", "seed", seedData.table(), seedData.resource(), seedData.format().name(),
+                    String.join(",", seedData.columns()), Boolean.toString(seedData.header()), String.join(",", seedData.keys()),
+                    Integer.toString(seedData.rowsPerStatement()), Integer.toString(seedData.batchSize()),
+                    Integer.toString(seedData.commitInterval()))).append('\n');
+        }
+        return lines.toString();
+    }
+
+    private static boolean isPlanValue(final String value) {
+        return !value.isEmpty() && value.chars().noneMatch(Character::isISOControl);
+    }
+
+    private String invalid(final Element element, final String format, final Object... args) {
+        error(element, format, args);
+        return null;
+    }
+
+    private String invokerCase(final ExecutableElement method, final String descriptor, final BootstrapParameter parameter) {
+        String call = String.format("bootstrapClass.%s(%s);", method.getSimpleName(),
+                parameter != null ? "(" + parameter.getTypeName() + ") parameter" : "");
+        StringBuilder source = new StringBuilder();
+        source.append(String.format("            case \"%s%s\":%n", method.getSimpleName(), descriptor));
+        if (method.getThrownTypes().isEmpty()) {
+            source.append(String.format("                %s%n", call));
+        } else {
+            source.append(String.format("                try {%n"))
+                    .append(String.format("                    %s%n", call))
+                    .append(String.format("                } catch (RuntimeException | Error e) {%n"))
+                    .append(String.format("                    throw e;%n"))
+                    .append(String.format("                } catch (Throwable e) {%n"))
+                    .append(String.format("                    throw new java.lang.reflect.UndeclaredThrowableException(e);%n"))
+                    .append(String.format("                }%n"));
+        }
+        return source.append(String.format("                break;%n")).toString();
+    }
+
+    private void writeInvoker(final TypeElement type, final String invoker, final CharSequence cases) {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String simpleName = packageName.isEmpty() ? invoker : invoker.substring(packageName.length() + 1);
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(invoker, type).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.printf("package %s;%n%n", packageName);
+            }
+            out.printf("/**%n");
+            out.printf(" * Invokes the bootstrap methods of {@link %s}, generated by %s.%n", type.getQualifiedName(), getClass().getName());
+            out.printf(" */%n");
+            out.printf("public final class %s implements java.util.function.BiConsumer<String, Object> {%n%n", simpleName);
+            out.printf("    private final %s bootstrapClass = new %s();%n%n", type.getQualifiedName(), type.getQualifiedName());
+            out.printf("    @Override%n");
+            out.printf("    public void accept(String method, Object parameter) {%n");
+            out.printf("        switch (method) {%n");
+            out.print(cases);
+            out.printf("            default:%n");
+            out.printf("                throw new IllegalArgumentException(\"Unknown bootstrap method \" + method);%n");
+            out.printf("        }%n");
+            out.printf("    }%n");
+            out.printf("}%n");
+        } catch (IOException e) {
+            error(type, "Unable to generate the bootstrap invoker %s: %s", invoker, e.getMessage());
+        }
+    }
+
+    private void writePlan() {
+        if (plan.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", PLAN,
+                    originatingElements.toArray(new Element[originatingElements.size()]));
+            try (Writer out = resource.openWriter()) {
+                out.write("# Generated by " + getClass().getName() + "\n");
+                for (String entry : plan.values()) {
+                    out.write(entry);
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write the bootstrap plan " + PLAN + ": " + e.getMessage());
+        }
+    }
+
+    private List<String> dependsOn(final TypeElement type) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(BootstrapDatabase.class.getName())) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("dependsOn")) {
+                    @SuppressWarnings("unchecked")
+                    List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) entry.getValue().getValue();
+                    return values.stream()
+                            .map(value -> (TypeElement) ((DeclaredType) value.getValue()).asElement())
+                            .map(element -> processingEnv.getElementUtils().getBinaryName(element).toString())
+                            .collect(Collectors.toList());
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private String invokerName(final TypeElement type) {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        return (packageName.isEmpty() ? "" : packageName + ".") + simpleName.replace('$', '_') + INVOKER_SUFFIX;
+    }
+
+    private PackageElement packageOf(final Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private String descriptor(final TypeMirror type) {
+        switch (type.getKind()) {
+            case VOID:
+                return "V";
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case CHAR:
+                return "C";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case ARRAY:
+                return "[" + descriptor(((ArrayType) type).getComponentType());
+            default:
+                TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+                TypeElement element = (TypeElement) processingEnv.getTypeUtils().asElement(erasure);
+                return "L" + processingEnv.getElementUtils().getBinaryName(element).toString().replace('.', '/') + ";";
+        }
+    }
+
+    private boolean error(final Element element, final String format, final Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(format, args), element);
+        return false;
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the bootstrap methods that have already been applied to a database, so a restart can skip
+ * methods whose bytecode is unchanged. <br>
+ * <br>
+ * The ledger is a table in the database the bootstrap method is connected to, holding a row per class and method
+ * with the {@link MethodChecksum} of the applied method, how long it took and when it was applied. The table is
+ * created on first use and read once per database for the bootstrap run. A row is written in the same transaction
+ * as the bootstrap method, so it is only recorded when the method is committed.
+ */
+public class BootstrapLedger {
+
+    private final String table;
+    private final ConcurrentMap<SessionFactory, Map<String, String>> appliedChecksums = new ConcurrentHashMap<>();
+
+    /**
+     * @param table - the name of the ledger table
+     */
+    public BootstrapLedger(String table) {
+        this.table = table;
+    }
+
+    /**
+     * @param sessionFactory - the session factory connected to the database of the bootstrap method
+     * @param className - the bootstrap class
+     * @param methodName - the signature of the bootstrap method
+     * @param checksum - the checksum of the bootstrap method
+     * @return true if the method has already been applied with the same checksum
+     */
+    public boolean isApplied(SessionFactory sessionFactory, String className, String methodName, String checksum) {
+        if (checksum == null) {
+            return false;
+        }
+        Map<String, String> applied = appliedChecksums.computeIfAbsent(sessionFactory, this::load);
+        return checksum.equals(applied.get(key(className, methodName)));
+    }
+
+    /**
+     * Read the applied checksums again, e.g. once the {@link BootstrapLock} is taken and another node may have applied
+     * bootstrap methods in the meantime.
+     *
+     * @param sessionFactory - the session factory connected to the database of the bootstrap methods
+     */
+    public void reload(SessionFactory sessionFactory) {
+        appliedChecksums.put(sessionFactory, load(sessionFactory));
+    }
+
+    /**
+     * Record the bootstrap method as applied, within the transaction of the connection.
+     *
+     * @param connection - the connection of the session the bootstrap method was invoked with
+     * @param className - the bootstrap class
+     * @param methodName - the signature of the bootstrap method
+     * @param checksum - the checksum of the bootstrap method
+     * @param duration - the duration of the method in milliseconds
+     * @throws SQLException if the ledger row can't be written
+     */
+    public void record(Connection connection, String className, String methodName, String checksum, long duration) throws SQLException {
+        if (checksum == null) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int updated;
+        try (PreparedStatement update = connection.prepareStatement(String.format(
+                "UPDATE %s SET CHECKSUM = ?, DURATION_MS = ?, APPLIED_AT = ? WHERE CLASS_NAME = ? AND METHOD_NAME = ?", table))) {
+            update.setString(1, checksum);
+            update.setLong(2, duration);
+            update.setTimestamp(3, now);
+            update.setString(4, className);
+            update.setString(5, methodName);
+            updated = update.executeUpdate();
+        }
+        if (updated == 0) {
+            try (PreparedStatement insert = connection.prepareStatement(String.format(
+                    "INSERT INTO %s (CLASS_NAME, METHOD_NAME, CHECKSUM, DURATION_MS, APPLIED_AT) VALUES (?, ?, ?, ?, ?)", table))) {
+                insert.setString(1, className);
+                insert.setString(2, methodName);
+                insert.setString(3, checksum);
+                insert.setLong(4, duration);
+                insert.setTimestamp(5, now);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Create the ledger table if it doesn't exist and read the applied checksums.
+     */
+    private Map<String, String> load(SessionFactory sessionFactory) {
+        createTable(sessionFactory);
+        Map<String, String> applied = new HashMap<>();
+        Session session = sessionFactory.openSession();
+        Transaction tx = session.beginTransaction();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery(String.format("SELECT CLASS_NAME, METHOD_NAME, CHECKSUM FROM %s", table))) {
+                    while (rs.next()) {
+                        applied.put(key(rs.getString(1), rs.getString(2)), rs.getString(3));
+                    }
+                }
+            });
+            tx.commit();
+        } catch (RuntimeException e) {
+            tx.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+        DbBootstrapLogger.ROOT_LOGGER.tracef("Read %s applied bootstrap methods from ledger table %s", applied.size(), table);
+        return Collections.unmodifiableMap(applied);
+    }
+
+    /**
+     * Create the ledger table if it doesn't exist. The ledger is read before the {@link BootstrapLock} is taken, so
+     * another node may be creating it at the same time.
+     */
+    private void createTable(SessionFactory sessionFactory) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        Transaction tx = session.beginTransaction();
+        try {
+            HibernateBootstrapProvider.doWork(session, connection -> {
+                if (!exists(connection, table)) {
+                    DbBootstrapLogger.ROOT_LOGGER.infof("Creating bootstrap ledger table %s", table);
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate(String.format("CREATE TABLE %s (CLASS_NAME VARCHAR(255) NOT NULL, "
+                                + "METHOD_NAME VARCHAR(255) NOT NULL, CHECKSUM VARCHAR(64) NOT NULL, DURATION_MS BIGINT NOT NULL, "
+                                + "APPLIED_AT TIMESTAMP NOT NULL, PRIMARY KEY (CLASS_NAME, METHOD_NAME))", table));
+                    }
+                }
+            });
+            tx.commit();
+        } catch (Exception e) {
+            tx.rollback();
+            // reading the ledger fails if no other node created it in the meantime
+            DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Bootstrap ledger table %s not created, checking if another node created it", table);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * @param connection - the connection to the database
+     * @param table - the name of the table, looked up as given, upper case and lower case
+     * @return true if the table exists
+     * @throws SQLException if the metadata of the database can't be read
+     */
+    static boolean exists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase(), table.toLowerCase()}) {
+            try (ResultSet rs = metaData.getTables(null, null, name, new String[] {"TABLE"})) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String key(String className, String methodName) {
+        return className + '#' + methodName;
+    }
+}
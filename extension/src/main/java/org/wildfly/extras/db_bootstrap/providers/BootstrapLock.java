@@ -0,0 +1,364 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.StatelessSession;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes the nodes of a cluster bootstrap a shared database one at a time. <br>
+ * <br>
+ * The lock is a row in a table of the database the bootstrap methods are connected to, holding the owner of the lock
+ * and when its lease expires. The table and the row are created on first use. A bootstrap run takes the lock before
+ * its first bootstrap method uses the database and holds it until the run is done, renewing the lease in the
+ * background. The other nodes poll the row until the lock is released or its lease has expired, e.g. because the
+ * owner died, but no longer than the configured wait. Combined with the {@link BootstrapLedger}, which is read again
+ * once the lock is taken, a node waiting for the lock then skips the methods the previous owner has applied. <br>
+ * <br>
+ * A lease is lost when another node has taken the lock over, or when it can't be renewed before it expires. The
+ * bootstrap run is then aborted: the {@link #setOnLost(Runnable) lost lease callback} is called and the next bootstrap
+ * method fails. <br>
+ * <br>
+ * Leases are compared with the clocks of the nodes, which must agree to well within {@value #LEASE_SECONDS} seconds.
+ */
+public class BootstrapLock {
+
+    static final int LEASE_SECONDS = 60;
+    private static final long MIN_POLL_INTERVAL = 100;
+    private static final long MAX_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+    private static final String LOCK_NAME = "db-bootstrap";
+
+    private final String table;
+    private final int waitSeconds;
+    private final long leaseMillis;
+    private final long renewInterval;
+    private final ScheduledExecutorService heartbeat;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + '/' + UUID.randomUUID().toString().substring(0, 8);
+    private final ConcurrentMap<SessionFactory, Lease> leases = new ConcurrentHashMap<>();
+    private volatile Runnable onLost = () -> { };
+
+    /**
+     * @param table - the name of the lock table
+     * @param waitSeconds - how long a bootstrap run waits for the lock held by another node
+     * @param heartbeat - the scheduled executor of the server, renewing the leases
+     */
+    public BootstrapLock(String table, int waitSeconds, ScheduledExecutorService heartbeat) {
+        this(table, waitSeconds, LEASE_SECONDS, heartbeat);
+    }
+
+    /**
+     * @param table - the name of the lock table
+     * @param waitSeconds - how long a bootstrap run waits for the lock held by another node
+     * @param leaseSeconds - how long the lock is held without being renewed
+     * @param heartbeat - the scheduled executor of the server, renewing the leases
+     */
+    BootstrapLock(String table, int waitSeconds, int leaseSeconds, ScheduledExecutorService heartbeat) {
+        this.table = table;
+        this.waitSeconds = waitSeconds;
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+        this.renewInterval = leaseMillis / 3;
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * Take the lock of the database, waiting while another node holds it. Does nothing if the lock is already held by
+     * this bootstrap run.
+     *
+     * @param sessionFactory - the session factory connected to the database of the bootstrap method
+     * @param onAcquired - the work done once the lock is taken, before any other thread of the bootstrap run gets
+     *                   past this method, e.g. reading the ledger again, or <code>null</code>
+     * @throws TimeoutException if the lock is still held by another node after the configured wait
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws Exception if the lock table can't be read or written
+     */
+    public void acquire(SessionFactory sessionFactory, OnAcquired onAcquired) throws Exception {
+        leases.computeIfAbsent(sessionFactory, Lease::new).acquire(onAcquired);
+    }
+
+    /**
+     * Release the locks held by the bootstrap run, before its session factories are closed
+     */
+    public void release() {
+        leases.values().forEach(Lease::release);
+        leases.clear();
+    }
+
+    /**
+     * @return the owner of the locks taken by the bootstrap run
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @param onLost - called from the thread renewing the leases when a lease of this bootstrap run is lost, e.g. to cancel the
+     *               bootstrap methods running on the database
+     */
+    public void setOnLost(Runnable onLost) {
+        this.onLost = onLost;
+    }
+
+    /**
+     * Check that no lease of this bootstrap run has been lost, before a bootstrap method is invoked.
+     *
+     * @throws IllegalStateException if a lease has been taken over by another node or couldn't be renewed in time
+     */
+    public void verify() {
+        for (Lease lease : leases.values()) {
+            IllegalStateException lost = lease.lost;
+            if (lost != null) {
+                throw lost;
+            }
+        }
+    }
+
+    /**
+     * The work done once the lock of a database is taken
+     */
+    @FunctionalInterface
+    public interface OnAcquired {
+        void acquired() throws Exception;
+    }
+
+    /**
+     * The lock of the database of a session factory
+     */
+    private final class Lease {
+        private final SessionFactory sessionFactory;
+        private boolean held;
+        private Exception failure;
+        private ScheduledFuture<?> renewal;
+        // System.nanoTime() when the current lease was last written
+        private long renewed;
+        private volatile IllegalStateException lost;
+
+        private Lease(SessionFactory sessionFactory) {
+            this.sessionFactory = sessionFactory;
+        }
+
+        synchronized void acquire(OnAcquired onAcquired) throws Exception {
+            if (failure != null) {
+                throw failure;
+            }
+            if (held) {
+                return;
+            }
+            try {
+                createLockRow();
+                long before = System.nanoTime();
+                long deadline = before + TimeUnit.SECONDS.toNanos(waitSeconds);
+                long interval = MIN_POLL_INTERVAL;
+                while (!tryAcquire()) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw new TimeoutException(String.format("Bootstrap lock %s not acquired within %s seconds, held by %s", table,
+                                waitSeconds, currentOwner()));
+                    }
+                    if (interval == MIN_POLL_INTERVAL) {
+                        DbBootstrapLogger.ROOT_LOGGER.infof("Waiting for bootstrap lock %s held by %s", table, currentOwner());
+                    }
+                    TimeUnit.MILLISECONDS.sleep(Math.min(interval, remaining));
+                    interval = Math.min(interval * 2, MAX_POLL_INTERVAL);
+                }
+                held = true;
+                renewal = heartbeat.scheduleWithFixedDelay(this::renew, renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+                DbBootstrapLogger.ROOT_LOGGER.infof("Acquired bootstrap lock %s as %s after %s ms", table, owner,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before));
+                if (onAcquired != null) {
+                    onAcquired.acquired();
+                }
+            } catch (Exception e) {
+                // don't wait again for every bootstrap method of the run
+                failure = e;
+                throw e;
+            }
+        }
+
+        synchronized void release() {
+            if (!held) {
+                return;
+            }
+            held = false;
+            renewal.cancel(false);
+            try {
+                inTransaction(connection -> {
+                    try (PreparedStatement update = connection.prepareStatement(String.format(
+                            "UPDATE %s SET OWNER = NULL, EXPIRES_AT = NULL WHERE LOCK_NAME = ? AND OWNER = ?", table))) {
+                        update.setString(1, LOCK_NAME);
+                        update.setString(2, owner);
+                        update.executeUpdate();
+                    }
+                });
+                DbBootstrapLogger.ROOT_LOGGER.debugf("Released bootstrap lock %s", table);
+            } catch (Exception e) {
+                DbBootstrapLogger.ROOT_LOGGER.warnf(e, "Unable to release bootstrap lock %s, it is released when its lease expires", table);
+            }
+        }
+
+        private synchronized void renew() {
+            if (!held) {
+                return;
+            }
+            long attempt = System.nanoTime();
+            try {
+                int[] updated = new int[1];
+                inTransaction(connection -> {
+                    try (PreparedStatement update = connection.prepareStatement(String.format(
+                            "UPDATE %s SET EXPIRES_AT = ? WHERE LOCK_NAME = ? AND OWNER = ?", table))) {
+                        update.setTimestamp(1, expiresAt());
+                        update.setString(2, LOCK_NAME);
+                        update.setString(3, owner);
+                        updated[0] = update.executeUpdate();
+                    }
+                });
+                if (updated[0] == 0) {
+                    lost(new IllegalStateException(String.format("Bootstrap lock %s has been taken over by %s, the lease of %s expired",
+                            table, currentOwner(), owner)));
+                    return;
+                }
+                renewed = attempt;
+            } catch (Exception e) {
+                // the lease expires before the next heartbeat could renew it
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - renewed) + renewInterval >= leaseMillis) {
+                    IllegalStateException expired = new IllegalStateException(String.format(
+                            "Bootstrap lock %s lost, the lease of %s couldn't be renewed before it expired", table, owner));
+                    expired.initCause(e);
+                    lost(expired);
+                } else {
+                    DbBootstrapLogger.ROOT_LOGGER.warnf(e, "Unable to renew the lease of bootstrap lock %s", table);
+                }
+            }
+        }
+
+        /**
+         * Stop renewing the lease, fail the next bootstrap methods and abort the running ones
+         */
+        private void lost(IllegalStateException e) {
+            DbBootstrapLogger.ROOT_LOGGER.errorf(e.getCause(), "%s, aborting the bootstrap run", e.getMessage());
+            held = false;
+            renewal.cancel(false);
+            failure = e;
+            lost = e;
+            onLost.run();
+        }
+
+        /**
+         * Create the lock table and its row if they don't exist. Another node may be creating them at the same time.
+         */
+        private void createLockRow() throws Exception {
+            try {
+                inTransaction(connection -> {
+                    if (!BootstrapLedger.exists(connection, table)) {
+                        DbBootstrapLogger.ROOT_LOGGER.infof("Creating bootstrap lock table %s", table);
+                        try (Statement statement = connection.createStatement()) {
+                            statement.executeUpdate(String.format("CREATE TABLE %s (LOCK_NAME VARCHAR(64) NOT NULL, OWNER VARCHAR(255), "
+                                    + "EXPIRES_AT TIMESTAMP, PRIMARY KEY (LOCK_NAME))", table));
+                        }
+                    }
+                });
+            } catch (SQLException e) {
+                DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Bootstrap lock table %s not created, checking if another node created it", table);
+            }
+            try {
+                inTransaction(connection -> {
+                    try (PreparedStatement select = connection.prepareStatement(String.format("SELECT LOCK_NAME FROM %s WHERE LOCK_NAME = ?", table))) {
+                        select.setString(1, LOCK_NAME);
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (rs.next()) {
+                                return;
+                            }
+                        }
+                    }
+                    try (PreparedStatement insert = connection.prepareStatement(String.format("INSERT INTO %s (LOCK_NAME) VALUES (?)", table))) {
+                        insert.setString(1, LOCK_NAME);
+                        insert.executeUpdate();
+                    }
+                });
+            } catch (SQLException e) {
+                // inserted by another node in the meantime, or the table doesn't exist and taking the lock fails
+                DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Bootstrap lock row of %s not inserted", table);
+            }
+        }
+
+        private boolean tryAcquire() throws Exception {
+            long attempt = System.nanoTime();
+            int[] updated = new int[1];
+            inTransaction(connection -> {
+                try (PreparedStatement update = connection.prepareStatement(String.format("UPDATE %s SET OWNER = ?, EXPIRES_AT = ? "
+                        + "WHERE LOCK_NAME = ? AND (OWNER IS NULL OR OWNER = ? OR EXPIRES_AT < ?)", table))) {
+                    update.setString(1, owner);
+                    update.setTimestamp(2, expiresAt());
+                    update.setString(3, LOCK_NAME);
+                    update.setString(4, owner);
+                    update.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+                    updated[0] = update.executeUpdate();
+                }
+            });
+            if (updated[0] == 1) {
+                renewed = attempt;
+                return true;
+            }
+            return false;
+        }
+
+        private String currentOwner() throws Exception {
+            String[] current = new String[1];
+            inTransaction(connection -> {
+                try (PreparedStatement select = connection.prepareStatement(String.format("SELECT OWNER, EXPIRES_AT FROM %s WHERE LOCK_NAME = ?", table))) {
+                    select.setString(1, LOCK_NAME);
+                    try (ResultSet rs = select.executeQuery()) {
+                        current[0] = rs.next() && rs.getString(1) != null ? String.format("%s until %s", rs.getString(1), rs.getTimestamp(2)) : "nobody";
+                    }
+                }
+            });
+            return current[0];
+        }
+
+        private void inTransaction(HibernateBootstrapProvider.ConnectionWork work) throws Exception {
+            StatelessSession session = sessionFactory.openStatelessSession();
+            Transaction tx = session.beginTransaction();
+            try {
+                HibernateBootstrapProvider.doWork(session, work);
+                tx.commit();
+            } catch (Exception e) {
+                tx.rollback();
+                throw e;
+            } finally {
+                session.close();
+            }
+        }
+    }
+
+    private Timestamp expiresAt() {
+        return new Timestamp(System.currentTimeMillis() + leaseMillis);
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+/**
+ * A method annotated with {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema} or
+ * {@link org.wildfly.extras.db_bootstrap.annotations.UpdateSchema}, bound to the instance of its bootstrap class.
+ *
+ * @see BootstrapProvider
+ */
+public interface BootstrapMethod {
+
+    /**
+     * @return the name of the bootstrap class declaring the method
+     */
+    String getClassName();
+
+    /**
+     * @return the name of the method
+     */
+    String getName();
+
+    /**
+     * @return the JVM descriptor of the method, e.g. <code>(Lorg/hibernate/Session;)V</code>
+     */
+    String getDescriptor();
+
+    /**
+     * Invoke the method on the bootstrap class instance.
+     *
+     * @param parameters - the parameters of the method
+     * @throws Exception the exception thrown by the method
+     */
+    void invoke(Object... parameters) throws Exception;
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of the bootstrap runs of a scan. The metrics are updated by concurrent bootstrap threads without
+ * locking, durations are measured with {@link System#nanoTime()} and reported in milliseconds. <br>
+ * <br>
+ * The memory allocated by a bootstrap method is measured by {@link com.sun.management.ThreadMXBean} on the thread
+ * invoking the method, if the JVM supports it.
+ */
+public class BootstrapMetrics {
+
+    private final LongAdder runs = new LongAdder();
+    private final AtomicLong lastDuration = new AtomicLong();
+    private final LongAdder totalDuration = new LongAdder();
+    private final AtomicLong lastBootstrapSchemaDuration = new AtomicLong();
+    private final LongAdder totalBootstrapSchemaDuration = new LongAdder();
+    private final AtomicLong lastUpdateSchemaDuration = new AtomicLong();
+    private final LongAdder totalUpdateSchemaDuration = new LongAdder();
+    private final LongAdder sessionFactoryBuilds = new LongAdder();
+    private final LongAdder sessionFactoryBuildTime = new LongAdder();
+    private final LongAdder connectionAcquisitions = new LongAdder();
+    private final LongAdder connectionAcquisitionTime = new LongAdder();
+    private final LongAdder succeededMethods = new LongAdder();
+    private final LongAdder failedMethods = new LongAdder();
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    /**
+     * @param nanos - the duration of the bootstrap run
+     */
+    public void runCompleted(long nanos) {
+        runs.increment();
+        lastDuration.set(nanos);
+        totalDuration.add(nanos);
+    }
+
+    /**
+     * @param nanos - the duration of the {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema} phase
+     */
+    public void bootstrapSchemaCompleted(long nanos) {
+        lastBootstrapSchemaDuration.set(nanos);
+        totalBootstrapSchemaDuration.add(nanos);
+    }
+
+    /**
+     * @param nanos - the duration of the {@link org.wildfly.extras.db_bootstrap.annotations.UpdateSchema} phase
+     */
+    public void updateSchemaCompleted(long nanos) {
+        lastUpdateSchemaDuration.set(nanos);
+        totalUpdateSchemaDuration.add(nanos);
+    }
+
+    /**
+     * @param nanos - the time it took to build a session factory
+     */
+    public void sessionFactoryBuilt(long nanos) {
+        sessionFactoryBuilds.increment();
+        sessionFactoryBuildTime.add(nanos);
+    }
+
+    /**
+     * @param nanos - the time it took to open a session and begin its transaction, which acquires the JDBC connection
+     */
+    public void connectionAcquired(long nanos) {
+        connectionAcquisitions.increment();
+        connectionAcquisitionTime.add(nanos);
+    }
+
+    /**
+     * @param className - the bootstrap class
+     * @param methodName - the signature of the bootstrap method
+     * @param nanos - the duration of the method
+     * @param allocatedBytes - the memory allocated by the method, negative if not measured
+     * @param succeeded - false if the method failed
+     */
+    public void methodCompleted(String className, String methodName, long nanos, long allocatedBytes, boolean succeeded) {
+        (succeeded ? succeededMethods : failedMethods).increment();
+        methods.computeIfAbsent(className + '#' + methodName, key -> new MethodMetrics(className, methodName))
+                .completed(nanos, allocatedBytes, succeeded);
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getLastDuration() {
+        return millis(lastDuration.get());
+    }
+
+    public long getTotalDuration() {
+        return millis(totalDuration.sum());
+    }
+
+    public long getLastBootstrapSchemaDuration() {
+        return millis(lastBootstrapSchemaDuration.get());
+    }
+
+    public long getTotalBootstrapSchemaDuration() {
+        return millis(totalBootstrapSchemaDuration.sum());
+    }
+
+    public long getLastUpdateSchemaDuration() {
+        return millis(lastUpdateSchemaDuration.get());
+    }
+
+    public long getTotalUpdateSchemaDuration() {
+        return millis(totalUpdateSchemaDuration.sum());
+    }
+
+    public long getSessionFactoryBuilds() {
+        return sessionFactoryBuilds.sum();
+    }
+
+    public long getSessionFactoryBuildTime() {
+        return millis(sessionFactoryBuildTime.sum());
+    }
+
+    public long getConnectionAcquisitions() {
+        return connectionAcquisitions.sum();
+    }
+
+    public long getConnectionAcquisitionTime() {
+        return millis(connectionAcquisitionTime.sum());
+    }
+
+    public long getSucceededMethods() {
+        return succeededMethods.sum();
+    }
+
+    public long getFailedMethods() {
+        return failedMethods.sum();
+    }
+
+    /**
+     * @return the metrics of every bootstrap method invoked, sorted by class and method
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return Collections.unmodifiableMap(new TreeMap<>(methods));
+    }
+
+    /**
+     * @return the memory allocated by the current thread so far, or -1 if the JVM can't measure it
+     */
+    public static long currentThreadAllocatedBytes() {
+        try {
+            return AllocationCounter.allocatedBytes();
+        } catch (LinkageError e) {
+            return -1;
+        }
+    }
+
+    static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * The metrics of a single bootstrap method
+     */
+    public static final class MethodMetrics {
+        private final String className;
+        private final String methodName;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final AtomicLong lastDuration = new AtomicLong();
+        private final LongAdder totalDuration = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private MethodMetrics(String className, String methodName) {
+            this.className = className;
+            this.methodName = methodName;
+        }
+
+        private void completed(long nanos, long allocated, boolean succeeded) {
+            invocations.increment();
+            if (!succeeded) {
+                failures.increment();
+            }
+            lastDuration.set(nanos);
+            totalDuration.add(nanos);
+            if (allocated > 0) {
+                allocatedBytes.add(allocated);
+            }
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getLastDuration() {
+            return millis(lastDuration.get());
+        }
+
+        public long getTotalDuration() {
+            return millis(totalDuration.sum());
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes.sum();
+        }
+    }
+
+    /**
+     * Holds the {@link com.sun.management.ThreadMXBean} if the JVM provides one with allocation measurement enabled.
+     */
+    private static final class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+        private static com.sun.management.ThreadMXBean threadMXBean() {
+            try {
+                java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+                if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled()) {
+                    return (com.sun.management.ThreadMXBean) threadMXBean;
+                }
+            } catch (LinkageError | UnsupportedOperationException e) {
+                DbBootstrapLogger.ROOT_LOGGER.debugf("Allocated memory of bootstrap methods can't be measured: %s", e);
+            }
+            return null;
+        }
+
+        private static long allocatedBytes() {
+            return THREAD_MX_BEAN != null ? THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+        }
+    }
+}
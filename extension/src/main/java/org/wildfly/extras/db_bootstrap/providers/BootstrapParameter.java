@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+/**
+ * The parameter types a bootstrap method can declare to be passed a connection to the database. A bootstrap method
+ * either has no parameters or a single parameter of one of these types.
+ *
+ * @see BootstrapProvider
+ */
+public enum BootstrapParameter {
+
+    /**
+     * A {@link org.hibernate.Session} with an active transaction
+     */
+    SESSION("org.hibernate.Session"),
+    /**
+     * A {@link org.hibernate.StatelessSession} with an active transaction, bypassing the first level cache
+     */
+    STATELESS_SESSION("org.hibernate.StatelessSession"),
+    /**
+     * The {@link java.sql.Connection} of a {@link org.hibernate.Session} with an active transaction
+     */
+    CONNECTION("java.sql.Connection"),
+    /**
+     * A {@link SchemaInspector} answering from the cached metadata of the database, bound to a
+     * {@link org.hibernate.Session} with an active transaction
+     */
+    SCHEMA_INSPECTOR("org.wildfly.extras.db_bootstrap.providers.SchemaInspector");
+
+    private final String typeName;
+    private final String descriptor;
+
+    BootstrapParameter(final String typeName) {
+        this.typeName = typeName;
+        this.descriptor = "L" + typeName.replace('.', '/') + ";";
+    }
+
+    /**
+     * @return the name of the parameter type
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * @return the JVM descriptor of the parameter type, e.g. <code>Lorg/hibernate/Session;</code>
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * @param typeName - the name of a parameter type
+     * @return the parameter with the type, or <code>null</code> if the type is not supported
+     */
+    public static BootstrapParameter forTypeName(final String typeName) {
+        for (BootstrapParameter parameter : values()) {
+            if (parameter.typeName.equals(typeName)) {
+                return parameter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param methodDescriptor - the JVM descriptor of a bootstrap method
+     * @return the parameter of the method, or <code>null</code> if the method has no supported parameter
+     */
+    public static BootstrapParameter forMethodDescriptor(final String methodDescriptor) {
+        for (BootstrapParameter parameter : values()) {
+            if (methodDescriptor.startsWith(parameter.descriptor, 1) && methodDescriptor.charAt(parameter.descriptor.length() + 1) == ')') {
+                return parameter;
+            }
+        }
+        return null;
+    }
+}
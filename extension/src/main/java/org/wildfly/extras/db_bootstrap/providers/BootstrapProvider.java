@@ -15,32 +15,49 @@
  */
 package org.wildfly.extras.db_bootstrap.providers;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.List;
 
 /**
  * Defines the contract for the Bootstrap provider that implements the specific database
  * logic for connecting and executing database scripts.
+ * <br><br>
+ * A provider instance is created for every bootstrap run of a deployment and closed when the run is done, so any
+ * resources it holds on to (e.g. session factories) are scoped to that single run.
  *
  * @author Flemming Harms
  */
-public interface BootstrapProvider {
+public interface BootstrapProvider extends AutoCloseable {
 
     /**
-     * Invoke the provider with a configuration file
+     * Invoke the provider with a configuration file, passing the method the {@link BootstrapParameter} of its
+     * descriptor, if any, after applying the resources of the method
      *
-     * @param prefix - the prefix for using when loading properties for the session
-     * @param configuration - The location of the configuration file.
-     * @param bootstrapClass - the class to invoke the method on
+     * @param configuration - the configuration of the session passed to the method
      * @param classLoader - The classloader to load resources from
-     * @param method  - the method to invoke
+     * @param method  - the method to invoke, bound to the bootstrap class instance
+     * @param resources - the SQL script and seed data applied before the method is invoked, in order
+     * @param alwaysRun - invoke the method even if it has already been applied with the same bytecode
      * @throws Exception
      */
-    void invokeWithParameters(String prefix, String configuration, Object bootstrapClass, final ClassLoader classLoader, Method method) throws Exception;
+    void invokeWithParameters(SessionConfiguration configuration, final ClassLoader classLoader, BootstrapMethod method,
+            List<BootstrapResource> resources, boolean alwaysRun) throws Exception;
 
     /**
      * Invoke the annotated method for the specified bootstrap class
      * @see BootstrapProvider
      */
-    void invoke(Method method, Object bootstrapClass) throws InvocationTargetException, IllegalAccessException;
+    void invoke(BootstrapMethod method) throws Exception;
+
+    /**
+     * Cancel the database work of the bootstrap methods currently invoked by other threads, e.g. when the time budget
+     * of the bootstrap run is exceeded. The default implementation does nothing.
+     */
+    default void cancel() {
+    }
+
+    /**
+     * Release all resources held by the provider for the bootstrap run
+     */
+    @Override
+    void close();
 }
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A resource of the deployment applied to the database before a bootstrap method is invoked, on the connection of the
+ * session of the method and within its transaction.
+ *
+ * @see BootstrapScript
+ * @see BootstrapSeedData
+ */
+public interface BootstrapResource {
+
+    /**
+     * @return the location of the resource in the module classpath
+     */
+    String getPath();
+
+    /**
+     * Apply the resource to the database.
+     *
+     * @param connection - the connection of the session of the bootstrap method
+     * @param classLoader - the class loader of the deployment
+     * @return the number of executed statements or loaded rows
+     * @throws IOException if the resource is not found or can't be read
+     * @throws SQLException if the resource can't be applied
+     */
+    long apply(Connection connection, ClassLoader classLoader) throws IOException, SQLException;
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A {@link org.wildfly.extras.db_bootstrap.annotations.SqlScript} of a bootstrap method.
+ *
+ * @see SqlScriptRunner
+ */
+public final class BootstrapScript implements BootstrapResource {
+
+    private final String path;
+    private final String delimiter;
+    private final int batchSize;
+    private final int commitInterval;
+
+    /**
+     * @param path - the location of the script in the module classpath
+     * @param delimiter - the delimiter separating the statements of the script
+     * @param batchSize - the number of statements per JDBC batch, 1 to execute the statements one at a time
+     * @param commitInterval - the number of statements after which the transaction is committed, 0 to never commit
+     */
+    public BootstrapScript(String path, String delimiter, int batchSize, int commitInterval) {
+        this.path = path.startsWith("/") ? path.substring(1) : path;
+        this.delimiter = delimiter;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Execute the script.
+     *
+     * @see SqlScriptRunner
+     */
+    @Override
+    public long apply(Connection connection, ClassLoader classLoader) throws IOException, SQLException {
+        return new SqlScriptRunner(connection, this).run(classLoader);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
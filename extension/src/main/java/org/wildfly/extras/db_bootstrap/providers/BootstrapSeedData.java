@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.annotations.SeedData;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link SeedData} file of a bootstrap method.
+ *
+ * @see SeedDataLoader
+ */
+public final class BootstrapSeedData implements BootstrapResource {
+
+    private final String table;
+    private final String path;
+    private final SeedData.Format format;
+    private final List<String> columns;
+    private final boolean header;
+    private final List<String> keys;
+    private final int rowsPerStatement;
+    private final int batchSize;
+    private final int commitInterval;
+
+    /**
+     * @param table - the table to load the rows into
+     * @param path - the location of the file in the module classpath
+     * @param format - the format of the file
+     * @param columns - the columns of the values, empty to read them from the header
+     * @param header - the first line of the file is a header
+     * @param keys - the key columns to update existing rows on, empty to insert all rows
+     * @param rowsPerStatement - the number of rows inserted by a single statement
+     * @param batchSize - the number of statements per JDBC batch
+     * @param commitInterval - the number of rows after which the transaction is committed, 0 to never commit
+     */
+    public BootstrapSeedData(String table, String path, SeedData.Format format, String[] columns, boolean header, String[] keys,
+            int rowsPerStatement, int batchSize, int commitInterval) {
+        this.table = table;
+        this.path = path.startsWith("/") ? path.substring(1) : path;
+        this.format = format;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+        this.header = header;
+        this.keys = Collections.unmodifiableList(Arrays.asList(keys));
+        this.rowsPerStatement = rowsPerStatement;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    public SeedData.Format getFormat() {
+        return format;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public int getRowsPerStatement() {
+        return rowsPerStatement;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Load the rows of the file into the table.
+     *
+     * @see SeedDataLoader
+     */
+    @Override
+    public long apply(Connection connection, ClassLoader classLoader) throws IOException, SQLException {
+        return new SeedDataLoader(connection, this).load(classLoader);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
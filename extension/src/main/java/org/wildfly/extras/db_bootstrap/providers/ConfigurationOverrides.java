@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.jboss.dmr.ValueExpression;
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable snapshot of the <code>dbbootstrap.[name].[hibernate-property-name]</code> overrides of the Hibernate
+ * configurations, taken once per deployment instead of searching all the system properties for every session factory.
+ * <br>
+ * <br>
+ * The overrides are indexed by configuration name. A system property is indexed under every name it can belong to, so
+ * <code>dbbootstrap.a.b.url</code> overrides <code>b.url</code> of the configuration <code>a</code> and
+ * <code>url</code> of the configuration <code>a.b</code>. An environment variable
+ * <code>DBBOOTSTRAP_[NAME]_[PROPERTY]</code> overrides a property too, e.g. <code>DBBOOTSTRAP_FOO_CONNECTION_URL</code>
+ * sets <code>connection.url</code> of the configuration <code>foo</code>. The name is upper-cased with every character
+ * that isn't a letter or a digit replaced by an underscore, the property is lower-cased with a single underscore
+ * replaced by a dot and a double underscore by an underscore. A system property takes precedence over an environment
+ * variable. <br>
+ * <br>
+ * Values may hold expressions, e.g. <code>${env.DB_URL:jdbc:h2:mem:test}</code>, which are resolved when the snapshot
+ * is taken. The snapshot of a deployment is replaced when the deployment is deployed again, so system properties
+ * changed through the management model apply from the next deployment.
+ *
+ * @see HibernateBootstrapProvider#DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX
+ */
+public final class ConfigurationOverrides {
+
+    private static final String ENVIRONMENT_PREFIX = HibernateBootstrapProvider.DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX.toUpperCase() + '_';
+    private static final ConfigurationOverrides NONE = new ConfigurationOverrides(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<String, Map<String, String>> properties;
+    private final Map<String, String> environment;
+    private final ConcurrentMap<String, Map<String, String>> overrides = new ConcurrentHashMap<>();
+
+    private ConfigurationOverrides(final Map<String, Map<String, String>> properties, final Map<String, String> environment) {
+        this.properties = properties;
+        this.environment = environment;
+    }
+
+    /**
+     * @return the overrides of the current system properties and environment variables
+     */
+    public static ConfigurationOverrides fromEnvironment() {
+        return of(System.getProperties(), System.getenv());
+    }
+
+    /**
+     * @return a snapshot without any overrides
+     */
+    public static ConfigurationOverrides none() {
+        return NONE;
+    }
+
+    /**
+     * @param systemProperties - the system properties
+     * @param environment - the environment variables
+     * @return the overrides of the system properties and environment variables
+     */
+    public static ConfigurationOverrides of(final Properties systemProperties, final Map<String, String> environment) {
+        String prefix = HibernateBootstrapProvider.DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX + '.';
+        Map<String, Map<String, String>> properties = new HashMap<>();
+        for (String key : systemProperties.stringPropertyNames()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            String value = resolve(key, systemProperties.getProperty(key));
+            for (int dot = key.indexOf('.', prefix.length()); dot > prefix.length() && dot < key.length() - 1; dot = key.indexOf('.', dot + 1)) {
+                properties.computeIfAbsent(key.substring(prefix.length(), dot), name -> new HashMap<>())
+                        .put(key.substring(dot + 1), value);
+            }
+        }
+        Map<String, String> overridingEnvironment = new HashMap<>();
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            if (entry.getKey().startsWith(ENVIRONMENT_PREFIX)) {
+                overridingEnvironment.put(entry.getKey(), resolve(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (properties.isEmpty() && overridingEnvironment.isEmpty()) {
+            return NONE;
+        }
+        return new ConfigurationOverrides(properties, overridingEnvironment);
+    }
+
+    /**
+     * @param name - the name of the Hibernate configuration
+     * @return the overriding Hibernate properties of the configuration, empty if there are none
+     */
+    public Map<String, String> get(final String name) {
+        if (properties.isEmpty() && environment.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return overrides.computeIfAbsent(name, this::overrides);
+    }
+
+    private Map<String, String> overrides(final String name) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        String environmentPrefix = ENVIRONMENT_PREFIX + name.toUpperCase().replaceAll("[^A-Z0-9]", "_") + '_';
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            if (entry.getKey().startsWith(environmentPrefix) && entry.getKey().length() > environmentPrefix.length()) {
+                settings.put(propertyName(entry.getKey().substring(environmentPrefix.length())), entry.getValue());
+            }
+        }
+        settings.putAll(properties.getOrDefault(name, Collections.emptyMap()));
+        return settings.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(settings);
+    }
+
+    private static String propertyName(final String environmentName) {
+        StringBuilder propertyName = new StringBuilder(environmentName.length());
+        for (int i = 0; i < environmentName.length(); i++) {
+            char c = environmentName.charAt(i);
+            if (c != '_') {
+                propertyName.append(Character.toLowerCase(c));
+            } else if (i + 1 < environmentName.length() && environmentName.charAt(i + 1) == '_') {
+                propertyName.append('_');
+                i++;
+            } else {
+                propertyName.append('.');
+            }
+        }
+        return propertyName.toString();
+    }
+
+    private static String resolve(final String key, final String value) {
+        if (value == null || !value.contains("${")) {
+            return value;
+        }
+        try {
+            return new ValueExpression(value).resolveString();
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            DbBootstrapLogger.ROOT_LOGGER.warnf("Unable to resolve the expression of %s, using the value as is: %s", key, e.getMessage());
+            return value;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * The {@link SchemaInspector} of a bootstrap method, answering from the {@link SchemaCatalog} of its session factory.
+ * The session of the method is only opened when the catalog has to read metadata or a statement is executed.
+ *
+ * @see HibernateBootstrapProvider
+ */
+final class DatabaseSchemaInspector implements SchemaInspector {
+
+    private final SchemaCatalog catalog;
+    private final LazySession session;
+
+    /**
+     * @param catalog - the catalog of the session factory
+     * @param session - the session of the bootstrap method
+     */
+    DatabaseSchemaInspector(SchemaCatalog catalog, LazySession session) {
+        this.catalog = catalog;
+        this.session = session;
+    }
+
+    @Override
+    public boolean tableExists(String table) throws SQLException {
+        return table(table) != null;
+    }
+
+    @Override
+    public boolean columnExists(String table, String column) throws SQLException {
+        SchemaCatalog.Table cached = table(table);
+        return cached != null && cached.getColumns().contains(SchemaCatalog.key(column));
+    }
+
+    @Override
+    public boolean indexExists(String table, String index) throws SQLException {
+        SchemaCatalog.Table cached = table(table);
+        return cached != null && call(() -> catalog.hasIndex(this::withConnection, cached, index));
+    }
+
+    @Override
+    public Set<String> getColumns(String table) throws SQLException {
+        SchemaCatalog.Table cached = table(table);
+        return cached != null ? cached.getColumns() : Collections.emptySet();
+    }
+
+    @Override
+    public int execute(String sql) throws SQLException {
+        return call(() -> {
+            int[] updateCount = new int[1];
+            withConnection(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    updateCount[0] = statement.executeUpdate(sql);
+                }
+            });
+            catalog.executed(this::withConnection, sql);
+            return updateCount[0];
+        });
+    }
+
+    /**
+     * @param classLoader - the class loader of the deployment
+     * @return the inspector as the {@link SchemaInspector} type seen by the deployment, which has its own copy of the
+     *         type if it bundles the db-bootstrap artifact
+     * @throws ClassNotFoundException if the deployment doesn't see the {@link SchemaInspector} type
+     */
+    Object forDeployment(ClassLoader classLoader) throws ClassNotFoundException {
+        Class<?> type = classLoader.loadClass(SchemaInspector.class.getName());
+        if (type == SchemaInspector.class) {
+            return this;
+        }
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return toString();
+                }
+            }
+            try {
+                return SchemaInspector.class.getMethod(method.getName(), method.getParameterTypes()).invoke(this, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private SchemaCatalog.Table table(String table) throws SQLException {
+        return call(() -> catalog.getTable(this::withConnection, table));
+    }
+
+    private void withConnection(HibernateBootstrapProvider.ConnectionWork work) throws Exception {
+        HibernateBootstrapProvider.doWork(session.get(), work);
+    }
+
+    private static <T> T call(Callable<T> callable) throws SQLException {
+        try {
+            return callable.call();
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException(e);
+        }
+    }
+}
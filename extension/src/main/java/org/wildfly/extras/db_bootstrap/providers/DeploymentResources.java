@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.jboss.vfs.VFS;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Opens the {@link BootstrapResource}s of a deployment.
+ */
+final class DeploymentResources {
+
+    private DeploymentResources() {
+    }
+
+    /**
+     * Open a resource of the deployment. A resource is read from the {@link org.jboss.vfs.VirtualFile} of the deployment
+     * archive it is found in. The stream of a resource of an exploded archive, or otherwise on disk, is a
+     * {@link FileInputStream}, so its file channel can be used.
+     *
+     * @param classLoader - the class loader of the deployment
+     * @param resource - the resource
+     * @param description - the kind of resource for the error messages, e.g. <code>SQL script</code>
+     * @return the content of the resource
+     * @throws IOException if the resource is not found or can't be opened
+     */
+    static InputStream open(ClassLoader classLoader, BootstrapResource resource, String description) throws IOException {
+        URL url = classLoader.getResource(resource.getPath());
+        if (url == null) {
+            throw new FileNotFoundException(String.format("%s %s not found", description, resource.getPath()));
+        }
+        try {
+            switch (url.getProtocol()) {
+                case "vfs":
+                    return VFS.getChild(url.toURI()).openStream();
+                case "file":
+                    return new FileInputStream(new File(url.toURI()));
+                default:
+                    return url.openStream();
+            }
+        } catch (URISyntaxException e) {
+            throw new IOException(String.format("Invalid location %s of %s %s", url, description, resource.getPath()), e);
+        }
+    }
+}
@@ -17,17 +17,31 @@ package org.wildfly.extras.db_bootstrap.providers;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.Transaction;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.boot.registry.BootstrapServiceRegistry;
 import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.metamodel.Metadata;
 import org.hibernate.metamodel.MetadataSources;
 import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
 import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.events.BootstrapEvents;
+import org.wildfly.extras.db_bootstrap.events.BootstrapEvents.Span;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -45,26 +59,231 @@ public class HibernateBootstrapProvider implements BootstrapProvider {
      */
     public static final String DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX = "dbbootstrap";
 
+    private final SessionFactoryCache sessionFactories = new SessionFactoryCache();
+    private final ConcurrentMap<SessionFactory, SchemaCatalog> schemaCatalogs = new ConcurrentHashMap<>();
+    private final Set<LazySession> runningSessions = ConcurrentHashMap.newKeySet();
+    private final BootstrapLedger ledger;
+    private final BootstrapLock lock;
+    private final BootstrapMetrics metrics;
+    private final ConfigurationOverrides overrides;
+
+    public HibernateBootstrapProvider() {
+        this(null);
+    }
+
+    /**
+     * @param ledgerTable - the name of the table keeping track of the applied bootstrap methods, or <code>null</code>
+     *                    to invoke every bootstrap method on every run
+     */
+    public HibernateBootstrapProvider(String ledgerTable) {
+        this(ledgerTable, new BootstrapMetrics());
+    }
+
+    /**
+     * @param ledgerTable - the name of the table keeping track of the applied bootstrap methods, or <code>null</code>
+     *                    to invoke every bootstrap method on every run
+     * @param metrics - the metrics updated with the session factory, connection and method timings
+     */
+    public HibernateBootstrapProvider(String ledgerTable, BootstrapMetrics metrics) {
+        this(ledgerTable, metrics, ConfigurationOverrides.fromEnvironment());
+    }
+
     /**
-     * Wrap transaction around the invoke with the {@link Session}, if any exception throw it roll back the tx otherwise commit
-     * the tx;
+     * @param ledgerTable - the name of the table keeping track of the applied bootstrap methods, or <code>null</code>
+     *                    to invoke every bootstrap method on every run
+     * @param metrics - the metrics updated with the session factory, connection and method timings
+     * @param overrides - the overrides of the Hibernate configurations, taken once for the deployment
+     */
+    public HibernateBootstrapProvider(String ledgerTable, BootstrapMetrics metrics, ConfigurationOverrides overrides) {
+        this(ledgerTable, null, metrics, overrides);
+    }
+
+    /**
+     * @param ledgerTable - the name of the table keeping track of the applied bootstrap methods, or <code>null</code>
+     *                    to invoke every bootstrap method on every run
+     * @param lock - the lock taken on a database before the first bootstrap method uses it, or <code>null</code> to
+     *             bootstrap without coordinating with other nodes
+     * @param metrics - the metrics updated with the session factory, connection and method timings
+     * @param overrides - the overrides of the Hibernate configurations, taken once for the deployment
+     */
+    public HibernateBootstrapProvider(String ledgerTable, BootstrapLock lock, BootstrapMetrics metrics, ConfigurationOverrides overrides) {
+        this.ledger = ledgerTable != null ? new BootstrapLedger(ledgerTable) : null;
+        this.lock = lock;
+        this.metrics = metrics;
+        this.overrides = overrides;
+        if (lock != null) {
+            lock.setOnLost(this::cancel);
+        }
+    }
+
+    /**
+     * Wrap transaction around the invoke with the {@link BootstrapParameter} of the method, if any exception throw it
+     * roll back the tx and rethrow it wrapped with the class and method name, otherwise commit the tx;
+     * <br><br>
+     * A method taking a {@link Session} or {@link StatelessSession} is passed a {@link LazySession} proxy, the session
+     * factory is then only built, the session opened and the tx begun when the method uses the session, and a method
+     * that never uses it is neither committed nor closed. A method taking a {@link Connection} is passed the connection
+     * of a {@link Session}, a method taking a {@link SchemaInspector} an inspector answering from the metadata cached for
+     * the session factory. When a batch size is configured, the session doesn't interact with the second level cache.
+     * The {@link BootstrapResource}s of the method are applied to the connection of the session before it is invoked,
+     * a method without parameter is then invoked without the session.
+     * <br><br>
+     * When a ledger table is configured, the method is skipped if it has already been applied with the same bytecode
+     * and resources, unless <code>alwaysRun</code> is set. A successful invocation is recorded in the ledger within the same tx. When
+     * a {@link BootstrapLock} is configured, it is taken before the method uses the database, a method skipped by the
+     * ledger doesn't take it. Once a lease of the lock is lost, the running methods are cancelled and the next ones
+     * fail.
+     * <br><br>
+     * Every statement of the session is given the query timeout of the configuration and the tx waits at most the lock
+     * timeout of the configuration for a lock, the statement running on the session can be cancelled by {@link #cancel()}.
      * @see BootstrapProvider
      */
     @Override
-    public void invokeWithParameters(String prefix, String configuration, Object bootstrapClass, ClassLoader classLoader, Method method) throws Exception {
-        Session session = createSession(prefix, configuration, classLoader);
-        Transaction tx = session.beginTransaction();
+    public void invokeWithParameters(SessionConfiguration configuration, ClassLoader classLoader, BootstrapMethod method,
+            List<BootstrapResource> resources, boolean alwaysRun) throws Exception {
+        verifyLock();
+        BootstrapParameter parameter = BootstrapParameter.forMethodDescriptor(method.getDescriptor());
+        LazySession session = new LazySession(() -> sessionFactories.get(configuration, classLoader,
+                () -> createSessionFactory(configuration, classLoader)), this::lock, configuration, parameter, metrics);
+
+        String className = method.getClassName();
+        String methodName = signature(method);
+        String checksum = null;
+        if (ledger != null) {
+            checksum = MethodChecksum.of(MethodChecksum.of(classLoader, className, method.getName(), method.getDescriptor()), resources,
+                    classLoader);
+            if (checksum == null) {
+                DbBootstrapLogger.ROOT_LOGGER.debugf("No checksum of %s.%s, it is invoked and not recorded in the ledger", className, methodName);
+            } else if (isApplied(session.getSessionFactory(), className, methodName, checksum)) {
+                if (!alwaysRun) {
+                    DbBootstrapLogger.ROOT_LOGGER.infof("Skipping %s.%s, it has already been applied", className, methodName);
+                    return;
+                }
+                DbBootstrapLogger.ROOT_LOGGER.debugf("%s.%s has already been applied but is marked to always run", className, methodName);
+            }
+        }
+
+        boolean failed = false;
+        runningSessions.add(session);
         try {
-            method.invoke(bootstrapClass, session);
-        } catch (Exception e) {
-            DbBootstrapLogger.ROOT_LOGGER.error(String.format("Unable to invoke method %s ", method.getName()), e);
-            tx.rollback();
-        } finally {
-            if (tx.isActive()) {
-                tx.commit();
+            long allocatedBefore = BootstrapMetrics.currentThreadAllocatedBytes();
+            long before = System.nanoTime();
+            try {
+                for (BootstrapResource resource : resources) {
+                    doWork(session.get(), connection -> resource.apply(connection, classLoader));
+                }
+                if (parameter == BootstrapParameter.CONNECTION) {
+                    doWork(session.get(), method::invoke);
+                } else if (parameter == BootstrapParameter.SCHEMA_INSPECTOR) {
+                    SchemaCatalog catalog = schemaCatalogs.computeIfAbsent(session.getSessionFactory(), sessionFactory -> new SchemaCatalog());
+                    method.invoke(new DatabaseSchemaInspector(catalog, session).forDeployment(classLoader));
+                } else if (parameter != null) {
+                    method.invoke(session.proxy());
+                } else {
+                    method.invoke();
+                }
+                if (ledger != null) {
+                    String appliedChecksum = checksum;
+                    long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+                    doWork(session.get(), connection -> ledger.record(connection, className, methodName, appliedChecksum, duration));
+                }
+                methodCompleted(className, methodName, before, allocatedBefore, true);
+            } catch (Exception e) {
+                if (!session.isOpened() && session.getOpenFailure() != null) {
+                    // the session couldn't be opened, fail like a session factory that can't be built
+                    throw session.getOpenFailure();
+                }
+                failed = true;
+                methodCompleted(className, methodName, before, allocatedBefore, false);
+                if (session.isOpened()) {
+                    Span span = BootstrapEvents.transaction(className, methodName, false);
+                    try {
+                        session.getTransaction().rollback();
+                    } finally {
+                        span.finish();
+                    }
+                }
+                throw new Exception(String.format("Unable to invoke method %s.%s", className, methodName), e);
+            } finally {
+                if (session.isOpened() && session.getTransaction().isActive()) {
+                    Span span = BootstrapEvents.transaction(className, methodName, true);
+                    try {
+                        session.getTransaction().commit();
+                    } finally {
+                        span.finish();
+                    }
+                }
             }
+        } finally {
+            runningSessions.remove(session);
             session.close();
-            session.getSessionFactory().close();
+            if (session.isOpened() && (parameter != BootstrapParameter.SCHEMA_INSPECTOR || !resources.isEmpty() || failed)) {
+                // the schema may have been changed behind the back of the cached metadata
+                SchemaCatalog catalog = schemaCatalogs.get(session.getSessionFactory());
+                if (catalog != null) {
+                    catalog.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * The ledger is read without the bootstrap lock, so a method that has already been applied is skipped without
+     * waiting for the lock. A method that isn't applied yet takes the lock, and is checked again against the ledger
+     * read under the lock, in case another node applied it in the meantime.
+     *
+     * @return true if the method has already been applied with the same checksum
+     */
+    private boolean isApplied(SessionFactory sessionFactory, String className, String methodName, String checksum) throws Exception {
+        if (ledger.isApplied(sessionFactory, className, methodName, checksum)) {
+            return true;
+        }
+        if (lock == null) {
+            return false;
+        }
+        lock(sessionFactory);
+        return ledger.isApplied(sessionFactory, className, methodName, checksum);
+    }
+
+    /**
+     * Abort the bootstrap run once a lease of the bootstrap lock, if any, has been lost
+     */
+    private void verifyLock() {
+        if (lock != null) {
+            lock.verify();
+        }
+    }
+
+    /**
+     * Take the bootstrap lock of the database of the session factory, if any, before a session is opened on it
+     */
+    private void lock(SessionFactory sessionFactory) throws Exception {
+        if (lock != null) {
+            lock.acquire(sessionFactory, ledger != null ? () -> ledger.reload(sessionFactory) : null);
+        }
+    }
+
+    /**
+     * Execute the work with the JDBC connection of the session, within the transaction of the session
+     */
+    static void doWork(SharedSessionContract session, ConnectionWork work) throws Exception {
+        if (session instanceof StatelessSession) {
+            // a stateless session has no doWork, the SQLExceptions of the work pass through unconverted
+            work.execute(((SessionImplementor) session).connection());
+            return;
+        }
+        try {
+            ((Session) session).doWork(connection -> {
+                try {
+                    work.execute(connection);
+                } catch (SQLException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new WorkException(e);
+                }
+            });
+        } catch (WorkException e) {
+            throw (Exception) e.getCause();
         }
     }
 
@@ -73,64 +292,167 @@ public class HibernateBootstrapProvider implements BootstrapProvider {
      * @see BootstrapProvider
      */
     @Override
-    public void invoke(Method method, Object bootstrapClass) throws InvocationTargetException, IllegalAccessException {
-        method.invoke(bootstrapClass);
+    public void invoke(BootstrapMethod method) throws Exception {
+        verifyLock();
+        long allocatedBefore = BootstrapMetrics.currentThreadAllocatedBytes();
+        long before = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            method.invoke();
+            succeeded = true;
+        } finally {
+            methodCompleted(method.getClassName(), signature(method), before, allocatedBefore, succeeded);
+        }
+    }
+
+    private void methodCompleted(String className, String methodName, long before, long allocatedBefore, boolean succeeded) {
+        long duration = System.nanoTime() - before;
+        long allocated = allocatedBefore < 0 ? -1 : BootstrapMetrics.currentThreadAllocatedBytes() - allocatedBefore;
+        metrics.methodCompleted(className, methodName, duration, allocated, succeeded);
+    }
+
+    /**
+     * Cancel the statements running on the sessions of the bootstrap methods being invoked
+     * @see BootstrapProvider
+     */
+    @Override
+    public void cancel() {
+        runningSessions.forEach(LazySession::cancel);
+    }
+
+    /**
+     * Release the bootstrap lock, if any, and close the session factories built during the bootstrap run
+     * @see BootstrapProvider
+     */
+    @Override
+    public void close() {
+        if (lock != null) {
+            lock.release();
+        }
+        schemaCatalogs.clear();
+        sessionFactories.close();
     }
 
     /**
-     * Create a {@link Session} based on the provided configuration file.
+     * Create a {@link SessionFactory} based on the provided configuration file. When a datasource is specified, the
+     * connections are obtained from the datasource bound in JNDI, the connection properties of the configuration file
+     * are ignored and the configuration file is optional. A configured batch size enables JDBC batching with ordered
+     * inserts and updates, a configured fetch size applies to every query. Both can still be overridden by system
+     * properties. With <code>hibernate.hbm2ddl.auto=validate</code> the mapped tables are validated by
+     * {@link SchemaValidation} once the session factory is built.
      *
-     * @param prefix - the prefix for using when loading properties for the session
-     * @param hibernateCfg - The location of the hibernate configuration file.
+     * @param configuration - the configuration of the session factory
      * @param classLoader - class loader to use with the session factory
-     * @return {@link Session}
+     * @return {@link SessionFactoryCache.Entry} holding the session factory and its service registries
      * @throws Exception
      */
-    private Session createSession(final String prefix, final String hibernateCfg, final ClassLoader classLoader)
+    private SessionFactoryCache.Entry createSessionFactory(final SessionConfiguration configuration, final ClassLoader classLoader)
             throws Exception {
-        SessionFactory sessionFactory = null;
+        String hibernateCfg = configuration.getHibernateCfg();
+        String datasource = configuration.getDatasource();
         DbBootstrapLogger.ROOT_LOGGER.tracef("Using hibernate configuration file %s", hibernateCfg);
 
         BootstrapServiceRegistryBuilder serviceRegistryBuilder = new BootstrapServiceRegistryBuilder();
         serviceRegistryBuilder.with(classLoader)
                 .with(this.getClass().getClassLoader());
+        BootstrapServiceRegistry bootstrapRegistry = serviceRegistryBuilder.build();
 
-        StandardServiceRegistryBuilder standardRegistryBuilder = new StandardServiceRegistryBuilder(serviceRegistryBuilder.build())
-                .configure(hibernateCfg);
+        StandardServiceRegistryBuilder standardRegistryBuilder = new StandardServiceRegistryBuilder(bootstrapRegistry);
+        if (datasource.isEmpty() || !hibernateCfg.isEmpty()) {
+            standardRegistryBuilder.configure(hibernateCfg);
+        }
+        if (!datasource.isEmpty()) {
+            DbBootstrapLogger.ROOT_LOGGER.tracef("Using datasource %s", datasource);
+            standardRegistryBuilder.applySetting(AvailableSettings.DATASOURCE, datasource);
+        }
 
-        configureSettingsFromSystemProperties(prefix, standardRegistryBuilder);
-        Metadata metadata = new MetadataSources(standardRegistryBuilder.build() ).buildMetadata();
+        if (configuration.getBatchSize() > 0) {
+            standardRegistryBuilder.applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, configuration.getBatchSize());
+            standardRegistryBuilder.applySetting(AvailableSettings.ORDER_INSERTS, true);
+            standardRegistryBuilder.applySetting(AvailableSettings.ORDER_UPDATES, true);
+        }
+        if (configuration.getFetchSize() > 0) {
+            standardRegistryBuilder.applySetting(AvailableSettings.STATEMENT_FETCH_SIZE, configuration.getFetchSize());
+        }
 
-        sessionFactory = metadata.getSessionFactoryBuilder()
-                .build();
+        configureSettingsFromSystemProperties(overrides, configuration.getPrefix(), standardRegistryBuilder);
+        long before = System.nanoTime();
+        Span span = BootstrapEvents.sessionFactoryBuild(configuration.getPrefix(), hibernateCfg, datasource);
+        try {
+            StandardServiceRegistry standardRegistry = standardRegistryBuilder.build();
+            try {
+                boolean validate = SchemaValidation.isEnabled(standardRegistry.getService(ConfigurationService.class).getSettings());
+                MetadataSources sources = new MetadataSources(standardRegistry);
+                if (validate && !hibernateCfg.isEmpty()) {
+                    SchemaValidation.addMappings(sources, bootstrapRegistry, hibernateCfg, classLoader);
+                }
+                Metadata metadata = sources.buildMetadata();
+                SessionFactory sessionFactory = metadata.getSessionFactoryBuilder()
+                        .build();
+                if (validate) {
+                    try {
+                        SchemaValidation.validate(configuration.getPrefix(), metadata, sessionFactory);
+                    } catch (RuntimeException e) {
+                        sessionFactory.close();
+                        throw e;
+                    }
+                }
+                metrics.sessionFactoryBuilt(System.nanoTime() - before);
+                return new SessionFactoryCache.Entry(sessionFactory, standardRegistry, bootstrapRegistry);
+            } catch (Throwable t) {
+                StandardServiceRegistryBuilder.destroy(standardRegistry);
+                throw t;
+            }
+        } finally {
+            span.finish();
+        }
+    }
 
-        return sessionFactory.openSession();
+    /**
+     * @return the method name with the parameter types, e.g. <code>createSchema(org.hibernate.Session)</code>
+     */
+    private static String signature(BootstrapMethod method) {
+        return MethodChecksum.parameterTypeNames(method.getDescriptor())
+                .stream()
+                .collect(Collectors.joining(",", method.getName() + "(", ")"));
     }
 
     /**
-     * Loads all <code>dbbootstrap.[user-space-cfg-name-here].[hibernate-property-name-here]</code> properties from system
-     * properties. <br>
+     * Applies all <code>dbbootstrap.[user-space-cfg-name-here].[hibernate-property-name-here]</code> properties from the
+     * snapshot of the system properties and environment variables. <br>
      * <br>
      * Any existing hibernate properties with the same name (<code>[hibernate-property-name-here]</code> in above example) will
      * be replaced by the matching system property. <br>
      * <br>
      *
+     * @param overrides - the overrides of the deployment
+     * @param prefix - the name of the hibernate configuration
      * @param configuration  - the runtime hibernate configuration object
+     * @see ConfigurationOverrides
      */
-    private void configureSettingsFromSystemProperties(String prefix, StandardServiceRegistryBuilder configuration) {
-        String propertyPrefix = String.format("%s.%s", DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX, prefix);
-        DbBootstrapLogger.ROOT_LOGGER.tracef(
-                "Searching for system properties with prefix %s to set and/or override hibernate configuration properties",
-                propertyPrefix);
-        for (Map.Entry<Object, Object> entrySet : (System.getProperties().entrySet())) {
-            if (entrySet.getKey().toString().startsWith(propertyPrefix)) {
-                    String hibernatePropertyName = entrySet.getKey().toString().replace(String.format("%s.", propertyPrefix), "");
-                    String newHibernatePropertyValue = entrySet.getValue().toString();
-                    DbBootstrapLogger.ROOT_LOGGER.tracef("Setting hibernate property: %s=%s", hibernatePropertyName,
-                            newHibernatePropertyValue);
-                    configuration.applySetting(hibernatePropertyName, newHibernatePropertyValue);
-            }
+    static void configureSettingsFromSystemProperties(ConfigurationOverrides overrides, String prefix, StandardServiceRegistryBuilder configuration) {
+        Map<String, String> settings = overrides.get(prefix);
+        DbBootstrapLogger.ROOT_LOGGER.tracef("Found %s properties with prefix %s.%s to set and/or override hibernate configuration properties",
+                settings.size(), DBBOOTSTRAP_SYSTEM_PROPERTY_PREFIX, prefix);
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            DbBootstrapLogger.ROOT_LOGGER.tracef("Setting hibernate property: %s=%s", setting.getKey(), setting.getValue());
+            configuration.applySetting(setting.getKey(), setting.getValue());
         }
     }
 
+    /**
+     * Work with a JDBC connection, which may fail with any exception
+     */
+    @FunctionalInterface
+    interface ConnectionWork {
+        void execute(Connection connection) throws Exception;
+    }
+
+    private static final class WorkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private WorkException(Exception cause) {
+            super(cause);
+        }
+    }
 }
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+
+/**
+ * The session of a single bootstrap method invocation, opened on first use. <br>
+ * <br>
+ * The bootstrap method is handed a {@link #proxy()} of the session. The session factory is built or borrowed from the
+ * {@link SessionFactoryCache}, the session is opened and its transaction begun when the method calls the proxy for
+ * the first time, so a method returning without touching the session doesn't acquire a connection. A session is
+ * only used by the thread invoking the bootstrap method, but can be {@link #cancel() cancelled} from another thread. <br>
+ * <br>
+ * The connection of the session is obtained from the connection provider of the session factory and wrapped in a
+ * {@link TimedConnection}, giving every statement the query timeout of the configuration. The lock timeout of the
+ * configuration is applied once the transaction is begun, and the previous one put back when the session is closed.
+ *
+ * @see HibernateBootstrapProvider
+ */
+final class LazySession implements InvocationHandler {
+
+    private final Callable<SessionFactory> sessionFactoryLookup;
+    private final SessionFactoryWork beforeOpen;
+    private final SessionConfiguration configuration;
+    private final BootstrapParameter parameter;
+    private final BootstrapMetrics metrics;
+    private SessionFactory sessionFactory;
+    private SharedSessionContract session;
+    private Transaction transaction;
+    private ConnectionProvider connectionProvider;
+    private volatile TimedConnection connection;
+    private volatile boolean cancelled;
+    private Exception openFailure;
+
+    /**
+     * @param sessionFactoryLookup - builds or borrows the session factory of the configuration
+     * @param beforeOpen - the work done with the session factory before the session is opened, e.g. taking the
+     *                   bootstrap lock of its database
+     * @param configuration - the configuration of the session factory
+     * @param parameter - the parameter of the bootstrap method, a {@link StatelessSession} is opened for
+     *                  {@link BootstrapParameter#STATELESS_SESSION} and a {@link Session} otherwise
+     * @param metrics - the metrics updated with the time spent opening the session
+     */
+    LazySession(Callable<SessionFactory> sessionFactoryLookup, SessionFactoryWork beforeOpen, SessionConfiguration configuration,
+            BootstrapParameter parameter, BootstrapMetrics metrics) {
+        this.sessionFactoryLookup = sessionFactoryLookup;
+        this.beforeOpen = beforeOpen;
+        this.configuration = configuration;
+        this.parameter = parameter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the session factory, built or borrowed on the first call
+     * @throws Exception if the session factory can't be built
+     */
+    SessionFactory getSessionFactory() throws Exception {
+        if (sessionFactory == null) {
+            sessionFactory = sessionFactoryLookup.call();
+        }
+        return sessionFactory;
+    }
+
+    /**
+     * @return the session, opened with a begun transaction on the first call
+     * @throws Exception if the session factory can't be built or the session can't be opened
+     */
+    SharedSessionContract get() throws Exception {
+        if (session == null) {
+            try {
+                SessionFactory factory = getSessionFactory();
+                beforeOpen.execute(factory);
+                long before = System.nanoTime();
+                ConnectionProvider provider = ((SessionFactoryImplementor) factory).getServiceRegistry().getService(ConnectionProvider.class);
+                TimedConnection timed = new TimedConnection(provider.getConnection(), configuration.getQueryTimeout());
+                SharedSessionContract opened = null;
+                try {
+                    opened = open(factory, timed.proxy());
+                    transaction = opened.beginTransaction();
+                    if (configuration.getLockTimeout() > 0) {
+                        timed.applyLockTimeout(configuration.getLockTimeout());
+                    }
+                } catch (RuntimeException | SQLException e) {
+                    if (opened != null) {
+                        close(opened);
+                    }
+                    provider.closeConnection(timed.getConnection());
+                    throw e;
+                }
+                connectionProvider = provider;
+                connection = timed;
+                session = opened;
+                if (cancelled) {
+                    // cancelled while the session factory was built or the session opened
+                    timed.cancel();
+                }
+                metrics.connectionAcquired(System.nanoTime() - before);
+            } catch (Exception e) {
+                openFailure = e;
+                throw e;
+            }
+        }
+        return session;
+    }
+
+    /**
+     * @return the proxy of the session handed to the bootstrap method
+     */
+    SharedSessionContract proxy() {
+        Class<?> type = parameter == BootstrapParameter.STATELESS_SESSION ? StatelessSession.class : Session.class;
+        return (SharedSessionContract) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, this);
+    }
+
+    /**
+     * @return true if the session has been opened
+     */
+    boolean isOpened() {
+        return session != null;
+    }
+
+    /**
+     * @return the transaction of the opened session, or <code>null</code> if the session hasn't been opened
+     */
+    Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return the exception thrown when the session factory was built or the session was opened, if any
+     */
+    Exception getOpenFailure() {
+        return openFailure;
+    }
+
+    /**
+     * Cancel the statement running on the connection of the session, if any, and the statements executed later on.
+     * May be called from any thread.
+     */
+    void cancel() {
+        cancelled = true;
+        TimedConnection timed = connection;
+        if (timed != null) {
+            timed.cancel();
+        }
+    }
+
+    /**
+     * Close the session if it has been opened, put back the lock timeout of its connection and release it
+     */
+    void close() throws SQLException {
+        if (session != null) {
+            try {
+                close(session);
+                connection.restoreLockTimeout();
+            } finally {
+                connectionProvider.closeConnection(connection.getConnection());
+            }
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return String.format("LazySession[%s, %s]", configuration.getPrefix(), session != null ? session : "not opened");
+            }
+        }
+        SharedSessionContract target;
+        try {
+            target = get();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new HibernateException(String.format("Unable to open a session for %s", configuration.getPrefix()), e);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private SharedSessionContract open(SessionFactory factory, Connection connection) {
+        if (parameter == BootstrapParameter.STATELESS_SESSION) {
+            return factory.openStatelessSession(connection);
+        }
+        Session opened = factory.withOptions().connection(connection).openSession();
+        if (configuration.getBatchSize() > 0) {
+            opened.setCacheMode(CacheMode.IGNORE);
+        }
+        return opened;
+    }
+
+    /**
+     * Work with a session factory, which may fail with any exception
+     */
+    @FunctionalInterface
+    interface SessionFactoryWork {
+        void execute(SessionFactory sessionFactory) throws Exception;
+    }
+
+    private static void close(SharedSessionContract session) {
+        if (session instanceof StatelessSession) {
+            ((StatelessSession) session).close();
+        } else {
+            ((Session) session).close();
+        }
+    }
+}
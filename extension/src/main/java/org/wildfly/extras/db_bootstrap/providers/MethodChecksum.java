@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates a checksum of the bytecode of a bootstrap method, read from the class file of the declaring class. <br>
+ * <br>
+ * The checksum covers the constant pool of the class, the descriptor and the code of the method, and the code of the
+ * synthetic methods in the class (e.g. lambda bodies). Changing a constant anywhere in the class therefore changes the
+ * checksum of every method in it, which errs on the side of executing a method again. The content of the SQL scripts
+ * and seed data files of a method can be folded into its checksum.
+ */
+public final class MethodChecksum {
+
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private MethodChecksum() {
+    }
+
+    /**
+     * @param classLoader - the class loader of the bootstrap class
+     * @param className - the name of the bootstrap class declaring the method
+     * @param name - the name of the bootstrap method
+     * @param descriptor - the JVM descriptor of the bootstrap method
+     * @return the hex encoded checksum, or <code>null</code> if the class file of the method could not be read
+     */
+    public static String of(final ClassLoader classLoader, final String className, final String name, final String descriptor) {
+        String resource = className.replace('.', '/') + ".class";
+        try (InputStream in = classLoader != null ? classLoader.getResourceAsStream(resource) : ClassLoader.getSystemResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            return checksum(readFully(in), name, descriptor);
+        } catch (IOException | RuntimeException e) {
+            DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Unable to read the class file of %s", className);
+            return null;
+        }
+    }
+
+    /**
+     * @param checksum - the checksum of the bytecode of the bootstrap method
+     * @param resources - the {@link BootstrapResource}s applied before the method is invoked
+     * @param classLoader - the class loader of the deployment
+     * @return the hex encoded checksum of the method and the content of its resources, or <code>null</code> if a
+     *         resource could not be read
+     */
+    public static String of(final String checksum, final List<BootstrapResource> resources, final ClassLoader classLoader) {
+        if (checksum == null || resources.isEmpty()) {
+            return checksum;
+        }
+        MessageDigest digest = sha1();
+        digest.update(checksum.getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[8192];
+        for (BootstrapResource resource : resources) {
+            digest.update(resource.getPath().getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = DeploymentResources.open(classLoader, resource, "Resource")) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } catch (IOException | RuntimeException e) {
+                DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Unable to read the resource %s", resource.getPath());
+                return null;
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return the JVM descriptor of the method, e.g. <code>(Lorg/hibernate/Session;)V</code>
+     */
+    public static String descriptor(final Method method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            descriptor.append(descriptor(parameterType));
+        }
+        return descriptor.append(')').append(descriptor(method.getReturnType())).toString();
+    }
+
+    private static String descriptor(final Class<?> type) {
+        if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        }
+        if (type == void.class) {
+            return "V";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        }
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    /**
+     * @param descriptor - the JVM descriptor of a method
+     * @return the parameter types of the descriptor, named as by {@link Class#getName()}
+     */
+    static List<String> parameterTypeNames(final String descriptor) {
+        List<String> names = new ArrayList<>();
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+            String type = descriptor.substring(start, i);
+            if (type.charAt(0) == '[') {
+                names.add(type.replace('/', '.'));
+            } else if (type.charAt(0) == 'L') {
+                names.add(type.substring(1, type.length() - 1).replace('/', '.'));
+            } else {
+                names.add(primitive(type.charAt(0)));
+            }
+        }
+        return names;
+    }
+
+    private static String primitive(final char type) {
+        switch (type) {
+            case 'Z':
+                return "boolean";
+            case 'B':
+                return "byte";
+            case 'C':
+                return "char";
+            case 'S':
+                return "short";
+            case 'I':
+                return "int";
+            case 'J':
+                return "long";
+            case 'F':
+                return "float";
+            case 'D':
+                return "double";
+            default:
+                throw new IllegalArgumentException("Unknown primitive type " + type);
+        }
+    }
+
+    private static String checksum(final byte[] classFile, final String name, final String descriptor) throws IOException {
+        MessageDigest digest = sha1();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        in.skipBytes(8); // magic, minor and major version
+
+        int constantPoolCount = in.readUnsignedShort();
+        int constantPoolStart = classFile.length - in.available();
+        String[] utf8 = new String[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 5:
+                case 6:
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        int constantPoolEnd = classFile.length - in.available();
+        digest.update(classFile, constantPoolStart, constantPoolEnd - constantPoolStart);
+
+        in.skipBytes(6); // access flags, this and super class
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            in.skipBytes(6);
+            skipAttributes(in);
+        }
+
+        boolean found = false;
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            int accessFlags = in.readUnsignedShort();
+            String methodName = utf8[in.readUnsignedShort()];
+            String methodDescriptor = utf8[in.readUnsignedShort()];
+            boolean match = name.equals(methodName) && descriptor.equals(methodDescriptor);
+            found |= match;
+            if (match) {
+                digest.update(methodDescriptor.getBytes("UTF-8"));
+            }
+            int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = utf8[in.readUnsignedShort()];
+                int length = in.readInt();
+                if ((match || (accessFlags & ACC_SYNTHETIC) != 0) && "Code".equals(attributeName)) {
+                    int offset = classFile.length - in.available();
+                    digest.update(classFile, offset, length);
+                }
+                in.skipBytes(length);
+            }
+        }
+        return found ? hex(digest.digest()) : null;
+    }
+
+    private static void skipAttributes(final DataInputStream in) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
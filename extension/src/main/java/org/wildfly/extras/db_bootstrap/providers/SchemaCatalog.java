@@ -0,0 +1,347 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The cached metadata of the tables of a database, backing the {@link SchemaInspector}s of the bootstrap methods sharing a
+ * session factory. <br>
+ * <br>
+ * The tables and columns of a schema are read with a single <code>getTables</code> and <code>getColumns</code> call on
+ * the first lookup of a table of the schema, the indexes of a table on the first lookup of an index of the table. DDL
+ * executed through an inspector only re-reads the table it creates, alters or drops, any other DDL drops the cache.
+ * The catalog is shared by the threads of a bootstrap run.
+ *
+ * @see DatabaseSchemaInspector
+ */
+final class SchemaCatalog {
+
+    private static final String IDENTIFIER = "([\\w$#.\"`\\[\\]]+)";
+    private static final Pattern DDL = Pattern.compile("^\\s*(?:CREATE|ALTER|DROP|RENAME)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RENAME = Pattern.compile("\\bRENAME\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TABLE_STATEMENT = Pattern.compile(
+            "^\\s*(?:CREATE|ALTER|DROP)\\s+(?:\\w+\\s+){0,2}?TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?" + IDENTIFIER, Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^\\s*CREATE\\s+(?:\\w+\\s+){0,2}?INDEX\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?" + IDENTIFIER + "\\s+ON\\s+" + IDENTIFIER, Pattern.CASE_INSENSITIVE);
+    private static final Pattern DROP_INDEX = Pattern.compile("^\\s*DROP\\s+INDEX\\b", Pattern.CASE_INSENSITIVE);
+
+    private final ConcurrentMap<String, Schema> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * @param connector - gives access to a connection when the metadata has to be read
+     * @param name - the name of the table, optionally qualified with its schema
+     * @return the table, or <code>null</code> if the table doesn't exist
+     * @throws Exception if the metadata can't be read
+     */
+    Table getTable(final Connector connector, final String name) throws Exception {
+        Name tableName = Name.parse(name);
+        return schema(connector, tableName).tables.get(tableName.key);
+    }
+
+    /**
+     * @param connector - gives access to a connection when the indexes of the table have to be read
+     * @param table - the table
+     * @param index - the name of the index
+     * @return true if the table has the index
+     * @throws Exception if the metadata can't be read
+     */
+    boolean hasIndex(final Connector connector, final Table table, final String index) throws Exception {
+        Set<String> indexes = table.indexes;
+        if (indexes == null) {
+            Set<String> read = new HashSet<>();
+            connector.withConnection(connection -> {
+                try (ResultSet rs = connection.getMetaData().getIndexInfo(table.catalog, table.schema, table.name, false, true)) {
+                    while (rs.next()) {
+                        String indexName = rs.getString("INDEX_NAME");
+                        if (indexName != null) {
+                            read.add(indexName.toUpperCase(Locale.ROOT));
+                        }
+                    }
+                }
+            });
+            indexes = Collections.unmodifiableSet(read);
+            table.indexes = indexes;
+        }
+        return indexes.contains(key(index));
+    }
+
+    /**
+     * Update the cache with the table affected by a statement executed through an inspector.
+     *
+     * @param connector - gives access to the connection the statement was executed on
+     * @param sql - the executed statement
+     * @throws Exception if the metadata can't be read
+     */
+    void executed(final Connector connector, final String sql) throws Exception {
+        if (!DDL.matcher(sql).find()) {
+            return;
+        }
+        Matcher createIndex = CREATE_INDEX.matcher(sql);
+        if (createIndex.find()) {
+            Table table = cached(Name.parse(createIndex.group(2)));
+            if (table != null) {
+                table.indexes = null;
+            }
+            return;
+        }
+        if (DROP_INDEX.matcher(sql).find()) {
+            schemas.values().forEach(schema -> schema.tables.values().forEach(table -> table.indexes = null));
+            return;
+        }
+        Matcher tableStatement = TABLE_STATEMENT.matcher(sql);
+        if (tableStatement.find() && !RENAME.matcher(sql).find()) {
+            Name name = Name.parse(tableStatement.group(1));
+            Schema schema = schemas.get(name.schemaKey);
+            if (schema != null) {
+                connector.withConnection(connection -> refresh(connection, schema, name));
+            }
+            return;
+        }
+        DbBootstrapLogger.ROOT_LOGGER.tracef("Dropping the cached schema metadata after '%s'", sql);
+        invalidate();
+    }
+
+    /**
+     * @param identifier - the name of a column or an index, optionally quoted
+     * @return the upper-cased name the column or index is cached with
+     */
+    static String key(final String identifier) {
+        return Name.unquote(identifier).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Drop the cached metadata, it's read again on the next lookup.
+     */
+    synchronized void invalidate() {
+        schemas.clear();
+    }
+
+    private Table cached(final Name name) {
+        Schema schema = schemas.get(name.schemaKey);
+        return schema != null ? schema.tables.get(name.key) : null;
+    }
+
+    private Schema schema(final Connector connector, final Name name) throws Exception {
+        Schema schema = schemas.get(name.schemaKey);
+        if (schema == null) {
+            synchronized (this) {
+                schema = schemas.get(name.schemaKey);
+                if (schema == null) {
+                    Schema[] read = new Schema[1];
+                    connector.withConnection(connection -> read[0] = read(connection, name.schema));
+                    schema = read[0];
+                    schemas.put(name.schemaKey, schema);
+                }
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Read the tables and columns of a schema, the current schema of the connection if none is given.
+     */
+    private static Schema read(final Connection connection, final String schemaName) throws SQLException {
+        long before = System.nanoTime();
+        DatabaseMetaData metaData = connection.getMetaData();
+        Schema schema = new Schema(connection.getCatalog(), schemaName != null ? storedIdentifier(metaData, schemaName) : currentSchema(connection));
+        Map<String, Map<String, String>> columns = readColumns(metaData, schema.catalog, schema.pattern, null, table -> true);
+        try (ResultSet rs = metaData.getTables(schema.catalog, schema.pattern, null, null)) {
+            while (rs.next()) {
+                String key = rs.getString("TABLE_NAME").toUpperCase(Locale.ROOT);
+                schema.tables.putIfAbsent(key, new Table(rs.getString("TABLE_CAT"), rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME"),
+                        columns.getOrDefault(key, Collections.emptyMap())));
+            }
+        }
+        DbBootstrapLogger.ROOT_LOGGER.debugf("Read the metadata of %s tables of schema %s in %s ms", (Object) schema.tables.size(), schema.pattern,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before));
+        return schema;
+    }
+
+    private static void refresh(final Connection connection, final Schema schema, final Name name) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String tableName = name.quoted ? name.table : storedIdentifier(metaData, name.table);
+        Table table = null;
+        try (ResultSet rs = metaData.getTables(schema.catalog, schema.pattern, tableName, null)) {
+            while (table == null && rs.next()) {
+                if (rs.getString("TABLE_NAME").equalsIgnoreCase(name.table)) {
+                    Map<String, String> columns = readColumns(metaData, schema.catalog, schema.pattern, rs.getString("TABLE_NAME"),
+                            name.key::equals).get(name.key);
+                    table = new Table(rs.getString("TABLE_CAT"), rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME"),
+                            columns != null ? columns : Collections.emptyMap());
+                }
+            }
+        }
+        if (table != null) {
+            schema.tables.put(name.key, table);
+        } else {
+            schema.tables.remove(name.key);
+        }
+    }
+
+    /**
+     * Read the columns of the tables of a schema with a single call.
+     *
+     * @param metaData - the metadata of the database
+     * @param catalog - the catalog, or <code>null</code>
+     * @param schemaPattern - the schema, or <code>null</code> for every schema
+     * @param tablePattern - the table, or <code>null</code> for every table
+     * @param tables - accepts the upper-cased names of the tables to read the columns of
+     * @return the type, size and nullability of the columns, keyed by the upper-cased table and column names
+     * @throws SQLException if the metadata can't be read
+     */
+    static Map<String, Map<String, String>> readColumns(final DatabaseMetaData metaData, final String catalog, final String schemaPattern,
+            final String tablePattern, final Predicate<String> tables) throws SQLException {
+        Map<String, Map<String, String>> columns = new TreeMap<>();
+        try (ResultSet rs = metaData.getColumns(catalog, schemaPattern, tablePattern, null)) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME").toUpperCase(Locale.ROOT);
+                if (tables.test(table)) {
+                    columns.computeIfAbsent(table, name -> new TreeMap<>()).put(rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT),
+                            String.format("%s:%s:%s:%s", rs.getString("TYPE_NAME"), rs.getInt("DATA_TYPE"), rs.getInt("COLUMN_SIZE"),
+                                    rs.getInt("NULLABLE")));
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static String currentSchema(final Connection connection) throws SQLException {
+        try {
+            return connection.getSchema();
+        } catch (AbstractMethodError | SQLFeatureNotSupportedException e) {
+            // drivers predating JDBC 4.1, every schema is read
+            return null;
+        }
+    }
+
+    /**
+     * @return the unquoted identifier in the case the database stores it
+     */
+    private static String storedIdentifier(final DatabaseMetaData metaData, final String identifier) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase(Locale.ROOT);
+        }
+        if (metaData.storesLowerCaseIdentifiers()) {
+            return identifier.toLowerCase(Locale.ROOT);
+        }
+        return identifier;
+    }
+
+    /**
+     * Gives access to a connection of the session of a bootstrap method
+     */
+    @FunctionalInterface
+    interface Connector {
+        void withConnection(HibernateBootstrapProvider.ConnectionWork work) throws Exception;
+    }
+
+    /**
+     * The tables of a schema, keyed by their upper-cased name
+     */
+    private static final class Schema {
+        private final String catalog;
+        private final String pattern;
+        private final ConcurrentMap<String, Table> tables = new ConcurrentHashMap<>();
+
+        private Schema(final String catalog, final String pattern) {
+            this.catalog = catalog;
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * A table with its columns, keyed by their upper-cased name. The indexes are read on the first lookup.
+     */
+    static final class Table {
+        private final String catalog;
+        private final String schema;
+        private final String name;
+        private final Map<String, String> columns;
+        private volatile Set<String> indexes;
+
+        private Table(final String catalog, final String schema, final String name, final Map<String, String> columns) {
+            this.catalog = catalog;
+            this.schema = schema;
+            this.name = name;
+            this.columns = Collections.unmodifiableMap(columns);
+        }
+
+        /**
+         * @return the upper-cased names of the columns
+         */
+        Set<String> getColumns() {
+            return columns.keySet();
+        }
+    }
+
+    /**
+     * A table name, optionally qualified with its schema
+     */
+    private static final class Name {
+        private final String schema;
+        private final String schemaKey;
+        private final String table;
+        private final String key;
+        private final boolean quoted;
+
+        private Name(final String schema, final String table, final boolean quoted) {
+            this.schema = schema;
+            this.schemaKey = schema == null ? "" : schema.toUpperCase(Locale.ROOT);
+            this.table = table;
+            this.key = table.toUpperCase(Locale.ROOT);
+            this.quoted = quoted;
+        }
+
+        private static Name parse(final String name) {
+            String trimmed = name.trim();
+            int dot = trimmed.lastIndexOf('.');
+            String table = trimmed.substring(dot + 1);
+            String schema = null;
+            if (dot > 0) {
+                String qualifier = trimmed.substring(0, dot);
+                schema = unquote(qualifier.substring(qualifier.lastIndexOf('.') + 1));
+            }
+            return new Name(schema, unquote(table), !table.equals(unquote(table)));
+        }
+
+        private static String unquote(final String identifier) {
+            String trimmed = identifier.trim();
+            if (trimmed.length() > 1 && "\"`[".indexOf(trimmed.charAt(0)) >= 0) {
+                return trimmed.substring(1, trimmed.length() - 1);
+            }
+            return trimmed;
+        }
+    }
+}
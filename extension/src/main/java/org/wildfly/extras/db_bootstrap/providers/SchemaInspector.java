@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Answers whether the tables, columns and indexes of a database exist, from a cache of its metadata shared by the
+ * bootstrap methods of a run using the same Hibernate configuration. A bootstrap method declaring a parameter of this
+ * type is passed an inspector bound to the session of the method. <br>
+ * <br>
+ * The tables and columns of a schema are read with a single {@link java.sql.DatabaseMetaData#getTables} and
+ * {@link java.sql.DatabaseMetaData#getColumns} call the first time the schema is inspected, the indexes of a table the
+ * first time an index of the table is inspected. DDL executed through {@link #execute(String)} re-reads the metadata of
+ * the affected table only. The cache is dropped when a bootstrap method uses its session or connection directly.<br>
+ * <br>
+ * Names are matched case-insensitively, a table name may be qualified with its schema, e.g. <code>APP.PERSON</code>.
+ * Unqualified tables are looked up in the current schema of the connection.
+ */
+public interface SchemaInspector {
+
+    /**
+     * @param table - the name of the table or view
+     * @return true if the table exists
+     * @throws SQLException if the metadata can't be read
+     */
+    boolean tableExists(String table) throws SQLException;
+
+    /**
+     * @param table - the name of the table or view
+     * @param column - the name of the column
+     * @return true if the table exists and has the column
+     * @throws SQLException if the metadata can't be read
+     */
+    boolean columnExists(String table, String column) throws SQLException;
+
+    /**
+     * @param table - the name of the table
+     * @param index - the name of the index
+     * @return true if the table exists and has the index
+     * @throws SQLException if the metadata can't be read
+     */
+    boolean indexExists(String table, String index) throws SQLException;
+
+    /**
+     * @param table - the name of the table or view
+     * @return the upper-cased names of the columns of the table, empty if the table doesn't exist
+     * @throws SQLException if the metadata can't be read
+     */
+    Set<String> getColumns(String table) throws SQLException;
+
+    /**
+     * Execute a statement on the connection of the session, within its transaction, and update the cache with the
+     * table it creates, alters or drops. The whole cache is re-read on the next inspection when the affected table
+     * can't be told from the statement.
+     *
+     * @param sql - the DDL or DML statement
+     * @return the update count of the statement
+     * @throws SQLException if the statement fails
+     */
+    int execute(String sql) throws SQLException;
+}
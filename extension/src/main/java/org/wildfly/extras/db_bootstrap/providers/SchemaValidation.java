@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.BootstrapServiceRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.internal.jaxb.cfg.JaxbHibernateConfiguration;
+import org.hibernate.metamodel.Metadata;
+import org.hibernate.metamodel.MetadataSources;
+import org.hibernate.metamodel.binding.EntityBinding;
+import org.hibernate.metamodel.binding.PluralAttributeBinding;
+import org.hibernate.metamodel.relational.Column;
+import org.hibernate.metamodel.relational.Identifier;
+import org.hibernate.metamodel.relational.Schema;
+import org.hibernate.metamodel.relational.SimpleValue;
+import org.hibernate.metamodel.relational.Table;
+import org.hibernate.metamodel.relational.TableSpecification;
+import org.hibernate.service.ConfigLoader;
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates the mapped tables and columns of a session factory against the database when
+ * <code>hibernate.hbm2ddl.auto</code> is <code>validate</code>. The session factories of the extension are built from
+ * the Hibernate metamodel, which only supports <code>create</code> and <code>create-drop</code>, so the validation is
+ * done by the extension. <br>
+ * <br>
+ * The column metadata of a schema is read with a single {@link DatabaseMetaData#getColumns} call instead of a call per
+ * table.
+ */
+final class SchemaValidation {
+
+    static final String VALIDATE = "validate";
+
+    private SchemaValidation() {
+    }
+
+    /**
+     * @param settings - the settings of the service registry
+     * @return true if the schema is validated by the session factories of the settings
+     */
+    static boolean isEnabled(final Map<?, ?> settings) {
+        Object auto = settings.get(AvailableSettings.HBM2DDL_AUTO);
+        if (auto == null) {
+            auto = settings.get(AvailableSettings.HBM2DDL_AUTO.substring("hibernate.".length()));
+        }
+        return auto != null && VALIDATE.equalsIgnoreCase(auto.toString().trim());
+    }
+
+    /**
+     * Add the <code>&lt;mapping&gt;</code> entries of the hibernate configuration file to the sources of the metamodel,
+     * which only reads the properties of the file.
+     *
+     * @param sources - the sources of the metamodel
+     * @param bootstrapRegistry - the bootstrap registry used to locate the configuration file
+     * @param hibernateCfg - the hibernate configuration file
+     * @param classLoader - class loader of the mapped classes
+     * @throws ClassNotFoundException if a mapped class can't be loaded
+     */
+    static void addMappings(final MetadataSources sources, final BootstrapServiceRegistry bootstrapRegistry, final String hibernateCfg,
+            final ClassLoader classLoader) throws ClassNotFoundException {
+        JaxbHibernateConfiguration cfg = new ConfigLoader(bootstrapRegistry).loadConfigXmlResource(hibernateCfg);
+        for (JaxbHibernateConfiguration.JaxbSessionFactory.JaxbMapping mapping : cfg.getSessionFactory().getMapping()) {
+            if (mapping.getResource() != null) {
+                sources.addResource(mapping.getResource());
+            } else if (mapping.getClazz() != null) {
+                sources.addAnnotatedClass(Class.forName(mapping.getClazz(), false, classLoader));
+            } else if (mapping.getFile() != null) {
+                sources.addFile(mapping.getFile());
+            } else if (mapping.getJar() != null) {
+                sources.addJar(new File(mapping.getJar()));
+            } else if (mapping.getPackage() != null) {
+                sources.addPackage(mapping.getPackage());
+            }
+        }
+    }
+
+    /**
+     * @param configuration - the name of the configuration the session factory is built for
+     * @param metadata - the mapping of the session factory
+     * @param sessionFactory - the session factory
+     * @throws HibernateException if a mapped table or column is missing
+     */
+    static void validate(final String configuration, final Metadata metadata, final SessionFactory sessionFactory) {
+        Map<String, MappedTable> tables = mappedTables(metadata);
+        if (tables.isEmpty()) {
+            DbBootstrapLogger.ROOT_LOGGER.tracef("Configuration %s has no mapped tables to validate", configuration);
+            return;
+        }
+        Session session = sessionFactory.openSession();
+        try {
+            session.doWork(connection -> validate(configuration, tables, connection));
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void validate(final String configuration, final Map<String, MappedTable> tables, final Connection connection)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        long before = System.nanoTime();
+        Map<String, Map<String, String>> columns = readColumns(metaData, tables);
+        for (MappedTable table : tables.values()) {
+            Map<String, String> tableColumns = columns.get(table.name);
+            if (tableColumns == null) {
+                throw new HibernateException(String.format("Schema-validation: missing table [%s]", table.qualifiedName));
+            }
+            for (String column : table.columns) {
+                if (!tableColumns.containsKey(column)) {
+                    throw new HibernateException(String.format("Schema-validation: missing column [%s] in table [%s]",
+                            column.toLowerCase(Locale.ROOT), table.qualifiedName));
+                }
+            }
+        }
+        DbBootstrapLogger.ROOT_LOGGER.debugf("Validated %s tables of %s in %s ms", (Object) tables.size(), configuration,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before));
+    }
+
+    /**
+     * @return the mapped tables of the entities and collections, keyed by their upper-cased name
+     */
+    private static Map<String, MappedTable> mappedTables(final Metadata metadata) {
+        List<TableSpecification> specifications = new ArrayList<>();
+        for (EntityBinding entityBinding : metadata.getEntityBindings()) {
+            specifications.add(entityBinding.getPrimaryTable());
+        }
+        for (PluralAttributeBinding collectionBinding : metadata.getCollectionBindings()) {
+            specifications.add(collectionBinding.getCollectionTable());
+        }
+        Map<String, MappedTable> tables = new TreeMap<>();
+        for (TableSpecification specification : specifications) {
+            if (specification instanceof Table) {
+                Table table = (Table) specification;
+                MappedTable mappedTable = tables.computeIfAbsent(normalize(table.getTableName()), name -> new MappedTable(table));
+                for (SimpleValue value : table.values()) {
+                    if (value instanceof Column) {
+                        mappedTable.columns.add(normalize(((Column) value).getColumnName()));
+                    }
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Read the columns of the schemas of the mapped tables, a single call per schema.
+     *
+     * @return the columns of the mapped tables found in the database, keyed by the upper-cased table and column names
+     */
+    private static Map<String, Map<String, String>> readColumns(final DatabaseMetaData metaData, final Map<String, MappedTable> tables)
+            throws SQLException {
+        Set<List<String>> schemas = new LinkedHashSet<>();
+        for (MappedTable table : tables.values()) {
+            schemas.add(Arrays.asList(table.catalog, table.schema));
+        }
+        Map<String, Map<String, String>> columns = new TreeMap<>();
+        for (List<String> schema : schemas) {
+            columns.putAll(SchemaCatalog.readColumns(metaData, schema.get(0), schema.get(1), null, tables::containsKey));
+        }
+        return columns;
+    }
+
+    private static String normalize(final Identifier identifier) {
+        return identifier == null ? null : identifier.getName().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * A mapped table with its upper-cased column names
+     */
+    private static final class MappedTable {
+        private final String name;
+        private final String qualifiedName;
+        private final String catalog;
+        private final String schema;
+        private final Set<String> columns = new TreeSet<>();
+
+        private MappedTable(final Table table) {
+            Schema.Name schemaName = table.getSchema().getName();
+            this.name = normalize(table.getTableName());
+            this.catalog = schemaName.getCatalog() == null ? null : schemaName.getCatalog().getName();
+            this.schema = schemaName.getSchema() == null ? null : schemaName.getSchema().getName();
+            this.qualifiedName = table.toLoggableString();
+        }
+    }
+}
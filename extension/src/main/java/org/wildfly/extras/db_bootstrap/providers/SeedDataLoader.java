@@ -0,0 +1,330 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Loads a {@link BootstrapSeedData} file into its table on a JDBC connection. <br>
+ * <br>
+ * The records are read one at a time by a {@link SeedDataParser} and converted to the types of the columns of the
+ * table, as reported by the {@link DatabaseMetaData} of the connection. The rows are inserted by multi-row statements
+ * sent to the database in JDBC batches, so only the rows of a single statement are held in memory.
+ */
+final class SeedDataLoader {
+
+    /**
+     * The maximum number of parameters of a statement, below the limit of the databases with the lowest limit
+     */
+    private static final int MAX_PARAMETERS = 2000;
+    private static final Pattern IDENTIFIER = Pattern.compile("[\\p{L}_][\\p{L}\\p{N}_$]*(\\.[\\p{L}_][\\p{L}\\p{N}_$]*)?");
+
+    private final Connection connection;
+    private final BootstrapSeedData seedData;
+
+    /**
+     * @param connection - the connection of the session of the bootstrap method, within its transaction
+     * @param seedData - the seed data to load
+     */
+    SeedDataLoader(final Connection connection, final BootstrapSeedData seedData) {
+        this.connection = connection;
+        this.seedData = seedData;
+    }
+
+    /**
+     * @param classLoader - the class loader of the deployment
+     * @return the number of loaded rows
+     * @throws IOException if the file can't be read
+     * @throws SQLException if the rows can't be inserted
+     */
+    long load(final ClassLoader classLoader) throws IOException, SQLException {
+        long before = System.nanoTime();
+        long loaded;
+        try (InputStream in = DeploymentResources.open(classLoader, seedData, "Seed data");
+             SeedDataParser parser = new SeedDataParser(in, seedData.getFormat())) {
+            DbBootstrapLogger.ROOT_LOGGER.tracef("Loading seed data %s into %s, memory mapped: %s", seedData, seedData.getTable(),
+                    parser.isMapped());
+            loaded = load(parser);
+        }
+        DbBootstrapLogger.ROOT_LOGGER.infof("Loaded %s rows of seed data %s into %s in [%s] ms", loaded, seedData, seedData.getTable(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before));
+        return loaded;
+    }
+
+    /**
+     * @param parser - the records of the file
+     * @return the number of loaded rows
+     */
+    long load(final SeedDataParser parser) throws IOException, SQLException {
+        List<String> columns = seedData.getColumns();
+        if (seedData.isHeader()) {
+            if (!parser.next()) {
+                return 0;
+            }
+            if (columns.isEmpty()) {
+                columns = new ArrayList<>();
+                for (int i = 0; i < parser.getFieldCount(); i++) {
+                    columns.add(parser.getString(i).trim());
+                }
+            }
+        }
+        validate(columns);
+        int[] types = columnTypes(columns);
+        int width = columns.size();
+        int rowsPerStatement = Math.max(1, Math.min(seedData.getRowsPerStatement(), MAX_PARAMETERS / width));
+        int commitInterval = seedData.getCommitInterval() > 0 && !connection.getAutoCommit() ? seedData.getCommitInterval() : 0;
+
+        Object[] values = new Object[rowsPerStatement * width];
+        int rows = 0;
+        int batched = 0;
+        int uncommitted = 0;
+        long loaded = 0;
+        try (PreparedStatement statement = connection.prepareStatement(statement(columns, rowsPerStatement))) {
+            while (parser.next()) {
+                if (parser.getFieldCount() != width) {
+                    throw new SQLException(String.format("Record %s of seed data %s has %s values instead of %s", parser.getRecord(), seedData,
+                            parser.getFieldCount(), width));
+                }
+                for (int i = 0; i < width; i++) {
+                    values[rows * width + i] = value(parser, i, types[i]);
+                }
+                rows++;
+                loaded++;
+                uncommitted++;
+                if (rows == rowsPerStatement) {
+                    bind(statement, values, types, rows);
+                    statement.addBatch();
+                    rows = 0;
+                    if (++batched == seedData.getBatchSize()) {
+                        executeBatch(statement, loaded, batched * rowsPerStatement);
+                        batched = 0;
+                    }
+                    if (commitInterval > 0 && uncommitted >= commitInterval) {
+                        if (batched > 0) {
+                            executeBatch(statement, loaded, batched * rowsPerStatement);
+                            batched = 0;
+                        }
+                        connection.commit();
+                        uncommitted = 0;
+                        DbBootstrapLogger.ROOT_LOGGER.tracef("Committed %s rows of seed data %s", loaded, seedData);
+                    }
+                }
+            }
+            if (batched > 0) {
+                executeBatch(statement, loaded - rows, batched * rowsPerStatement);
+            }
+        }
+        if (rows > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(statement(columns, rows))) {
+                bind(statement, values, types, rows);
+                statement.addBatch();
+                executeBatch(statement, loaded, rows);
+            }
+        }
+        return loaded;
+    }
+
+    private void validate(final List<String> columns) throws SQLException {
+        if (columns.isEmpty()) {
+            throw new SQLException(String.format("The columns of seed data %s are neither specified nor read from a header", seedData));
+        }
+        List<String> identifiers = new ArrayList<>(columns);
+        identifiers.add(seedData.getTable());
+        for (String identifier : identifiers) {
+            if (!IDENTIFIER.matcher(identifier).matches()) {
+                throw new SQLException(String.format("Invalid identifier '%s' of seed data %s", identifier, seedData));
+            }
+        }
+        for (String key : seedData.getKeys()) {
+            if (columns.stream().noneMatch(key::equalsIgnoreCase)) {
+                throw new SQLException(String.format("Key column %s of seed data %s is not one of its columns %s", key, seedData, columns));
+            }
+        }
+    }
+
+    /**
+     * @return the JDBC types of the columns, {@link Types#VARCHAR} for a column not reported by the database
+     */
+    private int[] columnTypes(final List<String> columns) throws SQLException {
+        String table = seedData.getTable();
+        int dot = table.indexOf('.');
+        String schema = dot < 0 ? null : table.substring(0, dot);
+        String name = dot < 0 ? table : table.substring(dot + 1);
+
+        Map<String, Integer> types = new HashMap<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (boolean upperCase : new boolean[] {true, false}) {
+            String schemaPattern = schema == null ? null : upperCase ? schema.toUpperCase(Locale.ROOT) : schema.toLowerCase(Locale.ROOT);
+            String tablePattern = upperCase ? name.toUpperCase(Locale.ROOT) : name.toLowerCase(Locale.ROOT);
+            try (ResultSet rs = metaData.getColumns(null, schemaPattern, tablePattern, null)) {
+                while (rs.next()) {
+                    types.put(rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT), rs.getInt("DATA_TYPE"));
+                }
+            }
+            if (!types.isEmpty()) {
+                break;
+            }
+        }
+        if (types.isEmpty()) {
+            DbBootstrapLogger.ROOT_LOGGER.debugf("No columns of table %s found, inserting the seed data %s as strings", table, seedData);
+        }
+        return columns.stream()
+                .mapToInt(column -> types.getOrDefault(column.toUpperCase(Locale.ROOT), Types.VARCHAR))
+                .toArray();
+    }
+
+    /**
+     * @param rows - the number of rows inserted by the statement
+     * @return the insert statement, or the upsert statement of the database if key columns are specified. Oracle has no
+     *         multi-row VALUES clause, so its rows are inserted by INSERT ALL and merged from a UNION ALL of selects
+     */
+    private String statement(final List<String> columns, final int rows) throws SQLException {
+        String table = seedData.getTable();
+        List<String> keys = seedData.getKeys();
+        String columnList = String.join(", ", columns);
+        String row = columns.stream().map(column -> "?").collect(Collectors.joining(", ", "(", ")"));
+        String valueList = String.join(", ", Collections.nCopies(rows, row));
+        String product = connection.getMetaData().getDatabaseProductName();
+        if (keys.isEmpty()) {
+            if ("Oracle".equals(product)) {
+                return String.format("INSERT ALL %s SELECT 1 FROM dual",
+                        String.join(" ", Collections.nCopies(rows, String.format("INTO %s (%s) VALUES %s", table, columnList, row))));
+            }
+            return String.format("INSERT INTO %s (%s) VALUES %s", table, columnList, valueList);
+        }
+
+        List<String> updated = columns.stream()
+                .filter(column -> keys.stream().noneMatch(column::equalsIgnoreCase))
+                .collect(Collectors.toList());
+        String matched = updated.isEmpty() ? "" : updated.stream()
+                .map(column -> String.format("t.%s = s.%s", column, column))
+                .collect(Collectors.joining(", ", " WHEN MATCHED THEN UPDATE SET ", ""));
+        String on = keys.stream().map(key -> String.format("t.%s = s.%s", key, key)).collect(Collectors.joining(" AND "));
+        String inserted = columns.stream().map(column -> "s." + column).collect(Collectors.joining(", "));
+        switch (product) {
+            case "H2":
+                return String.format("MERGE INTO %s (%s) KEY (%s) VALUES %s", table, columnList, String.join(", ", keys), valueList);
+            case "PostgreSQL":
+                return String.format("INSERT INTO %s (%s) VALUES %s ON CONFLICT (%s) DO %s", table, columnList, valueList, String.join(", ", keys),
+                        updated.isEmpty() ? "NOTHING" : updated.stream()
+                                .map(column -> String.format("%s = EXCLUDED.%s", column, column))
+                                .collect(Collectors.joining(", ", "UPDATE SET ", "")));
+            case "MySQL":
+            case "MariaDB":
+                return String.format("INSERT INTO %s (%s) VALUES %s ON DUPLICATE KEY UPDATE %s", table, columnList, valueList,
+                        (updated.isEmpty() ? keys.subList(0, 1) : updated).stream()
+                                .map(column -> String.format("%s = VALUES(%s)", column, column))
+                                .collect(Collectors.joining(", ")));
+            case "Oracle":
+                String select = columns.stream().map(column -> "? " + column).collect(Collectors.joining(", ", "SELECT ", " FROM dual"));
+                return String.format("MERGE INTO %s t USING (%s) s ON (%s)%s WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s)", table,
+                        String.join(" UNION ALL ", Collections.nCopies(rows, select)), on, matched, columnList, inserted);
+            default:
+                return String.format("MERGE INTO %s t USING (VALUES %s) s (%s) ON (%s)%s WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s)",
+                        table, valueList, columnList, on, matched, columnList, inserted);
+        }
+    }
+
+    /**
+     * @return the value of the field converted to the type of its column
+     */
+    private Object value(final SeedDataParser parser, final int field, final int type) throws SQLException {
+        if (parser.isNull(field)) {
+            return null;
+        }
+        try {
+            switch (type) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return Math.toIntExact(parser.getLong(field));
+                case Types.BIGINT:
+                    return parser.getLong(field);
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return new BigDecimal(parser.getString(field).trim());
+                case Types.REAL:
+                    return Float.parseFloat(parser.getString(field));
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return Double.parseDouble(parser.getString(field));
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    String bool = parser.getString(field).trim();
+                    return "1".equals(bool) || "t".equalsIgnoreCase(bool) || "y".equalsIgnoreCase(bool) || "yes".equalsIgnoreCase(bool)
+                            || Boolean.parseBoolean(bool);
+                case Types.DATE:
+                    return Date.valueOf(parser.getString(field).trim());
+                case Types.TIME:
+                    return Time.valueOf(parser.getString(field).trim());
+                case Types.TIMESTAMP:
+                    return Timestamp.valueOf(parser.getString(field).trim());
+                default:
+                    return parser.getString(field);
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new SQLException(String.format("Invalid value '%s' in record %s of seed data %s", parser.getString(field),
+                    parser.getRecord(), seedData), e);
+        }
+    }
+
+    private static void bind(final PreparedStatement statement, final Object[] values, final int[] types, final int rows)
+            throws SQLException {
+        for (int i = 0; i < rows * types.length; i++) {
+            if (values[i] == null) {
+                statement.setNull(i + 1, types[i % types.length]);
+            } else {
+                statement.setObject(i + 1, values[i]);
+            }
+        }
+    }
+
+    /**
+     * @param loaded - the number of rows read so far
+     * @param rows - the number of rows of the batch, the last rows read
+     */
+    private void executeBatch(final PreparedStatement statement, final long loaded, final long rows) throws SQLException {
+        try {
+            statement.executeBatch();
+        } catch (BatchUpdateException e) {
+            throw new SQLException(String.format("Loading rows %s to %s of seed data %s into %s failed: %s", loaded - rows + 1, loaded,
+                    seedData, seedData.getTable(), e.getMessage()), e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.annotations.SeedData;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a CSV or TSV file one at a time. <br>
+ * <br>
+ * A file on disk is memory mapped in windows of {@value #MAP_SIZE} bytes, any other file is streamed through a fixed
+ * size buffer, so the heap used doesn't depend on the size of the file. The fields of a record are kept as UTF-8 bytes
+ * in a reusable buffer, and only decoded to a {@link String} when asked for, numbers are parsed from the bytes
+ * directly.
+ */
+final class SeedDataParser implements Closeable {
+
+    private static final int MAP_SIZE = 1 << 26;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final FileChannel file;
+    private final long fileSize;
+    private long mapped;
+    private ByteBuffer buffer;
+    private final byte separator;
+    private final boolean quoting;
+
+    private byte[] data = new byte[1024];
+    private int length;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int fields;
+    private long record;
+
+    /**
+     * @param in - the content of the file, memory mapped if it is a {@link FileInputStream}
+     * @param format - the format of the file
+     * @throws IOException if the size of the file can't be read
+     */
+    SeedDataParser(final InputStream in, final SeedData.Format format) throws IOException {
+        this.in = in;
+        if (in instanceof FileInputStream) {
+            this.file = ((FileInputStream) in).getChannel();
+            this.fileSize = file.size();
+            this.buffer = ByteBuffer.allocate(0);
+        } else {
+            this.file = null;
+            this.fileSize = -1;
+            this.buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+            this.buffer.limit(0);
+        }
+        this.separator = (byte) (format == SeedData.Format.TSV ? '\t' : ',');
+        this.quoting = format == SeedData.Format.CSV;
+    }
+
+    /**
+     * @return true if the file is memory mapped
+     */
+    boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * Read the next record, skipping empty lines.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file can't be read or a quoted value is not terminated
+     */
+    boolean next() throws IOException {
+        do {
+            if (!readRecord()) {
+                return false;
+            }
+        } while (fields == 1 && length == 0 && !quoted[0]);
+        return true;
+    }
+
+    private boolean readRecord() throws IOException {
+        length = 0;
+        fields = 0;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        if (record == 0 && c == 0xEF) {
+            // UTF-8 byte order mark
+            read();
+            read();
+            c = read();
+        }
+        record++;
+        while (true) {
+            int start = length;
+            boolean isQuoted = false;
+            if (quoting && c == '"') {
+                isQuoted = true;
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw new IOException(String.format("Unterminated quoted value in record %s", record));
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            break;
+                        }
+                    }
+                    append(c);
+                }
+            }
+            while (c != -1 && c != separator && c != '\n') {
+                if (c != '\r') {
+                    append(c);
+                }
+                c = read();
+            }
+            addField(start, isQuoted);
+            if (c != separator) {
+                return true;
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * @return the number of the current record, starting at 1
+     */
+    long getRecord() {
+        return record;
+    }
+
+    /**
+     * @return the number of fields of the current record
+     */
+    int getFieldCount() {
+        return fields;
+    }
+
+    /**
+     * @return true if the field is empty and not quoted
+     */
+    boolean isNull(final int field) {
+        return starts[field] == ends[field] && !quoted[field];
+    }
+
+    String getString(final int field) {
+        return new String(data, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @throws NumberFormatException if the field is not an integer
+     */
+    long getLong(final int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = i < end && data[i] == '-';
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return Long.parseLong(getString(field).trim());
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(getString(field).trim());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private void append(final int c) {
+        if (length == data.length) {
+            data = Arrays.copyOf(data, length * 2);
+        }
+        data[length++] = (byte) c;
+    }
+
+    private void addField(final int start, final boolean isQuoted) {
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+            quoted = Arrays.copyOf(quoted, fields * 2);
+        }
+        starts[fields] = start;
+        ends[fields] = length;
+        quoted[fields] = isQuoted;
+        fields++;
+    }
+
+    private int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        if (file != null) {
+            if (mapped >= fileSize) {
+                return false;
+            }
+            long size = Math.min(MAP_SIZE, fileSize - mapped);
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, mapped, size);
+            mapped += size;
+            return true;
+        }
+        int read = in.read(buffer.array());
+        if (read <= 0) {
+            return false;
+        }
+        buffer.position(0);
+        buffer.limit(read);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
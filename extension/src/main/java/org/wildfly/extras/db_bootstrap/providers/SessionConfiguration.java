@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import java.util.Objects;
+
+/**
+ * The configuration of the sessions passed to the bootstrap methods of a
+ * {@link org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase} class. Bootstrap classes with the same
+ * configuration share the same {@link org.hibernate.SessionFactory} within a bootstrap run. The query and lock timeouts
+ * apply to the sessions opened from the session factory, so they aren't part of the shared configuration.
+ *
+ * @see SessionFactoryCache
+ */
+public final class SessionConfiguration {
+
+    private final String prefix;
+    private final String hibernateCfg;
+    private final String datasource;
+    private final int batchSize;
+    private final int fetchSize;
+    private final int queryTimeout;
+    private final int lockTimeout;
+
+    /**
+     * @param prefix - the prefix for using when loading properties for the session
+     * @param hibernateCfg - the location of the hibernate configuration file, empty if not specified
+     * @param datasource - the JNDI name of the datasource to connect through, empty to connect with the configuration file
+     * @param batchSize - the JDBC batch size, 0 to keep the batch size of the configuration file
+     * @param fetchSize - the JDBC fetch size, 0 to keep the fetch size of the configuration file
+     */
+    public SessionConfiguration(String prefix, String hibernateCfg, String datasource, int batchSize, int fetchSize) {
+        this(prefix, hibernateCfg, datasource, batchSize, fetchSize, 0, 0);
+    }
+
+    /**
+     * @param prefix - the prefix for using when loading properties for the session
+     * @param hibernateCfg - the location of the hibernate configuration file, empty if not specified
+     * @param datasource - the JNDI name of the datasource to connect through, empty to connect with the configuration file
+     * @param batchSize - the JDBC batch size, 0 to keep the batch size of the configuration file
+     * @param fetchSize - the JDBC fetch size, 0 to keep the fetch size of the configuration file
+     * @param queryTimeout - the JDBC query timeout in seconds of every statement of the session, 0 for no timeout
+     * @param lockTimeout - the lock wait timeout in seconds of the transaction of the session, 0 to keep the database default
+     */
+    public SessionConfiguration(String prefix, String hibernateCfg, String datasource, int batchSize, int fetchSize, int queryTimeout,
+            int lockTimeout) {
+        this.prefix = prefix;
+        this.hibernateCfg = hibernateCfg;
+        this.datasource = datasource;
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
+        this.queryTimeout = queryTimeout;
+        this.lockTimeout = lockTimeout;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getHibernateCfg() {
+        return hibernateCfg;
+    }
+
+    public String getDatasource() {
+        return datasource;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public int getLockTimeout() {
+        return lockTimeout;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SessionConfiguration)) {
+            return false;
+        }
+        SessionConfiguration that = (SessionConfiguration) o;
+        return prefix.equals(that.prefix) && hibernateCfg.equals(that.hibernateCfg) && datasource.equals(that.datasource)
+                && batchSize == that.batchSize && fetchSize == that.fetchSize;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefix, hibernateCfg, datasource, batchSize, fetchSize);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[hibernateCfg=%s, datasource=%s, batchSize=%s, fetchSize=%s, queryTimeout=%s, lockTimeout=%s]", prefix,
+                hibernateCfg, datasource, batchSize, fetchSize, queryTimeout, lockTimeout);
+    }
+}
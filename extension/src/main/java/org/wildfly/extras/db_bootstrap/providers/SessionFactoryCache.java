@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.BootstrapServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deployment scoped cache of {@link SessionFactory} instances. Bootstrap methods sharing the same
+ * {@link SessionConfiguration} and class loader are served by the same {@link SessionFactory} instead of
+ * bootstrapping hibernate for every annotated method. <br>
+ * <br>
+ * The cache is expected to live for a single bootstrap run, {@link #close()} releases every cached
+ * {@link SessionFactory} together with the service registries it was built from. <br>
+ * <br>
+ * A session factory is built by the first thread looking up its key, outside of the map, while the other threads
+ * looking up the same key wait for it. A failed build isn't cached.
+ *
+ * @see HibernateBootstrapProvider
+ */
+public class SessionFactoryCache implements AutoCloseable {
+
+    private final ConcurrentMap<Key, FutureTask<Entry>> sessionFactories = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Return the cached {@link SessionFactory} for the specified key, or build and cache a new one with the loader.
+     *
+     * @param configuration - the configuration of the session factory
+     * @param classLoader - class loader the session factory is built for
+     * @param loader - builds the session factory on a cache miss
+     * @return {@link SessionFactory}
+     * @throws Exception if the loader failed to build the session factory
+     */
+    public SessionFactory get(SessionConfiguration configuration, ClassLoader classLoader, Loader loader) throws Exception {
+        Key key = new Key(configuration, classLoader);
+        FutureTask<Entry> task = sessionFactories.get(key);
+        if (task == null) {
+            FutureTask<Entry> newTask = new FutureTask<>(loader::load);
+            task = sessionFactories.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                misses.incrementAndGet();
+                newTask.run();
+            } else {
+                hits.incrementAndGet();
+            }
+        } else {
+            hits.incrementAndGet();
+        }
+        try {
+            return task.get().sessionFactory;
+        } catch (ExecutionException e) {
+            sessionFactories.remove(key, task);
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * @return number of lookups served by an already built {@link SessionFactory}
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that had to build a new {@link SessionFactory}
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Close all the cached session factories and destroy the service registries they were built from.
+     */
+    @Override
+    public void close() {
+        if (hits.get() + misses.get() > 0) {
+            DbBootstrapLogger.ROOT_LOGGER.infof("Closing %s cached session factories (hits: %s, misses: %s)",
+                    sessionFactories.size(), hits.get(), misses.get());
+        }
+        for (FutureTask<Entry> task : sessionFactories.values()) {
+            try {
+                task.get().close();
+            } catch (ExecutionException e) {
+                DbBootstrapLogger.ROOT_LOGGER.tracef("Cached session factory failed to build: %s", e.getCause());
+            } catch (Exception e) {
+                DbBootstrapLogger.ROOT_LOGGER.warn("Unable to close cached session factory", e);
+            }
+        }
+        sessionFactories.clear();
+    }
+
+    /**
+     * Builds the {@link Entry} to cache on a cache miss
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Entry load() throws Exception;
+    }
+
+    /**
+     * A built {@link SessionFactory} and the service registries owned by it.
+     */
+    public static final class Entry {
+        private final SessionFactory sessionFactory;
+        private final StandardServiceRegistry standardRegistry;
+        private final BootstrapServiceRegistry bootstrapRegistry;
+
+        public Entry(SessionFactory sessionFactory, StandardServiceRegistry standardRegistry, BootstrapServiceRegistry bootstrapRegistry) {
+            this.sessionFactory = sessionFactory;
+            this.standardRegistry = standardRegistry;
+            this.bootstrapRegistry = bootstrapRegistry;
+        }
+
+        private void close() {
+            try {
+                sessionFactory.close();
+            } finally {
+                StandardServiceRegistryBuilder.destroy(standardRegistry);
+                if (bootstrapRegistry instanceof ServiceRegistryImplementor) {
+                    ((ServiceRegistryImplementor) bootstrapRegistry).destroy();
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private final SessionConfiguration configuration;
+        private final ClassLoader classLoader;
+
+        private Key(SessionConfiguration configuration, ClassLoader classLoader) {
+            this.configuration = configuration;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return configuration.equals(key.configuration) && classLoader == key.classLoader;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(configuration, System.identityHashCode(classLoader));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a {@link BootstrapScript} on a JDBC connection. The statements are read one at a time by a
+ * {@link SqlScriptTokenizer} and sent to the database in JDBC batches, so a script of any size is executed in
+ * constant memory with a round trip per batch. If the driver doesn't support batch updates, the statements are
+ * executed one at a time.
+ */
+final class SqlScriptRunner {
+
+    private final Connection connection;
+    private final BootstrapScript script;
+
+    /**
+     * @param connection - the connection of the session of the bootstrap method, within its transaction
+     * @param script - the script to execute
+     */
+    SqlScriptRunner(final Connection connection, final BootstrapScript script) {
+        this.connection = connection;
+        this.script = script;
+    }
+
+    /**
+     * @param classLoader - the class loader of the deployment
+     * @return the number of executed statements
+     * @throws IOException if the script can't be read
+     * @throws SQLException if a statement fails
+     */
+    long run(final ClassLoader classLoader) throws IOException, SQLException {
+        long before = System.nanoTime();
+        long executed;
+        try (InputStream in = DeploymentResources.open(classLoader, script, "SQL script");
+             Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            executed = run(reader);
+        }
+        DbBootstrapLogger.ROOT_LOGGER.infof("Executed %s statements of SQL script %s in [%s] ms", executed, script,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before));
+        return executed;
+    }
+
+    /**
+     * @param reader - the content of the script
+     * @return the number of executed statements
+     */
+    long run(final Reader reader) throws IOException, SQLException {
+        SqlScriptTokenizer tokenizer = new SqlScriptTokenizer(reader, script.getDelimiter());
+        int batchSize = script.getBatchSize() > 1 && connection.getMetaData().supportsBatchUpdates() ? script.getBatchSize() : 1;
+        int commitInterval = script.getCommitInterval() > 0 && !connection.getAutoCommit() ? script.getCommitInterval() : 0;
+        int[] lines = new int[batchSize];
+        int batched = 0;
+        int uncommitted = 0;
+        long executed = 0;
+        try (Statement statement = connection.createStatement()) {
+            String sql;
+            while ((sql = tokenizer.next()) != null) {
+                if (batchSize > 1) {
+                    lines[batched++] = tokenizer.getLine();
+                    statement.addBatch(sql);
+                    if (batched == batchSize) {
+                        executeBatch(statement, lines, batched);
+                        batched = 0;
+                    }
+                } else {
+                    execute(statement, sql, tokenizer.getLine());
+                }
+                executed++;
+                if (commitInterval > 0 && ++uncommitted == commitInterval) {
+                    if (batched > 0) {
+                        executeBatch(statement, lines, batched);
+                        batched = 0;
+                    }
+                    connection.commit();
+                    uncommitted = 0;
+                    DbBootstrapLogger.ROOT_LOGGER.tracef("Committed %s statements of SQL script %s", executed, script);
+                }
+            }
+            if (batched > 0) {
+                executeBatch(statement, lines, batched);
+            }
+        }
+        return executed;
+    }
+
+    private void execute(final Statement statement, final String sql, final int line) throws SQLException {
+        try {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new SQLException(String.format("Statement at line %s of SQL script %s failed: %s", line, script, e.getMessage()),
+                    e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
+    private void executeBatch(final Statement statement, final int[] lines, final int batched) throws SQLException {
+        try {
+            statement.executeBatch();
+        } catch (BatchUpdateException e) {
+            // drivers stopping at the first failure report the update counts of the statements before it
+            int[] updateCounts = e.getUpdateCounts();
+            String location = updateCounts != null && updateCounts.length < batched
+                    ? String.format("Statement at line %s", lines[updateCounts.length])
+                    : String.format("Batch of statements at lines %s to %s", lines[0], lines[batched - 1]);
+            throw new SQLException(String.format("%s of SQL script %s failed: %s", location, script, e.getMessage()),
+                    e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+}
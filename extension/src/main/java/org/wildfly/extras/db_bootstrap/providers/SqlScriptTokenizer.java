@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL script into statements while it is read, so only the statement being read is held in memory. <br>
+ * <br>
+ * The delimiter is ignored within single quoted strings, double and back quoted identifiers, PostgreSQL dollar quoted
+ * strings and comments. Line and block comments are removed, except for optimizer hints starting with
+ * <code>/*+</code>. A line <code>DELIMITER &lt;delimiter&gt;</code> at the start of a statement switches the delimiter,
+ * and a delimiter consisting of letters only must be on a line of its own. <br>
+ * <br>
+ * A backslash only escapes the next character within PostgreSQL escape strings, e.g. <code>E'it\'s'</code>. In any
+ * other string it is an ordinary character, as in standard SQL, so a quote within a string must be doubled, e.g.
+ * <code>'it''s'</code>. A MySQL script escaping quotes with a backslash is split at the wrong places.
+ */
+final class SqlScriptTokenizer {
+
+    private static final Pattern DELIMITER_DIRECTIVE = Pattern.compile("(?i)DELIMITER[ \\t]+(\\S+)");
+    private static final int MAX_DIRECTIVE_LENGTH = 64;
+    private static final int MAX_DOLLAR_TAG_LENGTH = 64;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private final char[] unread = new char[MAX_DOLLAR_TAG_LENGTH + 1];
+    private int unreadCount;
+    private final StringBuilder statement = new StringBuilder();
+    private String delimiter;
+    private boolean lineDelimiter;
+    private int line = 1;
+    private int statementLine;
+
+    /**
+     * @param reader - the script
+     * @param delimiter - the initial delimiter of the statements
+     */
+    SqlScriptTokenizer(final Reader reader, final String delimiter) {
+        this.reader = reader;
+        setDelimiter(delimiter);
+    }
+
+    /**
+     * @return the next statement of the script without the delimiter, or <code>null</code> at the end of the script
+     * @throws IOException if the script can't be read
+     */
+    String next() throws IOException {
+        statement.setLength(0);
+        int lineStart = 0;
+        int contentStart = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (contentStart < 0 && !Character.isWhitespace(c) && !(c == '-' && peek() == '-') && !(c == '/' && peek() == '*')) {
+                contentStart = statement.length();
+                statementLine = line;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                boolean escapes = c == '\'' && isEscapeStringPrefix();
+                statement.append((char) c);
+                readQuoted((char) c, escapes);
+            } else if (c == '-' && peek() == '-') {
+                skipLineComment();
+            } else if (c == '/' && peek() == '*') {
+                read();
+                readBlockComment();
+            } else if (c == '$' && !delimiter.startsWith("$") && readDollarQuoted()) {
+                continue;
+            } else if (c == '\n') {
+                if (contentStart >= lineStart && statement.length() - lineStart < MAX_DIRECTIVE_LENGTH) {
+                    Matcher directive = DELIMITER_DIRECTIVE.matcher(statement.substring(lineStart).trim());
+                    if (directive.matches()) {
+                        setDelimiter(directive.group(1));
+                        statement.setLength(0);
+                        lineStart = 0;
+                        contentStart = -1;
+                        continue;
+                    }
+                }
+                if (lineDelimiter && isDelimiterLine(lineStart)) {
+                    statement.setLength(lineStart);
+                    String sql = statement.toString().trim();
+                    if (!sql.isEmpty()) {
+                        return sql;
+                    }
+                    statement.setLength(0);
+                    contentStart = -1;
+                } else {
+                    statement.append('\n');
+                }
+                lineStart = statement.length();
+            } else {
+                statement.append((char) c);
+                if (!lineDelimiter && endsWithDelimiter()) {
+                    statement.setLength(statement.length() - delimiter.length());
+                    String sql = statement.toString().trim();
+                    if (!sql.isEmpty()) {
+                        return sql;
+                    }
+                    statement.setLength(0);
+                    lineStart = 0;
+                    contentStart = -1;
+                }
+            }
+        }
+        if (lineDelimiter && isDelimiterLine(lineStart)) {
+            statement.setLength(lineStart);
+        }
+        String sql = statement.toString().trim();
+        return sql.isEmpty() ? null : sql;
+    }
+
+    /**
+     * @return the line of the script the last statement returned by {@link #next()} starts on
+     */
+    int getLine() {
+        return statementLine;
+    }
+
+    private void setDelimiter(final String delimiter) {
+        this.delimiter = delimiter;
+        this.lineDelimiter = delimiter.chars().allMatch(Character::isLetter);
+    }
+
+    private boolean endsWithDelimiter() {
+        return endsWith(delimiter, 0);
+    }
+
+    /**
+     * @return true if the statement ends with the text, starting at or after the offset
+     */
+    private boolean endsWith(final CharSequence text, final int from) {
+        int offset = statement.length() - text.length();
+        if (offset < from) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (statement.charAt(offset + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isDelimiterLine(final int lineStart) {
+        int start = lineStart;
+        int end = statement.length();
+        while (start < end && Character.isWhitespace(statement.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(statement.charAt(end - 1))) {
+            end--;
+        }
+        return end - start == delimiter.length() && statement.substring(start, end).toUpperCase(Locale.ROOT).equals(delimiter.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return true if the statement ends with the <code>E</code> prefix of a PostgreSQL escape string
+     */
+    private boolean isEscapeStringPrefix() {
+        int length = statement.length();
+        if (length == 0 || Character.toUpperCase(statement.charAt(length - 1)) != 'E') {
+            return false;
+        }
+        return length == 1 || !(Character.isLetterOrDigit(statement.charAt(length - 2)) || statement.charAt(length - 2) == '_');
+    }
+
+    /**
+     * Read a quoted string or identifier up to and including the closing quote. A doubled quote is read as the closing
+     * quote immediately followed by the opening quote of another string, which keeps it within the statement.
+     *
+     * @param escapes - true if a backslash escapes the next character, e.g. the quote
+     */
+    private void readQuoted(final char quote, final boolean escapes) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            statement.append((char) c);
+            if (escapes && c == '\\') {
+                c = read();
+                if (c == -1) {
+                    return;
+                }
+                statement.append((char) c);
+            } else if (c == quote) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skip a line comment up to, but not including, the end of the line
+     */
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n') {
+                unread(c);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skip a block comment after its opening <code>/*</code>, or keep it in the statement if it is an optimizer hint
+     */
+    private void readBlockComment() throws IOException {
+        boolean hint = peek() == '+';
+        if (hint) {
+            statement.append("/*");
+        }
+        int previous = -1;
+        int c;
+        while ((c = read()) != -1) {
+            if (hint) {
+                statement.append((char) c);
+            }
+            if (previous == '*' && c == '/') {
+                break;
+            }
+            previous = c;
+        }
+        if (!hint) {
+            statement.append(' ');
+        }
+    }
+
+    /**
+     * Read a dollar quoted string after its opening <code>$</code>, e.g. <code>$body$ ... $body$</code>
+     *
+     * @return false if the <code>$</code> doesn't start a dollar quoted string
+     */
+    private boolean readDollarQuoted() throws IOException {
+        StringBuilder tag = new StringBuilder("$");
+        int c;
+        while ((c = read()) != -1 && c != '$' && tag.length() < MAX_DOLLAR_TAG_LENGTH
+                && (Character.isLetter(c) || c == '_' || (tag.length() > 1 && Character.isDigit(c)))) {
+            tag.append((char) c);
+        }
+        if (c != '$') {
+            if (c != -1) {
+                unread(c);
+            }
+            for (int i = tag.length() - 1; i > 0; i--) {
+                unread(tag.charAt(i));
+            }
+            return false;
+        }
+        tag.append('$');
+        statement.append(tag);
+        int end = statement.length();
+        while ((c = read()) != -1) {
+            statement.append((char) c);
+            if (c == '$' && endsWith(tag, end)) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (unreadCount > 0) {
+            c = unread[--unreadCount];
+        } else {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            c = buffer[position++];
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        if (c != -1) {
+            unread(c);
+        }
+        return c;
+    }
+
+    private void unread(final int c) {
+        if (c == '\n') {
+            line--;
+        }
+        unread[unreadCount++] = (char) c;
+    }
+}
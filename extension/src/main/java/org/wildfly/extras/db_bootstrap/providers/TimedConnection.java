@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.wildfly.extras.db_bootstrap.DbBootstrapLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JDBC connection of a {@link LazySession}. Every statement created through the {@link #proxy()} of the connection,
+ * by Hibernate or by the bootstrap method, is given the query timeout of the session, and the last created statement
+ * can be cancelled from another thread. Once cancelled, no further statement can be created. A query timeout set by the method itself, e.g. with
+ * {@link org.hibernate.Query#setTimeout(int)}, replaces the one of the session.
+ *
+ * @see SessionConfiguration#getQueryTimeout()
+ */
+final class TimedConnection implements InvocationHandler {
+
+    private final Connection connection;
+    private final int queryTimeout;
+    private volatile Statement lastStatement;
+    private volatile boolean cancelled;
+    private String restoreLockTimeout;
+
+    /**
+     * @param connection - the connection obtained from the connection provider of the session factory
+     * @param queryTimeout - the query timeout in seconds of the created statements, 0 for no timeout
+     */
+    TimedConnection(Connection connection, int queryTimeout) {
+        this.connection = connection;
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * @return the proxy of the connection handed to the session
+     */
+    Connection proxy() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, this);
+    }
+
+    /**
+     * @return the connection obtained from the connection provider
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Cancel the last statement created through the connection, if it is still running, and refuse to create new ones
+     */
+    void cancel() {
+        cancelled = true;
+        Statement statement = lastStatement;
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Unable to cancel %s", statement);
+            }
+        }
+    }
+
+    /**
+     * Make the transaction begun on the connection wait at most the lock timeout for a lock held by another transaction.
+     * PostgreSQL scopes the lock timeout to the transaction. The lock timeout of H2, SQL Server, MySQL, MariaDB, DB2 and
+     * Oracle is set for the database session, so the previous lock timeout of the session is read first and put back by
+     * {@link #restoreLockTimeout()} before the connection is returned to a pool. When the previous lock timeout can't be
+     * read the lock timeout isn't set. Oracle only supports a timeout for the locks of DDL statements. The lock timeout
+     * is ignored for other databases.
+     *
+     * @param lockTimeout - the lock timeout in seconds
+     * @throws SQLException if the lock timeout can't be set
+     */
+    void applyLockTimeout(int lockTimeout) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        String sql;
+        String previousQuery;
+        String restore;
+        if (product.startsWith("PostgreSQL")) {
+            execute("SET LOCAL lock_timeout = '" + lockTimeout + "s'");
+            return;
+        } else if (product.startsWith("H2")) {
+            sql = "SET LOCK_TIMEOUT " + TimeUnit.SECONDS.toMillis(lockTimeout);
+            previousQuery = "SELECT LOCK_TIMEOUT()";
+            restore = "SET LOCK_TIMEOUT %s";
+        } else if (product.startsWith("Microsoft SQL Server")) {
+            sql = "SET LOCK_TIMEOUT " + TimeUnit.SECONDS.toMillis(lockTimeout);
+            previousQuery = "SELECT @@LOCK_TIMEOUT";
+            restore = "SET LOCK_TIMEOUT %s";
+        } else if (product.startsWith("MySQL") || product.startsWith("MariaDB")) {
+            sql = "SET SESSION innodb_lock_wait_timeout = " + lockTimeout;
+            previousQuery = "SELECT @@SESSION.innodb_lock_wait_timeout";
+            restore = "SET SESSION innodb_lock_wait_timeout = %s";
+        } else if (product.startsWith("DB2")) {
+            sql = "SET CURRENT LOCK TIMEOUT " + lockTimeout;
+            previousQuery = "VALUES CURRENT LOCK TIMEOUT";
+            restore = "SET CURRENT LOCK TIMEOUT %s";
+        } else if (product.startsWith("Oracle")) {
+            sql = "ALTER SESSION SET DDL_LOCK_TIMEOUT = " + lockTimeout;
+            previousQuery = "SELECT VALUE FROM V$PARAMETER WHERE NAME = 'ddl_lock_timeout'";
+            restore = "ALTER SESSION SET DDL_LOCK_TIMEOUT = %s";
+        } else {
+            DbBootstrapLogger.ROOT_LOGGER.debugf("Lock timeout not supported for %s, keeping the default of the database", product);
+            return;
+        }
+        String previous;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(previousQuery)) {
+            if (!rs.next()) {
+                DbBootstrapLogger.ROOT_LOGGER.debugf("No lock timeout of the session of %s, keeping the default of the database", product);
+                return;
+            }
+            previous = rs.getString(1);
+        } catch (SQLException e) {
+            DbBootstrapLogger.ROOT_LOGGER.debugf(e, "Unable to read the lock timeout of the session of %s, keeping it", product);
+            return;
+        }
+        execute(sql);
+        restoreLockTimeout = String.format(restore, previous != null ? previous : "NULL");
+    }
+
+    /**
+     * Put back the lock timeout the session of the connection had before {@link #applyLockTimeout(int)}, if it was set
+     *
+     * @throws SQLException if the lock timeout can't be restored
+     */
+    void restoreLockTimeout() throws SQLException {
+        String sql = restoreLockTimeout;
+        if (sql != null) {
+            restoreLockTimeout = null;
+            execute(sql);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return String.format("TimedConnection[%s, queryTimeout=%s]", connection, queryTimeout);
+            }
+        }
+        Object result;
+        try {
+            result = method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        if (result instanceof Statement) {
+            Statement statement = (Statement) result;
+            if (queryTimeout > 0) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+            lastStatement = statement;
+            if (cancelled) {
+                statement.close();
+                throw new SQLException("Statement cancelled, the connection has been cancelled");
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap;
+
+import org.hibernate.Session;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.as.server.deployment.Attachable;
+import org.jboss.as.server.deployment.Attachments;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.SimpleAttachable;
+import org.jboss.as.server.deployment.annotation.CompositeIndex;
+import org.jboss.as.server.deployment.module.ResourceRoot;
+import org.jboss.jandex.Index;
+import org.jboss.jandex.Indexer;
+import org.jboss.vfs.VFS;
+import org.jboss.vfs.VirtualFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapDatabase;
+import org.wildfly.extras.db_bootstrap.annotations.BootstrapSchema;
+import org.wildfly.extras.db_bootstrap.matchfilter.FilenameContainFilter;
+import org.wildfly.extras.db_bootstrap.processor.BootstrapPlanProcessor;
+import org.wildfly.extras.db_bootstrap.providers.BootstrapMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Looks up the bootstrap classes of an EAR holding <code>core.jar</code> and <code>lib/other.jar</code>, each with its
+ * own annotation index, through scans with and without a <code>filter-on-name</code>.
+ */
+public class DbBootstrapDependencyProcessorTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DeploymentUnit deploymentUnit;
+    private File core;
+
+    @Before
+    public void setUp() throws Exception {
+        File ear = folder.newFolder("my-file.ear");
+        new File(ear, "lib").mkdir();
+        SimpleAttachable attachments = new SimpleAttachable();
+        attachments.putAttachment(Attachments.DEPLOYMENT_ROOT, new ResourceRoot(VFS.getChild(ear.toURI()), null));
+        core = new File(ear, "core.jar");
+        Index coreIndex = resourceRoot(attachments, core, CoreBootstrap.class);
+        Index otherIndex = resourceRoot(attachments, new File(ear, "lib/other.jar"), OtherBootstrap.class);
+        attachments.putAttachment(Attachments.COMPOSITE_ANNOTATION_INDEX, new CompositeIndex(Arrays.asList(coreIndex, otherIndex)));
+        deploymentUnit = deploymentUnit(attachments);
+    }
+
+    @Test
+    public void testWithoutFilter() throws Exception {
+        assertEquals(Arrays.asList(CoreBootstrap.class.getName(), OtherBootstrap.class.getName()), classNames(null));
+    }
+
+    @Test
+    public void testFilterOnArchiveName() throws Exception {
+        assertEquals(Collections.singletonList(CoreBootstrap.class.getName()), classNames("core.jar"));
+        assertEquals(Collections.singletonList(OtherBootstrap.class.getName()), classNames("other.jar"));
+    }
+
+    @Test
+    public void testFilterOnPathInDeployment() throws Exception {
+        assertEquals(Collections.singletonList(OtherBootstrap.class.getName()), classNames("lib/*.jar"));
+    }
+
+    @Test
+    public void testCommaSeparatedPatterns() throws Exception {
+        assertEquals(Arrays.asList(CoreBootstrap.class.getName(), OtherBootstrap.class.getName()), classNames("core.jar, lib/*.jar"));
+    }
+
+    @Test
+    public void testNoMatchingArchive() throws Exception {
+        assertEquals(Collections.emptyList(), classNames("com.mycompany*"));
+    }
+
+    @Test
+    public void testScansOfOneDeployment() throws Exception {
+        BootstrapScan all = scan("all", null);
+        BootstrapScan core = scan("core", "core.jar");
+        Map<BootstrapScan, List<BootstrapClass>> bootstrapClasses = DbBootstrapDependencyProcessor.findBootstrapClasses(deploymentUnit,
+                Arrays.asList(all, core));
+        assertEquals(2, bootstrapClasses.get(all).size());
+        assertEquals(1, bootstrapClasses.get(core).size());
+        // the archive is read once for both scans
+        assertEquals(bootstrapClasses.get(core).get(0), bootstrapClasses.get(all).get(0));
+    }
+
+    @Test
+    public void testPlanIsUsedWithoutTheIndex() throws Exception {
+        writePlan(1);
+        BootstrapScan scan = scan("my-file", "core.jar");
+        List<BootstrapClass> bootstrapClasses = DbBootstrapDependencyProcessor.findBootstrapClasses(deploymentUnit,
+                Collections.singletonList(scan)).get(scan);
+        assertEquals(1, bootstrapClasses.size());
+        assertEquals(CoreBootstrap.class.getName() + "Invoker", bootstrapClasses.get(0).getInvoker());
+    }
+
+    @Test
+    public void testStalePlan() throws Exception {
+        writePlan(2);
+        try {
+            classNames("core.jar");
+            fail("the priority of the class changed since the plan was generated");
+        } catch (DeploymentUnitProcessingException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(CoreBootstrap.class.getName()));
+        }
+    }
+
+    private void writePlan(int priority) throws IOException {
+        File plan = new File(core, BootstrapPlanProcessor.PLAN);
+        plan.getParentFile().mkdirs();
+        String className = CoreBootstrap.class.getName();
+        Files.write(plan.toPath(), Arrays.asList(
+                String.join("\t", "class", className, className + "Invoker", Integer.toString(priority), "", "", "", "", "0", "0", "0", "0"),
+                String.join("\t", "method", BootstrapSchema.class.getName(), "createSchema", "(Lorg/hibernate/Session;)V", "false")),
+                StandardCharsets.UTF_8);
+    }
+
+    private List<String> classNames(String filterOnName) throws Exception {
+        BootstrapScan scan = scan("my-file", filterOnName);
+        return DbBootstrapDependencyProcessor.findBootstrapClasses(deploymentUnit, Collections.singletonList(scan))
+                .get(scan)
+                .stream()
+                .map(BootstrapClass::getClassName)
+                .collect(Collectors.toList());
+    }
+
+    private static BootstrapScan scan(String name, String filterOnName) {
+        FilenameContainFilter filter = filterOnName == null ? null : new FilenameContainFilter(Collections.singletonList(filterOnName));
+        PathAddress address = PathAddress.pathAddress(DbBootstrapExtension.SUBSYSTEM_PATH)
+                .append(DbBootstrapExtension.BOOTSTRAP_DEPLOYMENT, "test")
+                .append(DbBootstrapExtension.SCAN, name);
+        return new BootstrapScan(address, "my-file.ear", filter, 1, "", 0, 0, 0, false, new BootstrapMetrics(), null);
+    }
+
+    private static Index resourceRoot(SimpleAttachable attachments, File archive, Class<?> bootstrapClass) throws IOException {
+        archive.mkdir();
+        Indexer indexer = new Indexer();
+        try (InputStream in = bootstrapClass.getResourceAsStream('/' + bootstrapClass.getName().replace('.', '/') + ".class")) {
+            indexer.index(in);
+        }
+        Index index = indexer.complete();
+        ResourceRoot resourceRoot = new ResourceRoot(VFS.getChild(archive.toURI()), null);
+        resourceRoot.putAttachment(Attachments.ANNOTATION_INDEX, index);
+        attachments.addToAttachmentList(Attachments.RESOURCE_ROOTS, resourceRoot);
+        return index;
+    }
+
+    private static DeploymentUnit deploymentUnit(SimpleAttachable attachments) {
+        return (DeploymentUnit) Proxy.newProxyInstance(DeploymentUnit.class.getClassLoader(), new Class<?>[] {DeploymentUnit.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Attachable.class) {
+                        try {
+                            return method.invoke(attachments, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                    switch (method.getName()) {
+                        case "getName":
+                            return "my-file.ear";
+                        case "getParent":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @BootstrapDatabase
+    public static class CoreBootstrap {
+
+        @BootstrapSchema
+        public void createSchema(Session session) {
+        }
+    }
+
+    @BootstrapDatabase
+    public static class OtherBootstrap {
+
+        @BootstrapSchema
+        public void createSchema(Session session) {
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs bootstrap providers with their own {@link BootstrapLock}, like the nodes of a cluster, against one in-memory
+ * database.
+ */
+public class BootstrapLockTestCase {
+
+    private static final String LOCK_TABLE = "BOOTSTRAP_LOCK";
+    private static final String LEDGER_TABLE = "BOOTSTRAP_LEDGER";
+    private static final int NODES = 4;
+    private static final int CANCEL_WAIT_SECONDS = 10;
+
+    private static final AtomicInteger running = new AtomicInteger();
+    private static final AtomicInteger maxRunning = new AtomicInteger();
+    private static final AtomicInteger invocations = new AtomicInteger();
+
+    @Rule
+    public TestName testName = new TestName();
+
+    private String url;
+    private SessionConfiguration configuration;
+    private ConfigurationOverrides overrides;
+    private ScheduledExecutorService heartbeat;
+
+    @Before
+    public void setUp() {
+        running.set(0);
+        maxRunning.set(0);
+        invocations.set(0);
+        url = "jdbc:h2:mem:" + testName.getMethodName() + ";DB_CLOSE_DELAY=-1;MVCC=TRUE";
+        configuration = new SessionConfiguration("lock", "META-INF/bootstrap-lock.cfg.xml", "", 0, 0);
+        Properties properties = new Properties();
+        properties.setProperty("dbbootstrap.lock.hibernate.connection.url", url);
+        overrides = ConfigurationOverrides.of(properties, Collections.emptyMap());
+        heartbeat = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        heartbeat.shutdownNow();
+    }
+
+    @Test
+    public void testNodesBootstrapOneAtATime() throws Exception {
+        ExecutorService nodes = Executors.newFixedThreadPool(NODES);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> runs = new ArrayList<>();
+            for (int i = 0; i < NODES; i++) {
+                runs.add(nodes.submit(() -> {
+                    start.await();
+                    bootstrap(new BootstrapLock(LOCK_TABLE, 30, heartbeat), "createPerson", "createAddress");
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            nodes.shutdownNow();
+        }
+        assertEquals("bootstrap methods running at the same time", 1, maxRunning.get());
+        assertEquals("the nodes waiting for the lock skip the methods in the ledger", 2, invocations.get());
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOver() throws Exception {
+        bootstrap(new BootstrapLock(LOCK_TABLE, 30, heartbeat), "createPerson");
+        execute("UPDATE " + LOCK_TABLE + " SET OWNER = 'dead', EXPIRES_AT = DATEADD('SECOND', -1, CURRENT_TIMESTAMP)");
+
+        long before = System.nanoTime();
+        bootstrap(new BootstrapLock(LOCK_TABLE, 30, heartbeat), "createAddress");
+        assertTrue("an expired lease is taken over without waiting", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - before) < 5);
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        bootstrap(new BootstrapLock(LOCK_TABLE, 30, heartbeat), "createPerson");
+        execute("UPDATE " + LOCK_TABLE + " SET OWNER = 'alive', EXPIRES_AT = DATEADD('SECOND', 60, CURRENT_TIMESTAMP)");
+
+        long before = System.nanoTime();
+        try {
+            bootstrap(new BootstrapLock(LOCK_TABLE, 1, heartbeat), "createAddress");
+            fail("the lock is held by another node");
+        } catch (TimeoutException expected) {
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+            assertTrue("waited " + waited + " ms", waited >= 1000 && waited < 5000);
+        }
+        assertEquals(1, invocations.get());
+
+        // an applied method doesn't wait for the lock
+        bootstrap(new BootstrapLock(LOCK_TABLE, 1, heartbeat), "createPerson");
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void testLostLeaseAbortsTheRun() throws Exception {
+        try (HibernateBootstrapProvider provider = new HibernateBootstrapProvider(LEDGER_TABLE, new BootstrapLock(LOCK_TABLE, 30, 3, heartbeat),
+                new BootstrapMetrics(), overrides)) {
+            long before = System.nanoTime();
+            try {
+                invoke(provider, "waitForCancel");
+                fail("the session of the running method is cancelled");
+            } catch (Exception expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("waitForCancel"));
+            }
+            assertTrue("the running method is cancelled", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - before) < CANCEL_WAIT_SECONDS);
+            try {
+                invoke(provider, "createPerson");
+                fail("the lease has been taken over");
+            } catch (IllegalStateException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("taken over by thief"));
+            }
+        }
+        assertEquals(1, invocations.get());
+    }
+
+    public static void createPerson(Session session) throws Exception {
+        createTable(session, "PERSON");
+    }
+
+    public static void createAddress(Session session) throws Exception {
+        createTable(session, "ADDRESS");
+    }
+
+    public static void waitForCancel(Session session) throws Exception {
+        invocations.incrementAndGet();
+        session.createSQLQuery("SELECT 1").list();
+        try (Connection connection = DriverManager.getConnection(currentUrl(session), "sa", "sa");
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE " + LOCK_TABLE + " SET OWNER = 'thief', EXPIRES_AT = DATEADD('SECOND', 60, CURRENT_TIMESTAMP)");
+        }
+        // the heartbeat renews the lease every second
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CANCEL_WAIT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            session.createSQLQuery("SELECT 1").list();
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    private static void createTable(Session session, String table) throws Exception {
+        int now = running.incrementAndGet();
+        maxRunning.accumulateAndGet(now, Math::max);
+        try {
+            invocations.incrementAndGet();
+            session.createSQLQuery("CREATE TABLE " + table + " (ID INT PRIMARY KEY)").executeUpdate();
+            // give the other nodes the time to run into the lock
+            TimeUnit.MILLISECONDS.sleep(200);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private static String currentUrl(Session session) {
+        String[] url = new String[1];
+        session.doWork(connection -> url[0] = connection.getMetaData().getURL());
+        return url[0];
+    }
+
+    private void bootstrap(BootstrapLock lock, String... methods) throws Exception {
+        try (HibernateBootstrapProvider provider = new HibernateBootstrapProvider(LEDGER_TABLE, lock, new BootstrapMetrics(), overrides)) {
+            for (String method : methods) {
+                invoke(provider, method);
+            }
+        }
+    }
+
+    private void invoke(HibernateBootstrapProvider provider, String method) throws Exception {
+        provider.invokeWithParameters(configuration, getClass().getClassLoader(), new TestMethod(method), Collections.emptyList(), false);
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "sa");
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * A static method of this test taking the {@link Session}
+     */
+    private static final class TestMethod implements BootstrapMethod {
+
+        private final String name;
+
+        private TestMethod(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getClassName() {
+            return BootstrapLockTestCase.class.getName();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDescriptor() {
+            return "(Lorg/hibernate/Session;)V";
+        }
+
+        @Override
+        public void invoke(Object... parameters) throws Exception {
+            try {
+                BootstrapLockTestCase.class.getMethod(name, Session.class).invoke(null, parameters);
+            } catch (InvocationTargetException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class MethodChecksumTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResourceContentChangesTheChecksum() throws Exception {
+        File script = new File(folder.newFolder("db"), "V12.sql");
+        List<BootstrapResource> resources = Collections.singletonList(new BootstrapScript("db/V12.sql", ";", 100, 0));
+        String checksum = MethodChecksum.of(getClass().getClassLoader(), getClass().getName(), "testResourceContentChangesTheChecksum", "()V");
+        assertNotNull(checksum);
+        assertEquals(checksum, MethodChecksum.of(checksum, Collections.emptyList(), null));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {folder.getRoot().toURI().toURL()}, null)) {
+            Files.write(script.toPath(), "CREATE TABLE T (ID INT);".getBytes(StandardCharsets.UTF_8));
+            String before = MethodChecksum.of(checksum, resources, classLoader);
+            assertNotEquals(checksum, before);
+            assertEquals(before, MethodChecksum.of(checksum, resources, classLoader));
+
+            Files.write(script.toPath(), "CREATE TABLE T (ID BIGINT);".getBytes(StandardCharsets.UTF_8));
+            assertNotEquals("the script was edited in place", before, MethodChecksum.of(checksum, resources, classLoader));
+
+            assertNull(MethodChecksum.of(checksum, Collections.singletonList(new BootstrapScript("db/V13.sql", ";", 100, 0)), classLoader));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.extras.db_bootstrap.annotations.SeedData;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SeedDataParserTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testQuotedValues() throws IOException {
+        List<List<String>> records = records("\"a,b\",\"say \"\"hi\"\"\",plain\r\n\"multi\nline\",,\"\"\n", SeedData.Format.CSV);
+        assertEquals(Arrays.asList(Arrays.asList("a,b", "say \"hi\"", "plain"), Arrays.asList("multi\nline", null, "")), records);
+    }
+
+    @Test
+    public void testEmptyLinesAndByteOrderMark() throws IOException {
+        List<List<String>> records = records("\uFEFFid,name\n\n1,one\n\n", SeedData.Format.CSV);
+        assertEquals(Arrays.asList(Arrays.asList("id", "name"), Arrays.asList("1", "one")), records);
+    }
+
+    @Test
+    public void testTabSeparatedValues() throws IOException {
+        List<List<String>> records = records("\"a,b\"\tc\n1\t\"x\"\"\n", SeedData.Format.TSV);
+        assertEquals(Arrays.asList(Arrays.asList("\"a,b\"", "c"), Arrays.asList("1", "\"x\"\"")), records);
+    }
+
+    @Test
+    public void testUnterminatedQuote() throws IOException {
+        try (SeedDataParser parser = parser("1,\"open\n2,closed\n", SeedData.Format.CSV)) {
+            parser.next();
+            fail("the quoted value isn't terminated");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("record 1"));
+        }
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        try (SeedDataParser parser = parser("42,-7,+3, 12 ,123456789012345678901\n", SeedData.Format.CSV)) {
+            assertTrue(parser.next());
+            assertEquals(42, parser.getLong(0));
+            assertEquals(-7, parser.getLong(1));
+            assertEquals(3, parser.getLong(2));
+            assertEquals(12, parser.getLong(3));
+            try {
+                parser.getLong(4);
+                fail("the value doesn't fit in a long");
+            } catch (NumberFormatException expected) {
+                // parsed by Long.parseLong
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        File file = folder.newFile("seed.csv");
+        Files.write(file.toPath(), "1,\"a,b\"\n2,\"c\nd\"\n".getBytes(StandardCharsets.UTF_8));
+        List<List<String>> records = new ArrayList<>();
+        try (SeedDataParser parser = new SeedDataParser(new FileInputStream(file), SeedData.Format.CSV)) {
+            assertTrue(parser.isMapped());
+            while (parser.next()) {
+                records.add(record(parser));
+            }
+        }
+        assertEquals(Arrays.asList(Arrays.asList("1", "a,b"), Arrays.asList("2", "c\nd")), records);
+    }
+
+    @Test
+    public void testHeaderMapsColumns() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:seed", "sa", "sa");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE PERSON (ID INT PRIMARY KEY, NAME VARCHAR(64), AGE INT)");
+            BootstrapSeedData seedData = new BootstrapSeedData("PERSON", "person.csv", SeedData.Format.CSV, new String[0], true,
+                    new String[0], 2, 10, 0);
+            long loaded;
+            try (SeedDataParser parser = parser("name, age ,id\n\"Doe, Jane\",41,1\nJohn,,2\nJim,7,3\n", SeedData.Format.CSV)) {
+                loaded = new SeedDataLoader(connection, seedData).load(parser);
+            }
+            assertEquals(3, loaded);
+            List<String> rows = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT ID, NAME, AGE FROM PERSON ORDER BY ID")) {
+                while (rs.next()) {
+                    rows.add(rs.getInt(1) + "|" + rs.getString(2) + "|" + rs.getObject(3));
+                }
+            }
+            assertEquals(Arrays.asList("1|Doe, Jane|41", "2|John|null", "3|Jim|7"), rows);
+        }
+    }
+
+    private static List<List<String>> records(String content, SeedData.Format format) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (SeedDataParser parser = parser(content, format)) {
+            assertFalse(parser.isMapped());
+            while (parser.next()) {
+                records.add(record(parser));
+            }
+        }
+        return records;
+    }
+
+    private static List<String> record(SeedDataParser parser) {
+        List<String> record = new ArrayList<>();
+        for (int i = 0; i < parser.getFieldCount(); i++) {
+            record.add(parser.isNull(i) ? null : parser.getString(i));
+        }
+        return record;
+    }
+
+    private static SeedDataParser parser(String content, SeedData.Format format) throws IOException {
+        return new SeedDataParser(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlScriptTokenizerTestCase {
+
+    @Test
+    public void testDelimiterWithinQuotes() throws IOException {
+        assertEquals(Arrays.asList("INSERT INTO T VALUES ('a;b', 'it''s')", "SELECT \"x;y\", `z;w` FROM T"),
+                statements("INSERT INTO T VALUES ('a;b', 'it''s');\nSELECT \"x;y\", `z;w` FROM T;"));
+    }
+
+    @Test
+    public void testEscapeString() throws IOException {
+        assertEquals(Arrays.asList("INSERT INTO T VALUES (E'it\\'s;', e'\\\\')", "SELECT 1"),
+                statements("INSERT INTO T VALUES (E'it\\'s;', e'\\\\');\nSELECT 1;"));
+    }
+
+    @Test
+    public void testBackslashOutsideEscapeString() throws IOException {
+        assertEquals(Arrays.asList("INSERT INTO T VALUES ('C:\\')", "SELECT 1"),
+                statements("INSERT INTO T VALUES ('C:\\');\nSELECT 1;"));
+    }
+
+    @Test
+    public void testDollarQuoting() throws IOException {
+        String function = "CREATE FUNCTION f() RETURNS INT AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql";
+        String anonymous = "DO $$ BEGIN PERFORM 1; END $$";
+        assertEquals(Arrays.asList(function, anonymous, "SELECT $1"),
+                statements(function + ";\n" + anonymous + ";\nSELECT $1;"));
+    }
+
+    @Test
+    public void testDelimiterDirective() throws IOException {
+        String trigger = "CREATE TRIGGER t BEFORE INSERT ON T FOR EACH ROW BEGIN SET NEW.A = 1; END";
+        assertEquals(Arrays.asList("SELECT 1", trigger, "SELECT 2"),
+                statements("SELECT 1;\nDELIMITER //\n" + trigger + "//\nDELIMITER ;\nSELECT 2;"));
+    }
+
+    @Test
+    public void testLineDelimiter() throws IOException {
+        assertEquals(Arrays.asList("SELECT 1;\nSELECT 2", "SELECT 'GO'"),
+                statements("SELECT 1;\nSELECT 2\nGO\nSELECT 'GO'\n  go  \n", "GO"));
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        assertEquals(Arrays.asList("SELECT   1", "SELECT '-- not a comment'"),
+                statements("-- first; statement\nSELECT /* a; comment */ 1; -- trailing\n/* block */ SELECT '-- not a comment';"));
+    }
+
+    @Test
+    public void testHint() throws IOException {
+        assertEquals(Arrays.asList("SELECT /*+ INDEX(T I); */ A FROM T"),
+                statements("SELECT /*+ INDEX(T I); */ A FROM T;"));
+    }
+
+    @Test
+    public void testLine() throws IOException {
+        SqlScriptTokenizer tokenizer = new SqlScriptTokenizer(new StringReader("-- header\n\nSELECT 1;\nSELECT\n'a\nb';"), ";");
+        tokenizer.next();
+        assertEquals(3, tokenizer.getLine());
+        tokenizer.next();
+        assertEquals(4, tokenizer.getLine());
+    }
+
+    private static List<String> statements(String script) throws IOException {
+        return statements(script, ";");
+    }
+
+    private static List<String> statements(String script, String delimiter) throws IOException {
+        SqlScriptTokenizer tokenizer = new SqlScriptTokenizer(new StringReader(script), delimiter);
+        List<String> statements = new ArrayList<>();
+        String statement;
+        while ((statement = tokenizer.next()) != null) {
+            statements.add(statement);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014 Umbrew (Flemming.Harms@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extras.db_bootstrap.providers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimedConnectionTestCase {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:timed", "sa", "sa");
+        connection.setAutoCommit(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void testLockTimeoutIsRestored() throws Exception {
+        long previous = lockTimeout();
+        TimedConnection timed = new TimedConnection(connection, 0);
+        timed.applyLockTimeout(7);
+        assertEquals(7000, lockTimeout());
+        connection.commit();
+
+        timed.restoreLockTimeout();
+        assertEquals("the pooled connection keeps its own lock timeout", previous, lockTimeout());
+        timed.restoreLockTimeout();
+        assertEquals(previous, lockTimeout());
+    }
+
+    private long lockTimeout() throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT LOCK_TIMEOUT()")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}